@@ -0,0 +1,61 @@
+package autoclicker.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/** AutoClicker.computeChangePercent between two frames that differ in one region. */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChangePercentBenchmark {
+
+    @Param({"640x480", "1920x1080"})
+    public String screen;
+
+    @Param({"1", "2", "4", "8"})
+    public int sampleStep;
+
+    private Object previous;
+    private Object current;
+    private Method computeChangePercent;
+
+    @Setup
+    public void setUp() {
+        String[] wh = screen.split("x");
+        int w = Integer.parseInt(wh[0]);
+        int h = Integer.parseInt(wh[1]);
+        BufferedImage a = Frames.screen(w, h, 21);
+        BufferedImage b = Frames.copy(a);
+        Graphics2D g = b.createGraphics();
+        g.setColor(new Color(0x3070C0));
+        g.fillRect(w / 4, h / 4, w / 3, h / 3);
+        g.dispose();
+        previous = Targets.pixelFrame(a);
+        current = Targets.pixelFrame(b);
+        Class<?> frame = Targets.type("PixelFrame");
+        computeChangePercent = Targets.method("AutoClicker", "computeChangePercent", frame, frame, int.class);
+    }
+
+    @Benchmark
+    public Object changePercent() {
+        return Targets.invoke(computeChangePercent, null, previous, current, sampleStep);
+    }
+}
@@ -0,0 +1,93 @@
+package autoclicker.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ImageMatcher.findMatch on a fixed frame. "hit" plants the template in the bottom-right
+ * quarter, so most of the frame is scanned before the match; "miss" scans everything.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FindMatchBenchmark {
+
+    @Param({"640x480", "1920x1080"})
+    public String screen;
+
+    @Param({"16", "48"})
+    public int templateSize;
+
+    @Param({"0", "30"})
+    public int tolerance;
+
+    @Param({"1", "2"})
+    public int stride;
+
+    @Param({"hit", "miss"})
+    public String outcome;
+
+    @Param({"FULL", "PYRAMID", "EXACT_HASH"})
+    public String mode;
+
+    private Object matcher;
+    private Object frame;
+    private BufferedImage image;
+    private Method findFrame;
+    private Method findImage;
+
+    @Setup
+    public void setUp() {
+        String[] wh = screen.split("x");
+        int w = Integer.parseInt(wh[0]);
+        int h = Integer.parseInt(wh[1]);
+        image = Frames.screen(w, h, 11);
+        BufferedImage t = Frames.template(templateSize, 5);
+        if ("hit".equals(outcome)) {
+            // on the stride grid so every stride can find it
+            int x = (w * 3 / 4) / stride * stride;
+            int y = (h * 3 / 4) / stride * stride;
+            Graphics2D g = image.createGraphics();
+            g.drawImage(t, x, y, null);
+            g.dispose();
+        }
+        matcher = Targets.matcher(t, tolerance, stride, mode);
+        frame = Targets.pixelFrame(image);
+        findFrame = Targets.method("ImageMatcher", "findMatch", Targets.type("PixelFrame"));
+        findImage = Targets.method("ImageMatcher", "findMatch", BufferedImage.class);
+
+        boolean found = findMatchOnFrame() != null;
+        if (found != "hit".equals(outcome)) {
+            throw new IllegalStateException("Fixture broken: expected " + outcome + " for " + screen + " " + mode);
+        }
+    }
+
+    /** Search only; the frame is wrapped once in setUp. */
+    @Benchmark
+    public Object findMatchOnFrame() {
+        return Targets.invoke(findFrame, matcher, frame);
+    }
+
+    /** What callers pay per screenshot, including the PixelFrame wrap. */
+    @Benchmark
+    public Object findMatchOnImage() {
+        return Targets.invoke(findImage, matcher, image);
+    }
+}
@@ -0,0 +1,59 @@
+package autoclicker.bench;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/** Seeded screens and templates, so every run measures the same pixels. */
+final class Frames {
+    private Frames() {
+    }
+
+    /** Desktop-like frame: light background, flat panels and low-amplitude noise. */
+    static BufferedImage screen(int width, int height, long seed) {
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random rnd = new Random(seed);
+        Graphics2D g = img.createGraphics();
+        g.setColor(new Color(0xF0F0F0));
+        g.fillRect(0, 0, width, height);
+        for (int i = 0; i < Math.max(1, width * height / 20000); i++) {
+            g.setColor(new Color(rnd.nextInt(0xFFFFFF)));
+            g.fillRect(rnd.nextInt(width), rnd.nextInt(height), 10 + rnd.nextInt(200), 5 + rnd.nextInt(60));
+        }
+        g.dispose();
+        for (int i = 0; i < width * height / 50; i++) {
+            int x = rnd.nextInt(width);
+            int y = rnd.nextInt(height);
+            img.setRGB(x, y, img.getRGB(x, y) ^ (rnd.nextInt(8) * 0x010101));
+        }
+        return img;
+    }
+
+    /** A button-like template with a border, a gradient and some text-like strokes. */
+    static BufferedImage template(int size, long seed) {
+        BufferedImage t = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Random rnd = new Random(seed);
+        Graphics2D g = t.createGraphics();
+        for (int y = 0; y < size; y++) {
+            g.setColor(new Color(40 + y * 150 / size, 90, 200 - y * 100 / size));
+            g.drawLine(0, y, size - 1, y);
+        }
+        g.setColor(Color.WHITE);
+        for (int i = 0; i < 6; i++) {
+            g.fillRect(rnd.nextInt(size - 4), rnd.nextInt(size - 4), 2 + rnd.nextInt(3), 2 + rnd.nextInt(3));
+        }
+        g.setColor(Color.BLACK);
+        g.drawRect(0, 0, size - 1, size - 1);
+        g.dispose();
+        return t;
+    }
+
+    static BufferedImage copy(BufferedImage src) {
+        BufferedImage out = new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = out.createGraphics();
+        g.drawImage(src, 0, 0, null);
+        g.dispose();
+        return out;
+    }
+}
@@ -0,0 +1,91 @@
+package autoclicker.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * One AutoClicker.scanOnce() against a SyntheticFrameSource and a RecordingInputSink:
+ * capture, match and, on a hit, click plus the verifying re-capture. The clicked target
+ * is removed by the sink listener and put back before the next invocation. Click-verify
+ * delays are set to zero so only the work is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScanCycleBenchmark {
+
+    @Param({"640x480", "1920x1080"})
+    public String screen;
+
+    @Param({"hit", "miss"})
+    public String outcome;
+
+    @Param({"FULL", "PYRAMID"})
+    public String mode;
+
+    private Object frames;
+    private Object clicker;
+    private BufferedImage template;
+    private int targetX;
+    private int targetY;
+    private Method scanOnce;
+    private Method addTarget;
+    private Method clearTargets;
+
+    @Setup
+    public void setUp() {
+        String[] wh = screen.split("x");
+        int w = Integer.parseInt(wh[0]);
+        int h = Integer.parseInt(wh[1]);
+        template = Frames.template(32, 5);
+        targetX = w * 3 / 4;
+        targetY = h * 3 / 4;
+
+        frames = Targets.construct("SyntheticFrameSource", new Class<?>[]{int.class, int.class, long.class}, w, h, 31L);
+        Object input = Targets.construct("RecordingInputSink", new Class<?>[]{Rectangle.class}, new Rectangle(0, 0, w, h));
+        addTarget = Targets.method("SyntheticFrameSource", "addTarget", BufferedImage.class, int.class, int.class);
+        clearTargets = Targets.method("SyntheticFrameSource", "clearTargets");
+        Method removeTargetAt = Targets.method("SyntheticFrameSource", "removeTargetAt", Point.class);
+        Consumer<Point> onClick = p -> Targets.invoke(removeTargetAt, frames, p);
+        Targets.invoke(Targets.method("RecordingInputSink", "setListener", Consumer.class), input, onClick);
+
+        Object matcher = Targets.matcher(template, 0, 1, mode);
+        clicker = Targets.construct("AutoClicker",
+                new Class<?>[]{Targets.type("ImageMatcher"), Targets.type("FrameSource"), Targets.type("InputSink"),
+                        int.class, int.class, long.class, Rectangle.class, boolean.class, int.class},
+                matcher, frames, input, 0, 0, 0L, null, false, 0);
+        Targets.invoke(Targets.method("AutoClicker", "setClickVerifyDelays", long.class, long.class), clicker, 0L, 0L);
+        scanOnce = Targets.method("AutoClicker", "scanOnce");
+    }
+
+    @Setup(Level.Invocation)
+    public void placeTarget() {
+        Targets.invoke(clearTargets, frames);
+        if ("hit".equals(outcome)) Targets.invoke(addTarget, frames, template, targetX, targetY);
+    }
+
+    @Benchmark
+    public Object scanOnce() {
+        return Targets.invoke(scanOnce, clicker);
+    }
+}
@@ -0,0 +1,75 @@
+package autoclicker.bench;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+
+/**
+ * The application classes live in the default package, which cannot be imported from here
+ * (and JMH refuses benchmarks in the default package), so they are reached by reflection.
+ * Every handle is resolved once in a @Setup method, never inside a measured loop.
+ */
+final class Targets {
+    private Targets() {
+    }
+
+    static Class<?> type(String name) {
+        try {
+            return Class.forName(name);
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException("Application class not on the classpath: " + name, e);
+        }
+    }
+
+    static Object construct(String className, Class<?>[] types, Object... args) {
+        try {
+            Constructor<?> c = type(className).getDeclaredConstructor(types);
+            c.setAccessible(true);
+            return c.newInstance(args);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Could not create " + className, e);
+        }
+    }
+
+    static Method method(String className, String name, Class<?>... types) {
+        try {
+            Method m = type(className).getDeclaredMethod(name, types);
+            m.setAccessible(true);
+            return m;
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("No method " + className + "." + name, e);
+        }
+    }
+
+    static Object invoke(Method m, Object target, Object... args) {
+        try {
+            return m.invoke(target, args);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Call to " + m.getName() + " failed", e);
+        }
+    }
+
+    /** ImageMatcher(BufferedImage, tolerance, stride) with the given SearchMode name. */
+    static Object matcher(BufferedImage template, int tolerance, int stride, String mode) {
+        Object m = construct("ImageMatcher", new Class<?>[]{BufferedImage.class, int.class, int.class},
+                template, tolerance, stride);
+        Class<?> modeType = type("ImageMatcher$SearchMode");
+        Object modeValue = null;
+        for (Object c : modeType.getEnumConstants()) {
+            if (((Enum<?>) c).name().equals(mode)) modeValue = c;
+        }
+        if (modeValue == null) throw new IllegalArgumentException("Unknown search mode: " + mode);
+        invoke(method("ImageMatcher", "setSearchMode", modeType), m, modeValue);
+        return m;
+    }
+
+    /** PixelFrame.of(image), so findMatch can be measured without the per-call wrap. */
+    static Object pixelFrame(BufferedImage image) {
+        return invoke(method("PixelFrame", "of", BufferedImage.class), null, image);
+    }
+
+    static Rectangle asRectangle(Object o) {
+        return (Rectangle) o;
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * Chooses the pause between scan cycles instead of a fixed Thread.sleep.
+ *
+ * While frames stay unchanged the interval doubles up to maxIntervalMs. A changed frame or a
+ * match drops it straight back to minIntervalMs, and a match keeps it there for a few more
+ * cycles. Independently, the pause is never shorter than what keeps the worker's duty cycle
+ * (busy time / cycle time) within cpuBudget, so a slow match on a big screen cannot pin a core.
+ * Busy time is the scanning work only; time a cycle spent holding a click or waiting to verify
+ * it is not charged to the budget.
+ */
+public class AdaptiveScheduler {
+    private static final int FAST_CYCLES_AFTER_MATCH = 5;
+    private static final double EWMA_WEIGHT = 0.2;
+
+    private final long minIntervalMs;
+    private final long maxIntervalMs;
+    private final double cpuBudget;
+
+    private long targetIntervalMs;
+    private int fastCyclesLeft;
+    private long lastStartNanos = -1;
+    private double achievedIntervalMs;
+    private double dutyCycle;
+
+    /**
+     * @param cpuBudget target fraction of wall time the worker may spend scanning, in (0, 1]
+     */
+    public AdaptiveScheduler(long minIntervalMs, long maxIntervalMs, double cpuBudget) {
+        this.minIntervalMs = Math.max(1, minIntervalMs);
+        this.maxIntervalMs = Math.max(this.minIntervalMs, maxIntervalMs);
+        this.cpuBudget = Math.max(0.01, Math.min(1.0, cpuBudget));
+        this.targetIntervalMs = this.minIntervalMs;
+    }
+
+    /** Like the five-argument onCycle, with the whole cycle counted as busy. */
+    public long onCycle(long startNanos, long endNanos, boolean changed, boolean matched) {
+        return onCycle(startNanos, endNanos, endNanos - startNanos, changed, matched);
+    }
+
+    /**
+     * Report a finished cycle and get the time to sleep before the next one.
+     *
+     * @param startNanos System.nanoTime() when the cycle began
+     * @param endNanos   System.nanoTime() when it finished
+     * @param busyNanos  the part of the cycle spent scanning (capture, change detection, match),
+     *                   without clicking and verify delays
+     * @param changed    the frame differed from the previous one
+     * @param matched    the template was found
+     */
+    public synchronized long onCycle(long startNanos, long endNanos, long busyNanos, boolean changed, boolean matched) {
+        if (lastStartNanos >= 0) {
+            achievedIntervalMs = ewma(achievedIntervalMs, (startNanos - lastStartNanos) / 1e6);
+        }
+        lastStartNanos = startNanos;
+
+        if (matched) fastCyclesLeft = FAST_CYCLES_AFTER_MATCH;
+        if (changed || matched || fastCyclesLeft > 0) {
+            targetIntervalMs = minIntervalMs;
+        } else {
+            targetIntervalMs = Math.min(maxIntervalMs, targetIntervalMs * 2);
+        }
+        if (fastCyclesLeft > 0) fastCyclesLeft--;
+
+        long cycleMs = Math.max(0, (endNanos - startNanos) / 1_000_000);
+        long busyMs = Math.max(0, Math.min(cycleMs, busyNanos / 1_000_000));
+        long sleepMs = Math.max(0, targetIntervalMs - cycleMs);
+        // busy / (cycle + sleep) <= budget
+        long budgetSleepMs = (long) Math.ceil(busyMs / cpuBudget) - cycleMs;
+        sleepMs = Math.max(sleepMs, budgetSleepMs);
+        dutyCycle = ewma(dutyCycle, cycleMs + sleepMs == 0 ? 1.0 : (double) busyMs / (cycleMs + sleepMs));
+        return sleepMs;
+    }
+
+    private static double ewma(double current, double sample) {
+        return current == 0 ? sample : current + EWMA_WEIGHT * (sample - current);
+    }
+
+    /** The interval the scheduler is currently aiming for, before the CPU budget is applied. */
+    public synchronized long getTargetIntervalMs() {
+        return targetIntervalMs;
+    }
+
+    /** Smoothed start-to-start time of recent cycles, i.e. the interval actually achieved. */
+    public synchronized double getAchievedIntervalMs() {
+        return achievedIntervalMs;
+    }
+
+    /** Smoothed fraction of cycle time spent scanning. */
+    public synchronized double getDutyCycle() {
+        return dutyCycle;
+    }
+
+    public long getMinIntervalMs() {
+        return minIntervalMs;
+    }
+
+    public long getMaxIntervalMs() {
+        return maxIntervalMs;
+    }
+
+    public double getCpuBudget() {
+        return cpuBudget;
+    }
+
+    public synchronized void reset() {
+        targetIntervalMs = minIntervalMs;
+        fastCyclesLeft = 0;
+        lastStartNanos = -1;
+        achievedIntervalMs = 0;
+        dutyCycle = 0;
+    }
+}
@@ -4,11 +4,28 @@ import java.awt.event.*;
 import java.awt.image.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class AutoClicker {
-    private final ScreenScanner scanner;
-    private final MouseController mouse;
+    /** Order in which batch mode clicks the matches of one frame. */
+    public enum ClickOrder {
+        /** Highest match confidence first. */
+        BEST_FIRST,
+        /** Top to bottom, then left to right. */
+        READING,
+        /** Start at the top-left-most match, then always the nearest one not clicked yet. */
+        NEAREST
+    }
+
+    private final FrameSource frames;
+    private final InputSink input;
     private final ImageMatcher matcher; // may be null when running change-detection-only
+    private boolean ownsMatcher; // built from an image path here, so closed here
     private volatile boolean running = false;
     private Thread workerThread;
     private final Rectangle monitorRegion; // if non-null, scanning limited to this region
@@ -17,24 +34,96 @@ public class AutoClicker {
     private final int clickOffsetX;
     private final int clickOffsetY;
     private final int maxClickRetries = 5;
-    private final long afterClickVerifyDelayMs = 300;
+    private volatile long afterClickVerifyDelayMs = 300;
+    private volatile long retryDelayMs = 200;
+    // null = verify with a full recapture and findMatch
+    private volatile ClickVerifier clickVerifier = ClickVerifier.GONE_FROM_AREA;
+    private volatile int verifyMargin = 8;
     private final long scanIntervalMs;
 
     // pixel-change detection
     private final boolean detectOnPixelChange;
     private final int changeThresholdPercent;
 
+    // when set, consecutive scans only re-check windows overlapping changed tiles
+    private volatile boolean incrementalScan = false;
+
+    // when set, click the lowest-error location (ImageMatcher.findBestMatch) instead of the first hit
+    private volatile boolean bestMatchScoring = false;
+
+    // when set, every match of a frame is clicked before a single verification pass
+    private volatile boolean batchClicking = false;
+    private volatile ClickOrder clickOrder = ClickOrder.READING;
+
+    // when set, the template is also searched at these display scalings (see setScaleFactors)
+    private volatile MultiScaleMatcher multiScale;
+
+    // when set, a capture thread fills frame slots while the worker matches the previous frame
+    private volatile boolean pipelined = false;
+    private static final int PIPELINE_SLOTS = 3;
+
+    // when set, replaces the fixed scanIntervalMs sleep of the sequential loop
+    private volatile AdaptiveScheduler scheduler;
+
+    // when set, clicks go through an InputDispatcher and the worker verifies them on later scans
+    private volatile boolean asyncInput = false;
+    private volatile InputDispatcher dispatcher;
+    private static final long PENDING_POLL_MS = 10; // scan cadence while a dispatched click has not run
+
+    // when set, the worker leaves a shrunk copy of a scanned frame in this slot whenever it is empty
+    private volatile boolean previewEnabled = false;
+    private volatile int previewMaxWidth = 500;
+    private volatile int previewMaxHeight = 500;
+    private final AtomicReference<FramePreview> preview = new AtomicReference<>();
+    private final AtomicReference<BufferedImage> sparePreviewImage = new AtomicReference<>(); // see recyclePreview
+
+    private final ClickerMetrics metrics = new ClickerMetrics();
+    private volatile File metricsSnapshotFile;
+    private volatile long metricsSnapshotPeriodMs;
+
+    // worker-confined scan state, see scanOnce()
+    private final FrameSignature prevSignature = new FrameSignature(4); // samples of the previous frame
+    private int lastFrameWidth;
+    private int lastFrameHeight;
+    private boolean sourceFillsBuffers = true; // until the source ignores a pooled buffer
+    private IncrementalMatcher incremental;
+    private ImageMatcher matchedBy; // matcher (of the winning scale) behind the last hit, for verification
+    private long matchDoneNanos;
+    private long lastCaptureNanos; // how long the frame being processed took to capture
+    private long inputWaitNanos;   // time the current cycle spent clicking and waiting to verify
+    private long lastClickDoneNanos;
+    private boolean lastFrameChanged;
+    private PendingClick pendingClick; // async input: dispatched click not verified yet
+
     public AutoClicker(String targetImagePath, int tolerance, int stride,
                        int clickOffsetX, int clickOffsetY, long scanIntervalMs, Rectangle monitorRegion,
                        boolean detectOnPixelChange, int changeThresholdPercent) {
-        this.scanner = new ScreenScanner();
-        this.mouse = new MouseController();
-        // matcher is optional — allow null/empty path to run change-detection-only mode
-        if (targetImagePath != null && !targetImagePath.trim().isEmpty()) {
-            this.matcher = new ImageMatcher(targetImagePath, tolerance, stride);
-        } else {
-            this.matcher = null;
-        }
+        this(targetImagePath, tolerance, stride, clickOffsetX, clickOffsetY, scanIntervalMs, monitorRegion,
+                detectOnPixelChange, changeThresholdPercent, 1);
+    }
+
+    /**
+     * @param parallelism number of threads ImageMatcher may use to search screen bands (1 = sequential)
+     */
+    public AutoClicker(String targetImagePath, int tolerance, int stride,
+                       int clickOffsetX, int clickOffsetY, long scanIntervalMs, Rectangle monitorRegion,
+                       boolean detectOnPixelChange, int changeThresholdPercent, int parallelism) {
+        this(createMatcher(targetImagePath, tolerance, stride, parallelism), screenSource(), new MouseController(),
+                clickOffsetX, clickOffsetY, scanIntervalMs, monitorRegion, detectOnPixelChange, changeThresholdPercent);
+        this.ownsMatcher = true;
+    }
+
+    /**
+     * Builds a clicker on explicit frame and input implementations, e.g. SyntheticFrameSource
+     * and RecordingInputSink for headless runs. {@code matcher} may be null for
+     * change-detection-only mode.
+     */
+    public AutoClicker(ImageMatcher matcher, FrameSource frames, InputSink input,
+                       int clickOffsetX, int clickOffsetY, long scanIntervalMs, Rectangle monitorRegion,
+                       boolean detectOnPixelChange, int changeThresholdPercent) {
+        this.frames = frames;
+        this.input = input;
+        this.matcher = matcher;
         this.clickOffsetX = clickOffsetX;
         this.clickOffsetY = clickOffsetY;
         this.scanIntervalMs = Math.max(100, scanIntervalMs);
@@ -47,79 +136,410 @@ public class AutoClicker {
         this(targetImagePath, 30, 2, 0, 0, 3000, null, false, 5);
     }
 
+    /** All monitors when there are several, otherwise just the primary screen. */
+    private static FrameSource screenSource() {
+        GraphicsDevice[] devices = GraphicsEnvironment.getLocalGraphicsEnvironment().getScreenDevices();
+        return devices.length > 1 ? new MultiScreenSource() : new ScreenScanner();
+    }
+
+    private static ImageMatcher createMatcher(String targetImagePath, int tolerance, int stride, int parallelism) {
+        // matcher is optional — allow null/empty path to run change-detection-only mode
+        if (targetImagePath == null || targetImagePath.trim().isEmpty()) return null;
+        ImageMatcher m = new ImageMatcher(targetImagePath, tolerance, stride);
+        m.setParallelism(parallelism);
+        return m;
+    }
+
     public synchronized void start() {
         if (running) return;
         running = true;
+        prevSignature.clear();
+        incremental = null;
+        pendingClick = null;
+        metrics.register();
+        if (metricsSnapshotFile != null) metrics.startSnapshots(metricsSnapshotFile, metricsSnapshotPeriodMs);
         workerThread = new Thread(() -> {
-            BufferedImage prevShot = null;
-            while (running) {
-                try {
-                    BufferedImage shot = (monitorRegion == null) ? scanner.takeScreenshot() : scanner.takeScreenshot(monitorRegion);
-
-                    if (detectOnPixelChange && prevShot != null && shot != null) {
-                        int percentChanged = computeChangePercent(prevShot, shot, 4);
-                        if (percentChanged >= changeThresholdPercent) {
-                            System.out.println("Major change detected: " + percentChanged + "% >= " + changeThresholdPercent + "%");
-                            // For change-trigger mode, click at monitor region top-left + offset fields
-                            int baseX = (monitorRegion == null) ? 0 : monitorRegion.x;
-                            int baseY = (monitorRegion == null) ? 0 : monitorRegion.y;
-                            int targetX = baseX + clickOffsetX;
-                            int targetY = baseY + clickOffsetY;
-                            System.out.println("Change-trigger: clicking at (" + targetX + "," + targetY + ")");
-                            attemptClickWithVerify(targetX, targetY);
-                            prevShot = shot;
-                            Thread.sleep(scanIntervalMs);
-                            continue;
-                        }
-                    }
-
-                    if (matcher != null) {
-                        Rectangle matchLocation = matcher.findMatch(shot);
-                        if (matchLocation != null) {
-                            int baseX = (monitorRegion == null) ? 0 : monitorRegion.x;
-                            int baseY = (monitorRegion == null) ? 0 : monitorRegion.y;
-
-                            int targetX = baseX + matchLocation.x + matchLocation.width / 2 + clickOffsetX;
-                            int targetY = baseY + matchLocation.y + matchLocation.height / 2 + clickOffsetY;
-
-                            System.out.println("Found match at " + matchLocation + " -> click at (" + targetX + "," + targetY + ")");
-                            boolean clicked = attemptClickWithVerify(targetX, targetY);
-                            if (!clicked) {
-                                System.out.println("Click attempts failed for target at (" + targetX + "," + targetY + ")");
-                            }
-                        }
-                    }
-
-                    prevShot = shot;
-                    Thread.sleep(scanIntervalMs);
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    stop();
-                } catch (HeadlessException | RasterFormatException ex) {
-                    System.err.println("Error while taking screenshot: " + ex.getMessage());
+            try {
+                if (pipelined) {
+                    runPipelined();
+                } else {
+                    runScanLoop();
                 }
+            } finally {
+                releaseSearchPools();
             }
         }, "AutoClicker-Worker");
         workerThread.setDaemon(true);
         workerThread.start();
     }
 
-    private int computeChangePercent(BufferedImage a, BufferedImage b, int sampleStep) {
-        if (a == null || b == null) return 0;
-        int w = Math.min(a.getWidth(), b.getWidth());
-        int h = Math.min(a.getHeight(), b.getHeight());
+    /** Worker loop for the default mode: scan, then sleep for the interval or the scheduler's pick. */
+    private void runScanLoop() {
+        AdaptiveScheduler sched = scheduler;
+        if (sched != null) sched.reset();
+        long reportedIntervalMs = -1;
+        while (running) {
+            try {
+                long cycleStart = System.nanoTime();
+                inputWaitNanos = 0;
+                boolean acted = scanOnce();
+                if (sched == null) {
+                    Thread.sleep(Math.min(scanIntervalMs, millisUntilPendingClick()));
+                    continue;
+                }
+                long cycleEnd = System.nanoTime();
+                // only the scanning counts against the CPU budget, not click holds and verify delays
+                long sleepMs = sched.onCycle(cycleStart, cycleEnd, cycleEnd - cycleStart - inputWaitNanos,
+                        lastFrameChanged, acted);
+                if (sched.getTargetIntervalMs() != reportedIntervalMs) {
+                    reportedIntervalMs = sched.getTargetIntervalMs();
+                    System.out.println(String.format("Scan interval target %d ms (achieved %.0f ms, duty cycle %.0f%%)",
+                            reportedIntervalMs, sched.getAchievedIntervalMs(), sched.getDutyCycle() * 100));
+                }
+                Thread.sleep(Math.min(sleepMs, millisUntilPendingClick()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stop();
+            } catch (HeadlessException | RasterFormatException ex) {
+                System.err.println("Error while taking screenshot: " + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Shuts down the matcher threads once the worker is done with them: those of the scaled
+     * matchers, and the template matcher's when this clicker built it. The matchers start new
+     * pools if the clicker is started again.
+     */
+    private void releaseSearchPools() {
+        MultiScaleMatcher scaled = multiScale;
+        if (scaled != null) scaled.close();
+        if (ownsMatcher && matcher != null) matcher.close();
+    }
+
+    /**
+     * Worker loop for pipelined mode. The capture thread paces itself to scanIntervalMs, so a
+     * frame is usually ready when matching finishes and detection latency is close to
+     * max(capture, match) instead of their sum. Change detection keeps only a FrameSignature,
+     * so each slot is handed back as soon as its frame is processed.
+     */
+    private void runPipelined() {
+        FramePipeline pipeline = new FramePipeline(frames, monitorRegion, PIPELINE_SLOTS, scanIntervalMs);
+        pipeline.start();
+        try {
+            while (running) {
+                FramePipeline.Frame f = pipeline.take();
+                if (f.getCaptureStartNanos() < lastClickDoneNanos) {
+                    // captured before our last click finished, may still show the old target
+                    pipeline.release(f);
+                    continue;
+                }
+                lastCaptureNanos = f.getCaptureEndNanos() - f.getCaptureStartNanos();
+                metrics.getCaptureLatency().recordNanos(lastCaptureNanos);
+                long allocStart = ClickerMetrics.threadAllocatedBytes();
+                boolean acted = processFrame(f.getImage());
+                metrics.recordCycleAllocation(allocStart);
+                if (acted) {
+                    System.out.println("Detection latency: " + (matchDoneNanos - f.getCaptureStartNanos()) / 1_000_000
+                            + " ms (capture " + (f.getCaptureEndNanos() - f.getCaptureStartNanos()) / 1_000_000
+                            + " ms, dropped frames so far " + pipeline.getDropped() + ")");
+                }
+                pipeline.release(f);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stop();
+        } finally {
+            pipeline.stop();
+            System.out.println("Pipeline stopped: captured=" + pipeline.getCaptured() + " dropped=" + pipeline.getDropped());
+        }
+    }
+
+    /**
+     * One capture-match-click cycle on the calling thread, without the interval sleep.
+     * start() calls this in a loop; tests and benchmarks may call it directly while the
+     * clicker is not running. Returns true if a click was performed.
+     */
+    public boolean scanOnce() throws InterruptedException {
+        long allocStart = ClickerMetrics.threadAllocatedBytes();
+        FrameBufferPool pool = FrameBufferPool.shared();
+        BufferedImage buffer = (sourceFillsBuffers && lastFrameWidth > 0)
+                ? pool.acquire(lastFrameWidth, lastFrameHeight) : null;
+        try {
+            long t0 = System.nanoTime();
+            BufferedImage shot = frames.captureInto(monitorRegion, buffer);
+            lastCaptureNanos = System.nanoTime() - t0;
+            metrics.getCaptureLatency().recordNanos(lastCaptureNanos);
+            if (shot != null) {
+                lastFrameWidth = shot.getWidth();
+                lastFrameHeight = shot.getHeight();
+                if (buffer != null && shot != buffer) sourceFillsBuffers = false; // e.g. Robot allocates anyway
+            }
+            boolean acted = processFrame(shot);
+            metrics.recordCycleAllocation(allocStart);
+            return acted;
+        } finally {
+            pool.release(buffer); // nothing keeps a reference to the frame past processFrame
+        }
+    }
+
+    private boolean processFrame(BufferedImage shot) throws InterruptedException {
+        metrics.recordScan();
+        lastFrameChanged = true;
+        if (matcher == null) publishPreview(shot, null, Double.NaN, 0);
+        if (shot == null) {
+            prevSignature.clear();
+        } else if (detectOnPixelChange || scheduler != null) {
+            long changedSamples = prevSignature.compareAndUpdate(PixelFrame.of(shot));
+            if (changedSamples >= 0) lastFrameChanged = changedSamples > 0; // finer than the percentage below
+            int percentChanged = toPercent(changedSamples, prevSignature.getLastSampleCount());
+            if (detectOnPixelChange && percentChanged >= changeThresholdPercent) {
+                System.out.println("Major change detected: " + percentChanged + "% >= " + changeThresholdPercent + "%");
+                // For change-trigger mode, click at monitor region top-left + offset fields
+                int baseX = (monitorRegion == null) ? 0 : monitorRegion.x;
+                int baseY = (monitorRegion == null) ? 0 : monitorRegion.y;
+                int targetX = baseX + clickOffsetX;
+                int targetY = baseY + clickOffsetY;
+                System.out.println("Change-trigger: clicking at (" + targetX + "," + targetY + ")");
+                if (asyncInput) {
+                    // nothing to verify against; the click runs while the next frame is captured
+                    if (input.getBounds().contains(targetX, targetY)) dispatcher().click(targetX, targetY, 0);
+                } else {
+                    attemptClickWithVerify(targetX, targetY, null);
+                }
+                return true;
+            }
+        }
+
+        boolean clickedAny = false;
+        if (matcher != null && batchClicking) return clickAll(shot);
+        if (matcher != null) {
+            if (incrementalScan && incremental == null) incremental = new IncrementalMatcher(matcher);
+            long matchStart = System.nanoTime();
+            Rectangle matchLocation;
+            double score = Double.NaN;
+            MultiScaleMatcher scaled = multiScale;
+            if (bestMatchScoring) {
+                MatchResult best = (scaled != null) ? scaled.findBestMatch(shot) : matcher.findBestMatch(shot);
+                matchLocation = (best == null) ? null : best.getBounds();
+                if (best != null) score = best.getConfidence();
+                if (best != null) System.out.println("Best match " + best);
+            } else if (scaled != null) {
+                matchLocation = scaled.findMatch(shot);
+            } else if (incrementalScan) {
+                matchLocation = incremental.findMatch(shot);
+            } else if (frames instanceof MultiScreenSource) {
+                // each monitor's part of the frame on its own worker
+                matchLocation = ((MultiScreenSource) frames).findMatch(matcher, shot, frameArea(shot));
+            } else {
+                matchLocation = matcher.findMatch(shot);
+            }
+            matchedBy = matcher;
+            if (scaled != null && matchLocation != null) {
+                matchedBy = scaled.getLastMatcher();
+                System.out.println("Matched at scale " + scaled.getLastScale());
+            }
+            matchDoneNanos = System.nanoTime();
+            metrics.getMatchLatency().recordNanos(matchDoneNanos - matchStart);
+            metrics.recordMatch(matchLocation != null);
+            publishPreview(shot, matchLocation, score, matchDoneNanos - matchStart);
+            if (asyncInput && pendingClick != null) return advancePendingClick(matchLocation != null);
+            if (matchLocation != null) {
+                Rectangle area = frameArea(shot);
+                int baseX = area.x;
+                int baseY = area.y;
+
+                int targetX = baseX + matchLocation.x + matchLocation.width / 2 + clickOffsetX;
+                int targetY = baseY + matchLocation.y + matchLocation.height / 2 + clickOffsetY;
+
+                System.out.println("Found match at " + matchLocation + " -> click at (" + targetX + "," + targetY + ")");
+                HotSpotCache spots = matcher.getHotSpotCache();
+                if (spots != null) {
+                    System.out.println("Hot-spot cache: exact=" + spots.getExactHits() + " ring=" + spots.getRingHits()
+                            + " misses=" + spots.getMisses());
+                }
+                Rectangle onScreen = new Rectangle(matchLocation);
+                onScreen.translate(baseX, baseY);
+                if (asyncInput) return dispatchClick(targetX, targetY, onScreen);
+                boolean clicked = attemptClickWithVerify(targetX, targetY, onScreen);
+                if (!clicked) {
+                    System.out.println("Click attempts failed for target at (" + targetX + "," + targetY + ")");
+                }
+                clickedAny = true;
+            }
+        }
+
+        return clickedAny;
+    }
+
+    /**
+     * Batch mode: clicks every match of the frame in clickOrder, then verifies all of them from
+     * one capture of the area around them. Targets still present are clicked again, up to
+     * maxClickRetries rounds, so N targets cost one cycle instead of N.
+     */
+    private boolean clickAll(BufferedImage shot) throws InterruptedException {
+        long matchStart = System.nanoTime();
+        List<MatchResult> found = matcher.findAll(shot);
+        matchDoneNanos = System.nanoTime();
+        metrics.getMatchLatency().recordNanos(matchDoneNanos - matchStart);
+        metrics.recordMatch(!found.isEmpty());
+        MatchResult best = found.isEmpty() ? null : found.get(0); // findAll lists the best first
+        publishPreview(shot, (best == null) ? null : best.getBounds(),
+                (best == null) ? Double.NaN : best.getConfidence(), matchDoneNanos - matchStart);
+        if (found.isEmpty()) return false;
+
+        Rectangle area = frameArea(shot);
+        int baseX = area.x;
+        int baseY = area.y;
+        Rectangle screen = input.getBounds();
+        List<Rectangle> pending = new ArrayList<>();
+        for (MatchResult r : found) {
+            Rectangle b = r.getBounds();
+            b.translate(baseX, baseY);
+            if (screen.contains(clickPoint(b))) {
+                pending.add(b);
+            } else {
+                System.out.println("Target click coordinates out of bounds: " + clickPoint(b));
+            }
+        }
+        pending = orderTargets(pending, clickOrder);
+        System.out.println("Found " + found.size() + " matches, clicking " + pending.size());
+        matchedBy = matcher;
+        try {
+            for (int round = 0; round < maxClickRetries && !pending.isEmpty(); round++) {
+                if (round > 0) {
+                    metrics.recordRetry();
+                    waitForInput(retryDelayMs);
+                }
+                for (Rectangle t : pending) {
+                    Point p = clickPoint(t);
+                    timedClick(p.x, p.y);
+                }
+                waitForInput(afterClickVerifyDelayMs);
+
+                long verifyStart = System.nanoTime();
+                pending = stillPresent(pending);
+                metrics.getVerifyLatency().recordNanos(System.nanoTime() - verifyStart);
+                if (!pending.isEmpty()) {
+                    System.out.println(pending.size() + " targets still present after round " + (round + 1) + ", retrying...");
+                }
+            }
+            for (Rectangle t : pending) {
+                metrics.recordVerifyFailure();
+                System.out.println("Click attempts failed for target at " + clickPoint(t));
+            }
+        } finally {
+            lastClickDoneNanos = System.nanoTime();
+        }
+        return true;
+    }
+
+    /**
+     * Screen area a captured frame shows: the monitor region, or the whole source, whose
+     * origin is not (0,0) on a virtual desktop with monitors left of or above the primary one.
+     */
+    private Rectangle frameArea(BufferedImage shot) {
+        Rectangle origin = (monitorRegion != null) ? monitorRegion.intersection(frames.getBounds()) : frames.getBounds();
+        return new Rectangle(origin.x, origin.y, shot.getWidth(), shot.getHeight());
+    }
+
+    private Point clickPoint(Rectangle match) {
+        return new Point(match.x + match.width / 2 + clickOffsetX, match.y + match.height / 2 + clickOffsetY);
+    }
+
+    static List<Rectangle> orderTargets(List<Rectangle> targets, ClickOrder order) {
+        List<Rectangle> out = new ArrayList<>(targets);
+        if (order == ClickOrder.BEST_FIRST) return out; // findAll already returns them best first
+        out.sort((a, b) -> a.y != b.y ? Integer.compare(a.y, b.y) : Integer.compare(a.x, b.x));
+        if (order == ClickOrder.READING || out.isEmpty()) return out;
+
+        List<Rectangle> path = new ArrayList<>(out.size());
+        Rectangle cur = out.remove(0);
+        path.add(cur);
+        while (!out.isEmpty()) {
+            int next = 0;
+            long bestDist = Long.MAX_VALUE;
+            for (int i = 0; i < out.size(); i++) {
+                long dx = out.get(i).x - cur.x;
+                long dy = out.get(i).y - cur.y;
+                if (dx * dx + dy * dy < bestDist) {
+                    bestDist = dx * dx + dy * dy;
+                    next = i;
+                }
+            }
+            cur = out.remove(next);
+            path.add(cur);
+        }
+        return path;
+    }
+
+    /**
+     * Captures the bounding box of all targets (plus the verify margin) once and returns the
+     * targets the click verifier still sees; without a verifier, GONE_FROM_AREA is used.
+     */
+    private List<Rectangle> stillPresent(List<Rectangle> targets) {
+        List<Rectangle> present = new ArrayList<>();
+        int margin = verifyMargin;
+        Rectangle union = null;
+        for (Rectangle t : targets) {
+            Rectangle area = new Rectangle(t.x - margin, t.y - margin, t.width + 2 * margin, t.height + 2 * margin);
+            union = (union == null) ? area : union.union(area);
+        }
+        Rectangle roi = union.intersection(frames.getBounds());
+        BufferedImage shot = roi.isEmpty() ? null : frames.capture(roi);
+        if (shot == null) return present; // nothing captured, as when a single verification fails to capture
+        ClickVerifier verifier = (clickVerifier != null) ? clickVerifier : ClickVerifier.GONE_FROM_AREA;
+        for (Rectangle t : targets) {
+            Rectangle area = new Rectangle(t.x - margin, t.y - margin, t.width + 2 * margin, t.height + 2 * margin)
+                    .intersection(roi);
+            if (area.isEmpty()) continue;
+            BufferedImage sub = shot.getSubimage(area.x - roi.x, area.y - roi.y, area.width, area.height);
+            if (!verifier.clickTookEffect(matcher, sub,
+                    new Rectangle(t.x - area.x, t.y - area.y, t.width, t.height))) {
+                present.add(t);
+            }
+        }
+        return present;
+    }
+
+    static int computeChangePercent(PixelFrame a, PixelFrame b, int sampleStep) {
+        int step = Math.max(1, sampleStep);
+        long total = (long) ((Math.min(a.width, b.width) + step - 1) / step)
+                * ((Math.min(a.height, b.height) + step - 1) / step);
+        return toPercent(countChangedSamples(a, b, step), total);
+    }
+
+    private static int toPercent(long changed, long total) {
+        if (total <= 0 || changed <= 0) return 0;
+        return (int) ((changed * 100) / total);
+    }
+
+    /** Number of sampled pixels (every sampleStep-th column and row) that moved by more than the threshold. */
+    static long countChangedSamples(PixelFrame a, PixelFrame b, int sampleStep) {
+        int w = Math.min(a.width, b.width);
+        int h = Math.min(a.height, b.height);
         if (w == 0 || h == 0) return 0;
 
-        long total = 0;
         long changed = 0;
         int step = Math.max(1, sampleStep);
-        final int perPixelThreshold = 30;
+        final int perPixelThreshold = FrameSignature.PIXEL_THRESHOLD;
         int thr2 = perPixelThreshold * perPixelThreshold;
+        final int[] da = a.data;
+        final int[] dbuf = b.data;
 
+        if (step == 1) {
+            // full comparison: rows are contiguous in both frames
+            for (int y = 0; y < h; y++) {
+                changed += PixelKernels.countFar(da, a.offset + y * a.scanline, dbuf, b.offset + y * b.scanline, w, thr2);
+            }
+            return changed;
+        }
         for (int x = 0; x < w; x += step) {
+            int ia = a.offset + x;
+            int ib = b.offset + x;
             for (int y = 0; y < h; y += step) {
-                int rgb1 = a.getRGB(x, y);
-                int rgb2 = b.getRGB(x, y);
+                int rgb1 = da[ia + y * a.scanline];
+                int rgb2 = dbuf[ib + y * b.scanline];
                 int r1 = (rgb1 >> 16) & 0xFF;
                 int g1 = (rgb1 >> 8) & 0xFF;
                 int b1 = rgb1 & 0xFF;
@@ -131,16 +551,23 @@ public class AutoClicker {
                 int db = b1 - b2;
                 int dist2 = dr * dr + dg * dg + db * db;
                 if (dist2 > thr2) changed++;
-                total++;
             }
         }
-        if (total == 0) return 0;
-        return (int) ((changed * 100) / total);
+        return changed;
     }
 
-    private boolean attemptClickWithVerify(int x, int y) throws InterruptedException {
-        Dimension screen = Toolkit.getDefaultToolkit().getScreenSize();
-        if (x < 0 || y < 0 || x >= screen.width || y >= screen.height) {
+    /** @param match the clicked match in screen coordinates, or null for change-trigger clicks */
+    private boolean attemptClickWithVerify(int x, int y, Rectangle match) throws InterruptedException {
+        try {
+            return clickWithVerify(x, y, match);
+        } finally {
+            lastClickDoneNanos = System.nanoTime();
+        }
+    }
+
+    private boolean clickWithVerify(int x, int y, Rectangle match) throws InterruptedException {
+        Rectangle screen = input.getBounds();
+        if (!screen.contains(x, y)) {
             System.out.println("Target click coordinates out of bounds: (" + x + "," + y + ")");
             return false;
         }
@@ -149,42 +576,359 @@ public class AutoClicker {
         if (detectOnPixelChange || matcher == null) {
             // perform one or a few clicks to react to the change and consider it successful
             for (int attempt = 0; attempt < Math.max(1, maxClickRetries); attempt++) {
-                mouse.click(x, y);
-                Thread.sleep(afterClickVerifyDelayMs);
+                timedClick(x, y);
+                waitForInput(afterClickVerifyDelayMs);
             }
             return true;
         }
 
         for (int attempt = 0; attempt < maxClickRetries; attempt++) {
-            mouse.click(x, y);
-            Thread.sleep(afterClickVerifyDelayMs);
-
-            BufferedImage verifyShot = (monitorRegion == null) ? scanner.takeScreenshot() : scanner.takeScreenshot(monitorRegion);
-            Rectangle stillThere = matcher.findMatch(verifyShot);
-            if (stillThere == null) {
+            if (attempt > 0) metrics.recordRetry();
+            timedClick(x, y);
+            waitForInput(afterClickVerifyDelayMs);
+
+            long verifyStart = System.nanoTime();
+            boolean gone = verifyClick(match);
+            metrics.getVerifyLatency().recordNanos(System.nanoTime() - verifyStart);
+            if (gone) {
                 System.out.println("Verified: template disappeared after click (attempt " + (attempt + 1) + ")");
                 return true;
             } else {
                 System.out.println("Template still present after click (attempt " + (attempt + 1) + "), retrying...");
             }
 
-            Thread.sleep(200);
+            waitForInput(retryDelayMs);
         }
+        metrics.recordVerifyFailure();
         return false;
     }
 
+    /** True when the clicked template is gone; only captures around {@code match} when possible. */
+    private boolean verifyClick(Rectangle match) {
+        ClickVerifier verifier = clickVerifier;
+        if (verifier == null || match == null) {
+            BufferedImage verifyShot = (monitorRegion == null) ? frames.capture() : frames.capture(monitorRegion);
+            return matchedBy.findMatch(verifyShot) == null;
+        }
+        int margin = verifyMargin;
+        Rectangle roi = new Rectangle(match.x - margin, match.y - margin,
+                match.width + 2 * margin, match.height + 2 * margin).intersection(frames.getBounds());
+        BufferedImage shot = roi.isEmpty() ? null : frames.capture(roi);
+        if (shot == null) return true; // nothing captured, as when a full recapture fails
+        return verifier.clickTookEffect(matchedBy,
+                shot, new Rectangle(match.x - roi.x, match.y - roi.y, match.width, match.height));
+    }
+
+    /**
+     * Copies the frame into the preview slot if the preview is on and took the last one, so
+     * frames are only copied as fast as they are displayed.
+     */
+    private void publishPreview(BufferedImage shot, Rectangle match, double score, long matchNanos) {
+        if (!previewEnabled || shot == null || preview.get() != null) return; // only the worker sets it
+        preview.set(FramePreview.copyOf(shot, frameArea(shot), match, score, lastCaptureNanos, matchNanos,
+                previewMaxWidth, previewMaxHeight, sparePreviewImage.getAndSet(null)));
+    }
+
+    /** Async input: hands the click to the dispatcher and returns without waiting for it. */
+    private boolean dispatchClick(int x, int y, Rectangle match) {
+        if (!input.getBounds().contains(x, y)) {
+            System.out.println("Target click coordinates out of bounds: (" + x + "," + y + ")");
+            return false;
+        }
+        pendingClick = new PendingClick(x, y, match, matchedBy, dispatcher().click(x, y, 0), 0);
+        return true;
+    }
+
+    /**
+     * Async input: moves the pending click along on a scan that saw the target or not. A click
+     * that has not run yet is cancelled when the target is gone; one that ran is verified once
+     * afterClickVerifyDelayMs has passed and re-dispatched retryDelayMs later if the target is
+     * still there. Returns true if a click was dispatched.
+     */
+    private boolean advancePendingClick(boolean targetSeen) {
+        PendingClick p = pendingClick;
+        if (!p.clicks.isDone()) {
+            if (!targetSeen && p.clicks.cancel()) {
+                System.out.println("Target gone before the click at (" + p.x + "," + p.y + ") ran, cancelled it");
+                pendingClick = null;
+            }
+            return false;
+        }
+        if (System.nanoTime() < p.verifyAtNanos()) return false;
+        if (!p.clicks.isCancelled()) {
+            metrics.getClickLatency().recordNanos(p.clicks.getDoneNanos() - p.clicks.getStartNanos());
+        }
+        lastClickDoneNanos = p.clicks.getDoneNanos();
+        matchedBy = p.matchedBy;
+
+        long verifyStart = System.nanoTime();
+        boolean gone = verifyClick(p.match);
+        metrics.getVerifyLatency().recordNanos(System.nanoTime() - verifyStart);
+        if (gone) {
+            System.out.println("Verified: template disappeared after click (attempt " + (p.attempt + 1) + ")");
+            pendingClick = null;
+            return false;
+        }
+        if (p.attempt + 1 >= maxClickRetries) {
+            metrics.recordVerifyFailure();
+            System.out.println("Click attempts failed for target at (" + p.x + "," + p.y + ")");
+            pendingClick = null;
+            return false;
+        }
+        System.out.println("Template still present after click (attempt " + (p.attempt + 1) + "), retrying...");
+        metrics.recordRetry();
+        pendingClick = new PendingClick(p.x, p.y, p.match, p.matchedBy,
+                dispatcher().click(p.x, p.y, retryDelayMs), p.attempt + 1);
+        return true;
+    }
+
+    /** How long the worker may sleep before the pending click needs another look. */
+    private long millisUntilPendingClick() {
+        PendingClick p = pendingClick;
+        if (p == null) return Long.MAX_VALUE;
+        if (!p.clicks.isDone()) return PENDING_POLL_MS;
+        return Math.max(0, (p.verifyAtNanos() - System.nanoTime()) / 1_000_000L);
+    }
+
+    private InputDispatcher dispatcher() {
+        InputDispatcher d = dispatcher;
+        if (d == null) {
+            synchronized (this) {
+                if (dispatcher == null) dispatcher = new InputDispatcher(input);
+                d = dispatcher;
+            }
+        }
+        return d;
+    }
+
+    /** A click handed to the dispatcher, with what is needed to verify and retry it. */
+    private final class PendingClick {
+        final int x;
+        final int y;
+        final Rectangle match; // on screen
+        final ImageMatcher matchedBy;
+        final InputDispatcher.Sequence clicks;
+        final int attempt;
+
+        PendingClick(int x, int y, Rectangle match, ImageMatcher matchedBy, InputDispatcher.Sequence clicks, int attempt) {
+            this.x = x;
+            this.y = y;
+            this.match = match;
+            this.matchedBy = matchedBy;
+            this.clicks = clicks;
+            this.attempt = attempt;
+        }
+
+        long verifyAtNanos() {
+            return clicks.getDoneNanos() + afterClickVerifyDelayMs * 1_000_000L;
+        }
+    }
+
+    private void timedClick(int x, int y) {
+        long t0 = System.nanoTime();
+        input.click(x, y);
+        long took = System.nanoTime() - t0;
+        metrics.getClickLatency().recordNanos(took);
+        inputWaitNanos += took;
+    }
+
+    /** Sleeps for a click delay; like the click itself, this is not scanning time. */
+    private void waitForInput(long ms) throws InterruptedException {
+        long t0 = System.nanoTime();
+        Thread.sleep(ms);
+        inputWaitNanos += System.nanoTime() - t0;
+    }
+
     public synchronized void stop() {
         running = false;
         if (workerThread != null) {
             workerThread.interrupt();
             workerThread = null;
         }
+        if (dispatcher != null) dispatcher.stop(); // drops queued clicks, releases a held button
+        metrics.stopSnapshots();
+        if (metricsSnapshotFile != null) metrics.writeSnapshot(metricsSnapshotFile);
+        metrics.unregister();
     }
 
     public boolean isRunning() {
         return running;
     }
 
+    /**
+     * Delay after each click before verifying, and the extra pause before a retry
+     * (defaults 300 ms and 200 ms).
+     */
+    public void setClickVerifyDelays(long afterClickMs, long retryMs) {
+        this.afterClickVerifyDelayMs = Math.max(0, afterClickMs);
+        this.retryDelayMs = Math.max(0, retryMs);
+    }
+
+    /**
+     * Have the worker publish scanned frames for takePreview(). Costs one copy, at most
+     * the preview size, per preview taken, none while nobody takes them.
+     */
+    public void setPreviewEnabled(boolean previewEnabled) {
+        this.previewEnabled = previewEnabled;
+        if (!previewEnabled) preview.set(null);
+    }
+
+    /** Largest preview image; larger frames are scaled down to fit (default 500 x 500). */
+    public void setPreviewSize(int maxWidth, int maxHeight) {
+        this.previewMaxWidth = Math.max(1, maxWidth);
+        this.previewMaxHeight = Math.max(1, maxHeight);
+    }
+
+    /**
+     * Hands a taken preview's image back for the worker to draw the next preview into. The
+     * caller must not use that image afterwards.
+     */
+    public void recyclePreview(FramePreview p) {
+        if (p != null) sparePreviewImage.set(p.getImage());
+    }
+
+    /**
+     * The latest frame the worker published since the last call, or null if there is none
+     * yet. Taking it empties the slot, which lets the worker publish the next scanned frame.
+     */
+    public FramePreview takePreview() {
+        return preview.getAndSet(null);
+    }
+
+    public boolean isAsyncInput() {
+        return asyncInput;
+    }
+
+    /**
+     * Click through an InputDispatcher thread instead of on the worker. The worker keeps
+     * scanning while a click runs, verifies it on a later scan once the verify delay has
+     * passed, schedules retries instead of sleeping, and cancels a click whose target vanished
+     * before it ran. Batch clicking stays synchronous.
+     */
+    public void setAsyncInput(boolean asyncInput) {
+        this.asyncInput = asyncInput;
+    }
+
+    public boolean isIncrementalScan() {
+        return incrementalScan;
+    }
+
+    /**
+     * Rescan only the parts of the screen that changed since the previous scan. Takes effect on
+     * the next start().
+     */
+    public void setIncrementalScan(boolean incrementalScan) {
+        this.incrementalScan = incrementalScan;
+    }
+
+    public ClickVerifier getClickVerifier() {
+        return clickVerifier;
+    }
+
+    /**
+     * How to check a click worked: capture the match rectangle grown by {@code marginPx} and ask
+     * {@code verifier}. Null falls back to recapturing the whole screen (or monitor region) and
+     * running findMatch. Defaults to ClickVerifier.GONE_FROM_AREA with an 8 px margin.
+     */
+    public void setClickVerifier(ClickVerifier verifier, int marginPx) {
+        this.clickVerifier = verifier;
+        this.verifyMargin = Math.max(0, marginPx);
+    }
+
+    /** Stage latencies and counters; also registered as an MBean while running. */
+    public ClickerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * While running, write a JSON metrics snapshot to {@code file} every {@code periodMs}, plus a
+     * final one on stop(). Null disables it. Takes effect on the next start().
+     */
+    public void setMetricsSnapshotFile(File file, long periodMs) {
+        this.metricsSnapshotFile = file;
+        this.metricsSnapshotPeriodMs = periodMs;
+    }
+
+    public AdaptiveScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Pace the sequential scan loop with {@code scheduler} instead of the fixed interval; null
+     * restores the fixed interval. Pipelined mode keeps its fixed capture cadence. Takes effect
+     * on the next start().
+     */
+    public void setScheduler(AdaptiveScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    public boolean isBestMatchScoring() {
+        return bestMatchScoring;
+    }
+
+    /**
+     * Click the location with the lowest SAD/SSD error instead of the first offset where every
+     * pixel is within tolerance; tolerates a few off pixels on anti-aliased UIs. Overrides
+     * incremental scanning.
+     */
+    public void setBestMatchScoring(boolean bestMatchScoring) {
+        this.bestMatchScoring = bestMatchScoring;
+    }
+
+    public boolean isBatchClicking() {
+        return batchClicking;
+    }
+
+    /**
+     * Click every match of a frame (ImageMatcher.findAll) in the given order, then verify them
+     * all from one capture, instead of one scan-click-verify cycle per target. Overrides
+     * best-match scoring, multi-scale and incremental scanning.
+     */
+    public void setBatchClicking(boolean batchClicking, ClickOrder order) {
+        this.batchClicking = batchClicking;
+        this.clickOrder = (order == null) ? ClickOrder.READING : order;
+    }
+
+    public ClickOrder getClickOrder() {
+        return clickOrder;
+    }
+
+    /** The multi-scale matcher set up by setScaleFactors, or null. */
+    public MultiScaleMatcher getMultiScaleMatcher() {
+        return multiScale;
+    }
+
+    /**
+     * Also find the template at these display scalings (1.0 = as captured, 1.25 = 125%, ...),
+     * trying the last matching scale first. Pass nothing to match at the captured size only.
+     * Scaled copies are resampled, so a tolerance above 0 is needed. Overrides incremental
+     * scanning. Ignored without a template.
+     */
+    public void setScaleFactors(double... scales) {
+        MultiScaleMatcher old = multiScale;
+        this.multiScale = (matcher == null || scales == null || scales.length == 0)
+                ? null : new MultiScaleMatcher(matcher, scales);
+        if (old != null) old.close();
+    }
+
+    public boolean isPipelined() {
+        return pipelined;
+    }
+
+    /**
+     * Capture on a separate thread into a small ring of reusable frames while the worker matches
+     * the previous one; frames the worker cannot keep up with are dropped, oldest first. Takes
+     * effect on the next start().
+     */
+    public void setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+    }
+
+    /** The template matcher, or null in change-detection-only mode. */
+    public ImageMatcher getMatcher() {
+        return matcher;
+    }
+
     private static class ControlUI {
         private final JFrame frame = new JFrame("AutoClicker Control");
         private final JWindow crosshairOverlay;
@@ -213,11 +957,35 @@ public class AutoClicker {
 
         private final JPanel previewPanel;
         private BufferedImage previewImage = null;
+        private FramePreview shownPreview = null; // overlay for previewImage
         private final ScreenScanner previewScanner = new ScreenScanner();
         private final Timer previewTimer;
+        // while no clicker runs, the preview captures its region itself, off the EDT
+        private static final long IDLE_PREVIEW_MS = 400;
+        private final ExecutorService previewCapture = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "Preview-Capture");
+            t.setDaemon(true);
+            return t;
+        });
+        private final AtomicReference<FramePreview> idlePreview = new AtomicReference<>();
+        private final AtomicBoolean idleCaptureBusy = new AtomicBoolean();
+        private long nextIdleCaptureNanos;
 
         private final JCheckBox detectChangeCheck = new JCheckBox("Detect on pixel change", false);
         private final JTextField changeThresholdField = new JTextField("5", 5);
+        private final JComboBox<ImageMatcher.SearchMode> searchModeCombo = new JComboBox<>(ImageMatcher.SearchMode.values());
+        private final JTextField threadsField = new JTextField("1", 5);
+        private final JCheckBox scanOrderCheck = new JCheckBox("First match in scan order", true);
+        private final JCheckBox incrementalCheck = new JCheckBox("Rescan changed areas only", false);
+        private final JCheckBox hotSpotCheck = new JCheckBox("Try recent match locations first", false);
+        private final JCheckBox pipelinedCheck = new JCheckBox("Capture while matching", false);
+        private final JCheckBox bestMatchCheck = new JCheckBox("Click best-scoring match", false);
+        private final JCheckBox adaptiveCheck = new JCheckBox("Adaptive interval, CPU budget %:", false);
+        private final JTextField cpuBudgetField = new JTextField("25", 5);
+        private final JTextField scalesField = new JTextField("", 10);
+        private final JCheckBox batchCheck = new JCheckBox("Click all matches, order:", false);
+        private final JComboBox<ClickOrder> clickOrderCombo = new JComboBox<>(ClickOrder.values());
+        private final JCheckBox asyncInputCheck = new JCheckBox("Click without stalling the scan", false);
 
         ControlUI() {
             // Create crosshair overlay (always-on-top, transparent window)
@@ -296,6 +1064,22 @@ public class AutoClicker {
             controls.add(detectChangeCheck, c);
             c.gridx = 1; c.gridy = 8; controls.add(new JLabel("Change threshold %:"), c);
             c.gridx = 2; c.gridy = 8; controls.add(changeThresholdField, c);
+            c.gridx = 1; c.gridy = 9; controls.add(new JLabel("Search mode:"), c);
+            c.gridx = 2; c.gridy = 9; controls.add(searchModeCombo, c);
+            c.gridx = 1; c.gridy = 10; controls.add(new JLabel("Search threads:"), c);
+            c.gridx = 2; c.gridy = 10; controls.add(threadsField, c);
+            c.gridx = 3; c.gridy = 10; controls.add(scanOrderCheck, c);
+            c.gridx = 1; c.gridy = 11; controls.add(incrementalCheck, c);
+            c.gridx = 3; c.gridy = 11; controls.add(hotSpotCheck, c);
+            c.gridx = 1; c.gridy = 12; controls.add(pipelinedCheck, c);
+            c.gridx = 3; c.gridy = 12; controls.add(bestMatchCheck, c);
+            c.gridx = 1; c.gridy = 13; controls.add(adaptiveCheck, c);
+            c.gridx = 2; c.gridy = 13; controls.add(cpuBudgetField, c);
+            c.gridx = 1; c.gridy = 14; controls.add(new JLabel("Display scales (e.g. 1,1.25,1.5):"), c);
+            c.gridx = 2; c.gridy = 14; controls.add(scalesField, c);
+            c.gridx = 1; c.gridy = 15; controls.add(batchCheck, c);
+            c.gridx = 2; c.gridy = 15; controls.add(clickOrderCombo, c);
+            c.gridx = 1; c.gridy = 16; controls.add(asyncInputCheck, c);
 
             stopBtn.setEnabled(false);
 
@@ -327,6 +1111,7 @@ public class AutoClicker {
                     g.fillRect(0, 0, getWidth(), getHeight());
                     if (previewImage != null) {
                         g.drawImage(previewImage, 0, 0, getWidth(), getHeight(), null);
+                        paintMatchOverlay(g);
                     } else {
                         g.setColor(Color.LIGHT_GRAY);
                         g.drawString("Preview (500x500)", 10, 20);
@@ -335,8 +1120,10 @@ public class AutoClicker {
                     try {
                         int ox = Integer.parseInt(offsetXField.getText().trim());
                         int oy = Integer.parseInt(offsetYField.getText().trim());
-                        double sx = previewImage != null ? (double) previewPanel.getWidth() / previewImage.getWidth() : 1.0;
-                        double sy = previewImage != null ? (double) previewPanel.getHeight() / previewImage.getHeight() : 1.0;
+                        // offsets are in frame pixels; the preview image may be scaled down
+                        Rectangle area = (previewImage != null) ? shownPreview.getArea() : null;
+                        double sx = area != null ? (double) previewPanel.getWidth() / area.width : 1.0;
+                        double sy = area != null ? (double) previewPanel.getHeight() / area.height : 1.0;
                         int px = (int) (ox * sx);
                         int py = (int) (oy * sy);
                         g.setColor(Color.RED);
@@ -352,8 +1139,9 @@ public class AutoClicker {
                 public void mouseClicked(MouseEvent e) {
                     if (!pickingClickPos) return;
                     if (previewImage == null) return;
-                    double sx = (double) previewImage.getWidth() / previewPanel.getWidth();
-                    double sy = (double) previewImage.getHeight() / previewPanel.getHeight();
+                    Rectangle area = shownPreview.getArea();
+                    double sx = (double) area.width / previewPanel.getWidth();
+                    double sy = (double) area.height / previewPanel.getHeight();
                     int imgX = (int) (e.getX() * sx);
                     int imgY = (int) (e.getY() * sy);
                     offsetXField.setText(String.valueOf(imgX));
@@ -392,7 +1180,7 @@ public class AutoClicker {
             frame.pack();
             frame.setLocationRelativeTo(null);
 
-            previewTimer = new Timer(400, ev -> refreshPreview());
+            previewTimer = new Timer(displayFrameMs(), ev -> pollPreview());
             previewTimer.setRepeats(true);
             previewTimer.start();
         }
@@ -500,18 +1288,89 @@ public class AutoClicker {
             overlay.setVisible(true);
         }
 
+        /** Asks for a fresh preview now, e.g. after the monitor region changed. */
         private void refreshPreview() {
-            if (!useMonitorCheck.isSelected()) {
-                previewImage = null;
-                previewPanel.repaint();
+            nextIdleCaptureNanos = 0;
+            pollPreview();
+        }
+
+        /**
+         * Shows the newest frame, if there is one: the running clicker's latest scanned frame,
+         * otherwise one captured by previewCapture. Runs on the EDT once per display refresh,
+         * and never captures itself.
+         */
+        private void pollPreview() {
+            AutoClicker clicker = currentClicker;
+            FramePreview p;
+            if (clicker != null) {
+                p = clicker.takePreview();
+            } else if (useMonitorCheck.isSelected()) {
+                requestIdleCapture();
+                p = idlePreview.getAndSet(null);
+            } else {
+                if (previewImage != null) {
+                    previewImage = null;
+                    shownPreview = null;
+                    previewPanel.repaint();
+                }
                 return;
             }
+            if (p == null) return;
+            // the old image is no longer painted once replaced; the worker may draw into it again
+            if (clicker != null && shownPreview != null) clicker.recyclePreview(shownPreview);
+            shownPreview = p;
+            previewImage = p.getImage();
+            previewPanel.repaint();
+        }
+
+        private void requestIdleCapture() {
+            long now = System.nanoTime();
+            if (now < nextIdleCaptureNanos || !idleCaptureBusy.compareAndSet(false, true)) return;
+            nextIdleCaptureNanos = now + IDLE_PREVIEW_MS * 1_000_000L;
             int mx = parseIntOr(monitorXField.getText().trim(), 0);
             int my = parseIntOr(monitorYField.getText().trim(), 0);
             Rectangle r = new Rectangle(mx, my, 500, 500);
-            BufferedImage shot = previewScanner.takeScreenshot(r);
-            if (shot != null) previewImage = shot;
-            previewPanel.repaint();
+            previewCapture.execute(() -> {
+                try {
+                    long t0 = System.nanoTime();
+                    BufferedImage shot = previewScanner.takeScreenshot(r);
+                    if (shot != null) {
+                        idlePreview.set(FramePreview.copyOf(shot, r, null, Double.NaN, System.nanoTime() - t0, 0,
+                                r.width, r.height, null));
+                    }
+                } finally {
+                    idleCaptureBusy.set(false);
+                }
+            });
+        }
+
+        /** Match box, score and stage timings of the shown frame. */
+        private void paintMatchOverlay(Graphics g) {
+            FramePreview p = shownPreview;
+            if (p == null) return;
+            Rectangle area = p.getArea();
+            double sx = (double) previewPanel.getWidth() / area.width;
+            double sy = (double) previewPanel.getHeight() / area.height;
+            Rectangle m = p.getMatch();
+            String text = String.format("capture %d ms", p.getCaptureNanos() / 1_000_000);
+            if (p.getMatchNanos() > 0) text += String.format(", match %d ms", p.getMatchNanos() / 1_000_000);
+            if (m != null) {
+                g.setColor(Color.GREEN);
+                g.drawRect((int) (m.x * sx), (int) (m.y * sy), (int) Math.max(1, m.width * sx), (int) Math.max(1, m.height * sy));
+                text += Double.isNaN(p.getScore()) ? ", match found" : String.format(", score %.3f", p.getScore());
+            }
+            int barY = previewPanel.getHeight() - 18;
+            g.setColor(Color.BLACK);
+            g.fillRect(0, barY, previewPanel.getWidth(), 18);
+            g.setColor(Color.WHITE);
+            g.drawString(text, 6, barY + 13);
+        }
+
+        /** One refresh of the default screen (60 Hz if unknown): the preview never needs frames faster. */
+        private static int displayFrameMs() {
+            int hz = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                    .getDisplayMode().getRefreshRate();
+            return 1000 / (hz > 0 ? hz : 60);
         }
 
         private void onStart() {
@@ -533,15 +1392,37 @@ public class AutoClicker {
 
             boolean detectOnPixelChange = detectChangeCheck.isSelected();
             int changeThresholdPercent = parseIntOr(changeThresholdField.getText().trim(), 5);
+            int threads = parseIntOr(threadsField.getText().trim(), 1);
 
             try {
-                currentClicker = new AutoClicker(path, tol, stride, ox, oy, interval, monitor, detectOnPixelChange, changeThresholdPercent);
+                currentClicker = new AutoClicker(path, tol, stride, ox, oy, interval, monitor, detectOnPixelChange,
+                        changeThresholdPercent, threads);
             } catch (RuntimeException ex) {
                 JOptionPane.showMessageDialog(frame, "Failed to create AutoClicker: " + ex.getMessage(),
                         "Error", JOptionPane.ERROR_MESSAGE);
                 return;
             }
 
+            if (currentClicker.getMatcher() != null) {
+                currentClicker.getMatcher().setSearchMode((ImageMatcher.SearchMode) searchModeCombo.getSelectedItem());
+                currentClicker.getMatcher().setFirstMatchInScanOrder(scanOrderCheck.isSelected());
+                if (hotSpotCheck.isSelected()) {
+                    currentClicker.getMatcher().setHotSpotCache(new HotSpotCache(8, 16));
+                }
+            }
+            currentClicker.setIncrementalScan(incrementalCheck.isSelected());
+            currentClicker.setPipelined(pipelinedCheck.isSelected());
+            currentClicker.setBestMatchScoring(bestMatchCheck.isSelected());
+            currentClicker.setScaleFactors(parseScales(scalesField.getText().trim()));
+            currentClicker.setBatchClicking(batchCheck.isSelected(), (ClickOrder) clickOrderCombo.getSelectedItem());
+            currentClicker.setAsyncInput(asyncInputCheck.isSelected());
+            currentClicker.setPreviewEnabled(true);
+            idlePreview.set(null);
+            if (adaptiveCheck.isSelected()) {
+                // the configured interval becomes the idle ceiling
+                int budget = parseIntOr(cpuBudgetField.getText().trim(), 25);
+                currentClicker.setScheduler(new AdaptiveScheduler(50, Math.max(50, interval), budget / 100.0));
+            }
             currentClicker.start();
             startBtn.setEnabled(false);
             stopBtn.setEnabled(true);
@@ -557,6 +1438,19 @@ public class AutoClicker {
             useMousePosBtn.setEnabled(false);
             detectChangeCheck.setEnabled(false);
             changeThresholdField.setEnabled(false);
+            searchModeCombo.setEnabled(false);
+            threadsField.setEnabled(false);
+            scanOrderCheck.setEnabled(false);
+            incrementalCheck.setEnabled(false);
+            hotSpotCheck.setEnabled(false);
+            pipelinedCheck.setEnabled(false);
+            bestMatchCheck.setEnabled(false);
+            adaptiveCheck.setEnabled(false);
+            cpuBudgetField.setEnabled(false);
+            scalesField.setEnabled(false);
+            batchCheck.setEnabled(false);
+            clickOrderCombo.setEnabled(false);
+            asyncInputCheck.setEnabled(false);
         }
 
         private void onStop() {
@@ -578,6 +1472,19 @@ public class AutoClicker {
             useMousePosBtn.setEnabled(true);
             detectChangeCheck.setEnabled(true);
             changeThresholdField.setEnabled(true);
+            searchModeCombo.setEnabled(true);
+            threadsField.setEnabled(true);
+            scanOrderCheck.setEnabled(true);
+            incrementalCheck.setEnabled(true);
+            hotSpotCheck.setEnabled(true);
+            pipelinedCheck.setEnabled(true);
+            bestMatchCheck.setEnabled(true);
+            adaptiveCheck.setEnabled(true);
+            cpuBudgetField.setEnabled(true);
+            scalesField.setEnabled(true);
+            batchCheck.setEnabled(true);
+            clickOrderCombo.setEnabled(true);
+            asyncInputCheck.setEnabled(true);
         }
 
         private void onTestClick() {
@@ -617,6 +1524,21 @@ public class AutoClicker {
             try { return Long.parseLong(txt); }
             catch (NumberFormatException e) { return def; }
         }
+        /** Comma-separated positive scale factors; empty (no multi-scale) when blank or invalid. */
+        private double[] parseScales(String txt) {
+            if (txt.isEmpty()) return new double[0];
+            String[] parts = txt.split(",");
+            double[] out = new double[parts.length];
+            try {
+                for (int i = 0; i < parts.length; i++) {
+                    out[i] = Double.parseDouble(parts[i].trim());
+                    if (!(out[i] > 0)) return new double[0];
+                }
+            } catch (NumberFormatException e) {
+                return new double[0];
+            }
+            return out;
+        }
 
         void show() {
             frame.setVisible(true);
@@ -633,6 +1555,8 @@ public class AutoClicker {
             long interval = args.length > 5 ? parseLongArg(args[5], 3000) : 3000;
 
             AutoClicker clicker = new AutoClicker(imagePath, tolerance, stride, offsetX, offsetY, interval, null, false, 5);
+            String metricsFile = System.getProperty("autoclicker.metricsFile");
+            if (metricsFile != null) clicker.setMetricsSnapshotFile(new File(metricsFile), 5000);
             clicker.start();
             while (clicker.isRunning()) {
                 try { Thread.sleep(1000); } catch (InterruptedException ignored) { break; }
@@ -0,0 +1,366 @@
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Headless batch mode: matches every screenshot in a directory against a set of templates
+ * and writes one CSV or JSONL row per hit (or per miss), with decode and match timings.
+ *
+ * The directory is streamed, not listed up front. Each image is decoded and matched on a
+ * worker pool; at most readAhead images are in flight at any time, so memory stays bounded
+ * by readAhead decoded screenshots however large the corpus is. Rows are written in
+ * directory listing order (the order the files were submitted), not completion order.
+ * Matchers are shared by the workers and keep their own parallelism at 1.
+ */
+public class BatchMatcher {
+    public enum Format { CSV, JSONL }
+
+    private static final String IMAGE_GLOB = "*.{png,PNG,jpg,JPG,jpeg,JPEG,bmp,BMP,gif,GIF}";
+
+    private final Map<String, ImageMatcher> templates;
+    private final int threads;
+    private final int readAhead;
+    private boolean allMatches;
+
+    /**
+     * @param templates matchers by the name written to the output
+     * @param threads   worker threads
+     * @param readAhead images decoded or matched at the same time, at least threads
+     */
+    public BatchMatcher(Map<String, ImageMatcher> templates, int threads, int readAhead) {
+        if (templates.isEmpty()) throw new IllegalArgumentException("No templates given");
+        this.templates = new LinkedHashMap<>(templates);
+        this.threads = Math.max(1, threads);
+        this.readAhead = Math.max(this.threads, readAhead);
+    }
+
+    /** Report every non-overlapping match (ImageMatcher.findAll) instead of only the best one. */
+    public void setAllMatches(boolean allMatches) {
+        this.allMatches = allMatches;
+    }
+
+    public boolean isAllMatches() {
+        return allMatches;
+    }
+
+    /** Matches every image in {@code dir} and writes the rows to {@code out}; does not close it. */
+    public Summary run(Path dir, Writer out, Format format) throws IOException {
+        ImageIO.setUseCache(false); // decode in memory instead of through temp files
+        Summary summary = new Summary();
+        long start = System.nanoTime();
+        if (format == Format.CSV) {
+            out.write("file,template,found,x,y,width,height,confidence,decode_ms,match_ms,error\n");
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "BatchMatcher-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        ArrayDeque<Future<ImageResult>> inFlight = new ArrayDeque<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, IMAGE_GLOB)) {
+            for (Path file : files) {
+                if (!Files.isRegularFile(file)) continue;
+                if (inFlight.size() >= readAhead) write(await(inFlight.poll()), out, format, summary);
+                inFlight.add(pool.submit(() -> process(file)));
+            }
+            while (!inFlight.isEmpty()) write(await(inFlight.poll()), out, format, summary);
+        } finally {
+            for (Future<ImageResult> f : inFlight) f.cancel(true);
+            pool.shutdownNow();
+        }
+        out.flush();
+        summary.elapsedNanos = System.nanoTime() - start;
+        return summary;
+    }
+
+    private static ImageResult await(Future<ImageResult> f) throws IOException {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a batch result", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Batch matching failed", e.getCause());
+        }
+    }
+
+    private ImageResult process(Path file) {
+        ImageResult r = new ImageResult(file.getFileName().toString());
+        long t0 = System.nanoTime();
+        BufferedImage img;
+        try {
+            img = ImageIO.read(file.toFile());
+            if (img == null) throw new IOException("Unsupported image format");
+        } catch (IOException e) {
+            r.error = e.getMessage();
+            return r;
+        }
+        PixelFrame frame = PixelFrame.of(img);
+        r.decodeNanos = System.nanoTime() - t0;
+        for (Map.Entry<String, ImageMatcher> e : templates.entrySet()) {
+            long t1 = System.nanoTime();
+            List<MatchResult> hits;
+            if (allMatches) {
+                hits = e.getValue().findAll(frame);
+            } else {
+                MatchResult best = e.getValue().findBestMatch(frame);
+                hits = best == null ? Collections.emptyList() : Collections.singletonList(best);
+            }
+            r.templates.add(new TemplateResult(e.getKey(), hits, System.nanoTime() - t1));
+        }
+        return r;
+    }
+
+    private static void write(ImageResult r, Writer out, Format format, Summary summary) throws IOException {
+        summary.images++;
+        if (r.error != null) {
+            summary.failed++;
+            out.write(format == Format.CSV
+                    ? csv(r.file) + ",,,,,,,,,," + csv(r.error) + "\n"
+                    : "{\"file\":" + json(r.file) + ",\"error\":" + json(r.error) + "}\n");
+            return;
+        }
+        summary.decodeNanos += r.decodeNanos;
+        for (TemplateResult t : r.templates) {
+            summary.matchNanos += t.matchNanos;
+            summary.hits += t.hits.size();
+            if (t.hits.isEmpty()) {
+                out.write(row(format, r, t, null));
+            }
+            for (MatchResult m : t.hits) {
+                out.write(row(format, r, t, m));
+            }
+        }
+    }
+
+    private static String row(Format format, ImageResult r, TemplateResult t, MatchResult m) {
+        String decodeMs = ms(r.decodeNanos);
+        String matchMs = ms(t.matchNanos);
+        StringBuilder sb = new StringBuilder(128);
+        if (format == Format.CSV) {
+            sb.append(csv(r.file)).append(',').append(csv(t.name)).append(',').append(m != null);
+            if (m == null) {
+                sb.append(",,,,,");
+            } else {
+                Rectangle b = m.getBounds();
+                sb.append(',').append(b.x).append(',').append(b.y).append(',').append(b.width)
+                        .append(',').append(b.height).append(',').append(confidence(m));
+            }
+            return sb.append(',').append(decodeMs).append(',').append(matchMs).append(",\n").toString();
+        }
+        sb.append("{\"file\":").append(json(r.file)).append(",\"template\":").append(json(t.name))
+                .append(",\"found\":").append(m != null);
+        if (m != null) {
+            Rectangle b = m.getBounds();
+            sb.append(",\"x\":").append(b.x).append(",\"y\":").append(b.y)
+                    .append(",\"width\":").append(b.width).append(",\"height\":").append(b.height)
+                    .append(",\"confidence\":").append(confidence(m));
+        }
+        return sb.append(",\"decodeMs\":").append(decodeMs).append(",\"matchMs\":").append(matchMs)
+                .append("}\n").toString();
+    }
+
+    private static String confidence(MatchResult m) {
+        return String.format(Locale.ROOT, "%.4f", m.getConfidence());
+    }
+
+    private static String ms(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    private static String csv(String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) return s;
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+
+    private static String json(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /** Totals of one run(); timings summed over all images and templates. */
+    public static final class Summary {
+        private long images;
+        private long failed;
+        private long hits;
+        private long decodeNanos;
+        private long matchNanos;
+        private long elapsedNanos;
+
+        public long getImages() {
+            return images;
+        }
+
+        /** Images that could not be read or decoded. */
+        public long getFailed() {
+            return failed;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public double getElapsedMs() {
+            return elapsedNanos / 1e6;
+        }
+
+        public double getImagesPerSecond() {
+            return elapsedNanos == 0 ? 0 : images * 1e9 / elapsedNanos;
+        }
+
+        public double getMeanDecodeMs() {
+            long decoded = images - failed;
+            return decoded == 0 ? 0 : decodeNanos / 1e6 / decoded;
+        }
+
+        public double getMeanMatchMs() {
+            long decoded = images - failed;
+            return decoded == 0 ? 0 : matchNanos / 1e6 / decoded;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "%d images (%d failed), %d hits in %.0f ms: %.1f images/s, decode %.1f ms, match %.1f ms per image",
+                    images, failed, hits, getElapsedMs(), getImagesPerSecond(), getMeanDecodeMs(), getMeanMatchMs());
+        }
+    }
+
+    private static final class ImageResult {
+        final String file;
+        final List<TemplateResult> templates = new ArrayList<>();
+        long decodeNanos;
+        String error;
+
+        ImageResult(String file) {
+            this.file = file;
+        }
+    }
+
+    private static final class TemplateResult {
+        final String name;
+        final List<MatchResult> hits;
+        final long matchNanos;
+
+        TemplateResult(String name, List<MatchResult> hits, long matchNanos) {
+            this.name = name;
+            this.hits = hits;
+            this.matchNanos = matchNanos;
+        }
+    }
+
+    private static final String USAGE = "Usage: BatchMatcher [--tolerance N] [--stride N] [--mode FULL|PYRAMID|EXACT_HASH|NCC|AUTO]\n"
+            + "       [--threads N] [--read-ahead N] [--format csv|jsonl] [--out FILE] [--all]\n"
+            + "       <screenshot-dir> <template-file-or-dir>...";
+
+    /** Command line entry point; rows go to --out or stdout, the summary to stderr. */
+    public static void main(String[] args) throws IOException {
+        int tolerance = 30;
+        int stride = 1;
+        ImageMatcher.SearchMode mode = ImageMatcher.SearchMode.FULL;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int readAhead = -1;
+        Format format = Format.CSV;
+        String outFile = null;
+        boolean all = false;
+        List<String> positional = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            String a = args[i];
+            boolean hasValue = i + 1 < args.length;
+            if (a.equals("--all")) {
+                all = true;
+            } else if (a.startsWith("--") && !hasValue) {
+                System.err.println("Missing value for " + a + "\n" + USAGE);
+                System.exit(2);
+            } else if (a.equals("--tolerance")) {
+                tolerance = Integer.parseInt(args[++i]);
+            } else if (a.equals("--stride")) {
+                stride = Integer.parseInt(args[++i]);
+            } else if (a.equals("--mode")) {
+                mode = ImageMatcher.SearchMode.valueOf(args[++i].toUpperCase(Locale.ROOT));
+            } else if (a.equals("--threads")) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (a.equals("--read-ahead")) {
+                readAhead = Integer.parseInt(args[++i]);
+            } else if (a.equals("--format")) {
+                format = Format.valueOf(args[++i].toUpperCase(Locale.ROOT));
+            } else if (a.equals("--out")) {
+                outFile = args[++i];
+            } else if (a.startsWith("--")) {
+                System.err.println("Unknown option " + a + "\n" + USAGE);
+                System.exit(2);
+            } else {
+                positional.add(a);
+            }
+        }
+        if (positional.size() < 2) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        Map<String, ImageMatcher> templates = new LinkedHashMap<>();
+        for (String t : positional.subList(1, positional.size())) {
+            Path p = Paths.get(t);
+            List<Path> files = new ArrayList<>();
+            if (Files.isDirectory(p)) {
+                try (DirectoryStream<Path> ds = Files.newDirectoryStream(p, IMAGE_GLOB)) {
+                    for (Path f : ds) files.add(f);
+                }
+                Collections.sort(files);
+            } else {
+                files.add(p);
+            }
+            for (Path f : files) {
+                // not the path constructor: its log line would end up in the rows on stdout
+                BufferedImage img = ImageIO.read(f.toFile());
+                if (img == null) throw new IOException("Unsupported template image: " + f);
+                ImageMatcher m = new ImageMatcher(img, tolerance, stride);
+                m.setSearchMode(mode);
+                templates.put(f.getFileName().toString(), m);
+            }
+        }
+
+        BatchMatcher batch = new BatchMatcher(templates, threads, readAhead < 0 ? 2 * threads : readAhead);
+        batch.setAllMatches(all);
+        Writer out = new BufferedWriter(new OutputStreamWriter(
+                outFile == null ? System.out : Files.newOutputStream(Paths.get(outFile)), StandardCharsets.UTF_8));
+        Summary summary;
+        try {
+            summary = batch.run(Paths.get(positional.get(0)), out, format);
+        } finally {
+            if (outFile != null) out.close();
+            else out.flush();
+        }
+        System.err.println("BatchMatcher: " + summary);
+    }
+}
@@ -0,0 +1,34 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Decides whether a click took effect by looking only at the area around the clicked match,
+ * instead of recapturing and rescanning the whole screen.
+ */
+public interface ClickVerifier {
+    /**
+     * @param roi      fresh capture of the clicked match rectangle plus a margin
+     * @param expected where the template was before the click, in roi coordinates
+     * @return true when the click worked (typically: the template is gone)
+     */
+    boolean clickTookEffect(ImageMatcher matcher, BufferedImage roi, Rectangle expected);
+
+    /** The template no longer matches at exactly the clicked position. One template-sized check. */
+    ClickVerifier GONE_AT_LOCATION = (matcher, roi, expected) ->
+            !matcher.matchesAt(PixelFrame.of(roi), expected.x, expected.y);
+
+    /**
+     * The template matches nowhere in the captured area, so a button that merely shifted by a
+     * few pixels (within the margin) still counts as present.
+     */
+    ClickVerifier GONE_FROM_AREA = (matcher, roi, expected) -> {
+        PixelFrame f = PixelFrame.of(roi);
+        if (matcher.usesNcc(f)) return matcher.findMatch(f) == null;
+        for (int x = 0; x <= f.width - matcher.getTemplateWidth(); x++) {
+            for (int y = 0; y <= f.height - matcher.getTemplateHeight(); y++) {
+                if (matcher.matchesAt(f, x, y)) return false;
+            }
+        }
+        return true;
+    };
+}
@@ -0,0 +1,273 @@
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-stage latency histograms and outcome counters for one AutoClicker.
+ *
+ * Stages: capture (FrameSource.capture), match (findMatch), click (InputSink.click) and verify
+ * (re-capture plus findMatch after a click). Allocation per cycle is read from the HotSpot
+ * ThreadMXBean extension when present. Exposed as a standard MBean under
+ * "AutoClicker:type=ClickerMetrics,name=..." and optionally written to a JSON file periodically.
+ */
+public class ClickerMetrics implements ClickerMetricsMBean {
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    private final LatencyHistogram capture = new LatencyHistogram();
+    private final LatencyHistogram match = new LatencyHistogram();
+    private final LatencyHistogram click = new LatencyHistogram();
+    private final LatencyHistogram verify = new LatencyHistogram();
+
+    private final LongAdder scans = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder verifyFailures = new LongAdder();
+    private final LongAdder cycles = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+
+    private final String name = "clicker-" + INSTANCES.incrementAndGet();
+    private ObjectName registeredAs;
+    private ScheduledExecutorService snapshotter;
+
+    public LatencyHistogram getCaptureLatency() {
+        return capture;
+    }
+
+    public LatencyHistogram getMatchLatency() {
+        return match;
+    }
+
+    public LatencyHistogram getClickLatency() {
+        return click;
+    }
+
+    public LatencyHistogram getVerifyLatency() {
+        return verify;
+    }
+
+    void recordScan() {
+        scans.increment();
+    }
+
+    void recordMatch(boolean hit) {
+        if (hit) hits.increment();
+        else misses.increment();
+    }
+
+    void recordRetry() {
+        retries.increment();
+    }
+
+    void recordVerifyFailure() {
+        verifyFailures.increment();
+    }
+
+    /** Bytes the current thread has allocated so far, or -1 when unsupported. */
+    static long threadAllocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) return -1;
+        com.sun.management.ThreadMXBean hs = (com.sun.management.ThreadMXBean) threads;
+        if (!hs.isThreadAllocatedMemorySupported() || !hs.isThreadAllocatedMemoryEnabled()) return -1;
+        return hs.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /** Record one scan cycle's allocation, given threadAllocatedBytes() from its start. */
+    void recordCycleAllocation(long allocatedAtStart) {
+        if (allocatedAtStart < 0) return;
+        long now = threadAllocatedBytes();
+        if (now < allocatedAtStart) return;
+        cycles.increment();
+        allocatedBytes.add(now - allocatedAtStart);
+    }
+
+    @Override
+    public long getScans() {
+        return scans.sum();
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    @Override
+    public long getVerifyFailures() {
+        return verifyFailures.sum();
+    }
+
+    @Override
+    public double getCaptureP50Ms() {
+        return capture.getPercentileMs(0.5);
+    }
+
+    @Override
+    public double getCaptureP99Ms() {
+        return capture.getPercentileMs(0.99);
+    }
+
+    @Override
+    public double getMatchP50Ms() {
+        return match.getPercentileMs(0.5);
+    }
+
+    @Override
+    public double getMatchP99Ms() {
+        return match.getPercentileMs(0.99);
+    }
+
+    @Override
+    public double getClickP50Ms() {
+        return click.getPercentileMs(0.5);
+    }
+
+    @Override
+    public double getClickP99Ms() {
+        return click.getPercentileMs(0.99);
+    }
+
+    @Override
+    public double getVerifyP50Ms() {
+        return verify.getPercentileMs(0.5);
+    }
+
+    @Override
+    public double getVerifyP99Ms() {
+        return verify.getPercentileMs(0.99);
+    }
+
+    @Override
+    public long getAllocatedBytesPerCycle() {
+        long n = cycles.sum();
+        return n == 0 ? -1 : allocatedBytes.sum() / n;
+    }
+
+    @Override
+    public String getSnapshotJson() {
+        StringBuilder sb = new StringBuilder(512);
+        sb.append("{\"name\":\"").append(name).append('"');
+        sb.append(",\"timestamp\":\"").append(Instant.now()).append('"');
+        sb.append(",\"scans\":").append(getScans());
+        sb.append(",\"hits\":").append(getHits());
+        sb.append(",\"misses\":").append(getMisses());
+        sb.append(",\"retries\":").append(getRetries());
+        sb.append(",\"verifyFailures\":").append(getVerifyFailures());
+        sb.append(",\"allocatedBytesPerCycle\":").append(getAllocatedBytesPerCycle());
+        sb.append(",\"stages\":{");
+        appendStage(sb, "capture", capture).append(',');
+        appendStage(sb, "match", match).append(',');
+        appendStage(sb, "click", click).append(',');
+        appendStage(sb, "verify", verify);
+        return sb.append("}}").toString();
+    }
+
+    private static StringBuilder appendStage(StringBuilder sb, String stage, LatencyHistogram h) {
+        return sb.append('"').append(stage).append("\":{")
+                .append("\"count\":").append(h.getCount())
+                .append(",\"meanMs\":").append(ms(h.getMeanMs()))
+                .append(",\"p50Ms\":").append(ms(h.getPercentileMs(0.5)))
+                .append(",\"p90Ms\":").append(ms(h.getPercentileMs(0.9)))
+                .append(",\"p99Ms\":").append(ms(h.getPercentileMs(0.99)))
+                .append(",\"maxMs\":").append(ms(h.getMaxMs()))
+                .append('}');
+    }
+
+    private static String ms(double v) {
+        return String.format(Locale.ROOT, "%.3f", v);
+    }
+
+    @Override
+    public void reset() {
+        capture.reset();
+        match.reset();
+        click.reset();
+        verify.reset();
+        scans.reset();
+        hits.reset();
+        misses.reset();
+        retries.reset();
+        verifyFailures.reset();
+        cycles.reset();
+        allocatedBytes.reset();
+    }
+
+    /** Register with the platform MBean server. Failures are logged, not thrown. */
+    public synchronized void register() {
+        if (registeredAs != null) return;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName on = new ObjectName("AutoClicker:type=ClickerMetrics,name=" + name);
+            server.registerMBean(this, on);
+            registeredAs = on;
+        } catch (JMException ex) {
+            System.err.println("Could not register metrics MBean: " + ex.getMessage());
+        }
+    }
+
+    public synchronized void unregister() {
+        if (registeredAs == null) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredAs);
+        } catch (JMException ex) {
+            System.err.println("Could not unregister metrics MBean: " + ex.getMessage());
+        }
+        registeredAs = null;
+    }
+
+    /**
+     * Write getSnapshotJson() to {@code file} every {@code periodMs}, replacing it atomically so
+     * readers never see a partial file.
+     */
+    public synchronized void startSnapshots(File file, long periodMs) {
+        stopSnapshots();
+        snapshotter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "AutoClicker-Metrics");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(100, periodMs);
+        snapshotter.scheduleAtFixedRate(() -> writeSnapshot(file), period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopSnapshots() {
+        if (snapshotter != null) {
+            snapshotter.shutdownNow();
+            snapshotter = null;
+        }
+    }
+
+    public void writeSnapshot(File file) {
+        try {
+            File dir = file.getAbsoluteFile().getParentFile();
+            File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+            Files.write(tmp.toPath(), getSnapshotJson().getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            System.err.println("Could not write metrics snapshot " + file + ": " + ex.getMessage());
+        }
+    }
+}
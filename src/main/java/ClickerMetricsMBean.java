@@ -0,0 +1,39 @@
+/**
+ * JMX view of ClickerMetrics. Latencies are in milliseconds; percentiles come from
+ * LatencyHistogram and are within 12.5% of the exact value.
+ */
+public interface ClickerMetricsMBean {
+    long getScans();
+
+    long getHits();
+
+    long getMisses();
+
+    long getRetries();
+
+    long getVerifyFailures();
+
+    double getCaptureP50Ms();
+
+    double getCaptureP99Ms();
+
+    double getMatchP50Ms();
+
+    double getMatchP99Ms();
+
+    double getClickP50Ms();
+
+    double getClickP99Ms();
+
+    double getVerifyP50Ms();
+
+    double getVerifyP99Ms();
+
+    /** Mean bytes allocated by the worker thread per scan cycle, -1 when the JVM cannot tell. */
+    long getAllocatedBytesPerCycle();
+
+    /** Everything above as one JSON object, the same text the snapshot file holds. */
+    String getSnapshotJson();
+
+    void reset();
+}
@@ -0,0 +1,57 @@
+/**
+ * Decaying color histogram of recent frames, 4 bits per channel (4096 cells). Each update
+ * halves the old counts before adding a sparse sample of the new frame, so the histogram
+ * follows what the screen has looked like lately rather than since startup.
+ */
+final class ColorHistogram {
+    static final int BITS = 4;
+    private static final int SHIFT = 8 - BITS;
+    private static final int SIDE = 1 << BITS;
+
+    private final int[] counts = new int[SIDE * SIDE * SIDE];
+    private long total;
+
+    static int cell(int r, int g, int b) {
+        return ((r >> SHIFT) << (2 * BITS)) | ((g >> SHIFT) << BITS) | (b >> SHIFT);
+    }
+
+    void decayAndAdd(PixelFrame f, int step) {
+        total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] >>= 1;
+            total += counts[i];
+        }
+        final int[] data = f.data;
+        for (int y = 0; y < f.height; y += step) {
+            int p = f.offset + y * f.scanline;
+            for (int x = 0; x < f.width; x += step) {
+                int rgb = data[p + x];
+                counts[cell((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF)]++;
+                total++;
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        return total == 0;
+    }
+
+    /** Fraction of recent samples whose cell intersects the tolerance cube around {@code rgb}. */
+    double frequencyNear(int rgb, int tolerance) {
+        if (total == 0) return 0;
+        int r = (rgb >> 16) & 0xFF, g = (rgb >> 8) & 0xFF, b = rgb & 0xFF;
+        long n = 0;
+        for (int cr = clamp(r - tolerance) >> SHIFT; cr <= clamp(r + tolerance) >> SHIFT; cr++) {
+            for (int cg = clamp(g - tolerance) >> SHIFT; cg <= clamp(g + tolerance) >> SHIFT; cg++) {
+                for (int cb = clamp(b - tolerance) >> SHIFT; cb <= clamp(b + tolerance) >> SHIFT; cb++) {
+                    n += counts[(cr << (2 * BITS)) | (cg << BITS) | cb];
+                }
+            }
+        }
+        return (double) n / total;
+    }
+
+    private static int clamp(int c) {
+        return Math.max(0, Math.min(255, c));
+    }
+}
@@ -0,0 +1,180 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The order in which ImageMatcher checks a template's opaque pixels at a candidate offset.
+ *
+ * A match needs every opaque pixel within tolerance, so the order never changes the result,
+ * only how soon a wrong offset is rejected. The first few "probe" pixels are the most
+ * distinctive ones: colors that are rare on recent frames (ColorHistogram), or, before any
+ * frame was seen, rare within the template and with high local contrast. Probes are chosen
+ * with pairwise different colors, so a background that happens to match one probe is unlikely
+ * to match the next. The remaining pixels follow in column order.
+ *
+ * The same remaining pixels are also kept in row order, split into runs of horizontally
+ * adjacent pixels. A run is contiguous in the screen's memory, which the vectorized
+ * PixelKernels need; the scalar check keeps the column order.
+ */
+final class CompiledTemplate {
+    static final int MAX_PROBES = 12;
+
+    final int[] dx;
+    final int[] dy;
+    final int[] rgb;
+    final int probes;
+    // non-probe pixels in row order; run r starts at template pixel (runX[r], runY[r]) and
+    // covers runRgb[runStart[r], runStart[r] + runLength[r])
+    final int[] runRgb;
+    final int[] runX;
+    final int[] runY;
+    final int[] runStart;
+    final int[] runLength;
+
+    private CompiledTemplate(int[] dx, int[] dy, int[] rgb, int probes, int[] runRgb,
+                             int[] runX, int[] runY, int[] runStart, int[] runLength) {
+        this.dx = dx;
+        this.dy = dy;
+        this.rgb = rgb;
+        this.probes = probes;
+        this.runRgb = runRgb;
+        this.runX = runX;
+        this.runY = runY;
+        this.runStart = runStart;
+        this.runLength = runLength;
+    }
+
+    /**
+     * @param background recent frame colors, or null/empty to rank by template statistics only
+     */
+    static CompiledTemplate compile(int[] argb, int tw, int th, int tolerance, ColorHistogram background) {
+        int n = 0;
+        for (int p : argb) {
+            if (((p >> 24) & 0xFF) != 0) n++;
+        }
+        // column order, like the original full check
+        int[] px = new int[n];
+        int[] py = new int[n];
+        int[] index = new int[tw * th]; // template pixel -> position in px/py
+        n = 0;
+        for (int x = 0; x < tw; x++) {
+            for (int y = 0; y < th; y++) {
+                if (((argb[y * tw + x] >> 24) & 0xFF) == 0) continue;
+                px[n] = x;
+                py[n] = y;
+                index[y * tw + x] = n;
+                n++;
+            }
+        }
+
+        Map<Integer, Integer> inTemplate = new HashMap<>();
+        for (int i = 0; i < n; i++) inTemplate.merge(argb[py[i] * tw + px[i]], 1, Integer::sum);
+        boolean useBackground = background != null && !background.isEmpty();
+        Map<Integer, Double> onScreen = new HashMap<>();
+
+        // lower score = more distinctive
+        double[] score = new double[n];
+        for (int i = 0; i < n; i++) {
+            int c = argb[py[i] * tw + px[i]];
+            double templateFreq = (double) inTemplate.get(c) / n;
+            double contrast = localContrast(argb, tw, th, px[i], py[i]) / 442.0; // max RGB distance
+            if (useBackground) {
+                double screenFreq = onScreen.computeIfAbsent(c, k -> background.frequencyNear(k, tolerance));
+                score[i] = screenFreq + 0.01 * templateFreq - 0.001 * contrast;
+            } else {
+                score[i] = templateFreq - 0.1 * contrast;
+            }
+        }
+
+        Integer[] byScore = new Integer[n];
+        for (int i = 0; i < n; i++) byScore[i] = i;
+        Arrays.sort(byScore, (a, b) -> Double.compare(score[a], score[b]));
+
+        List<Integer> probes = new ArrayList<>();
+        boolean[] taken = new boolean[n];
+        for (int k = 0; k < n && probes.size() < MAX_PROBES; k++) {
+            int i = byScore[k];
+            int c = argb[py[i] * tw + px[i]];
+            boolean distinct = true;
+            for (int j : probes) {
+                if (distance2(c, argb[py[j] * tw + px[j]]) <= (long) (2 * tolerance) * (2 * tolerance)) {
+                    distinct = false;
+                    break;
+                }
+            }
+            if (!distinct) continue;
+            probes.add(i);
+            taken[i] = true;
+        }
+
+        int[] dx = new int[n];
+        int[] dy = new int[n];
+        int[] rgb = new int[n];
+        int o = 0;
+        for (int i : probes) {
+            dx[o] = px[i];
+            dy[o] = py[i];
+            rgb[o] = argb[py[i] * tw + px[i]];
+            o++;
+        }
+        for (int i = 0; i < n; i++) {
+            if (taken[i]) continue;
+            dx[o] = px[i];
+            dy[o] = py[i];
+            rgb[o] = argb[py[i] * tw + px[i]];
+            o++;
+        }
+
+        int[] runRgb = new int[n - probes.size()];
+        int[] runX = new int[runRgb.length];
+        int[] runY = new int[runRgb.length];
+        int[] runStart = new int[runRgb.length];
+        int[] runLength = new int[runRgb.length];
+        int runs = 0;
+        o = 0;
+        for (int y = 0; y < th; y++) {
+            boolean open = false;
+            for (int x = 0; x < tw; x++) {
+                int p = argb[y * tw + x];
+                if (((p >> 24) & 0xFF) == 0 || taken[index[y * tw + x]]) {
+                    open = false;
+                    continue;
+                }
+                if (!open) {
+                    runX[runs] = x;
+                    runY[runs] = y;
+                    runStart[runs] = o;
+                    runs++;
+                    open = true;
+                }
+                runLength[runs - 1]++;
+                runRgb[o++] = p;
+            }
+        }
+        return new CompiledTemplate(dx, dy, rgb, probes.size(), runRgb, Arrays.copyOf(runX, runs),
+                Arrays.copyOf(runY, runs), Arrays.copyOf(runStart, runs), Arrays.copyOf(runLength, runs));
+    }
+
+    /** Largest RGB distance to an opaque 4-neighbor. */
+    private static double localContrast(int[] argb, int tw, int th, int x, int y) {
+        int c = argb[y * tw + x];
+        long best = 0;
+        int[][] nb = {{x - 1, y}, {x + 1, y}, {x, y - 1}, {x, y + 1}};
+        for (int[] q : nb) {
+            if (q[0] < 0 || q[1] < 0 || q[0] >= tw || q[1] >= th) continue;
+            int p = argb[q[1] * tw + q[0]];
+            if (((p >> 24) & 0xFF) == 0) continue;
+            best = Math.max(best, distance2(c, p));
+        }
+        return Math.sqrt(best);
+    }
+
+    private static long distance2(int a, int b) {
+        int dr = ((a >> 16) & 0xFF) - ((b >> 16) & 0xFF);
+        int dg = ((a >> 8) & 0xFF) - ((b >> 8) & 0xFF);
+        int db = (a & 0xFF) - (b & 0xFF);
+        return (long) dr * dr + dg * dg + db * db;
+    }
+}
@@ -0,0 +1,71 @@
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Replays the PNG files of a directory (in file name order) as frames, one per capture.
+ * After the last file it starts over when looping, otherwise it keeps returning the last frame.
+ */
+public class DirectoryFrameSource implements FrameSource {
+    private final File[] files;
+    private final boolean loop;
+    private final Rectangle bounds;
+    private int next = 0;
+    private BufferedImage current;
+
+    public DirectoryFrameSource(String directory, boolean loop) {
+        File dir = new File(directory);
+        File[] pngs = dir.listFiles((d, name) -> name.toLowerCase().endsWith(".png"));
+        if (pngs == null || pngs.length == 0) {
+            throw new RuntimeException("No PNG frames in " + directory);
+        }
+        Arrays.sort(pngs);
+        this.files = pngs;
+        this.loop = loop;
+        BufferedImage first = read(files[0]);
+        this.bounds = new Rectangle(0, 0, first.getWidth(), first.getHeight());
+    }
+
+    private static BufferedImage read(File f) {
+        try {
+            BufferedImage img = ImageIO.read(f);
+            if (img == null) throw new IOException("Unsupported image format: " + f);
+            return img;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read frame " + f, e);
+        }
+    }
+
+    public int getFrameCount() {
+        return files.length;
+    }
+
+    @Override
+    public synchronized BufferedImage capture() {
+        if (next < files.length) {
+            current = read(files[next++]);
+            if (next == files.length && loop) next = 0;
+        }
+        return current;
+    }
+
+    @Override
+    public BufferedImage capture(Rectangle region) {
+        return crop(capture(), region);
+    }
+
+    @Override
+    public Rectangle getBounds() {
+        return new Rectangle(bounds);
+    }
+
+    /** Sub-image of a full frame for a region in frame coordinates, clamped; null when empty. */
+    static BufferedImage crop(BufferedImage frame, Rectangle region) {
+        Rectangle r = region.intersection(new Rectangle(0, 0, frame.getWidth(), frame.getHeight()));
+        if (r.width <= 0 || r.height <= 0) return null;
+        return frame.getSubimage(r.x, r.y, r.width, r.height);
+    }
+}
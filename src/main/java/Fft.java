@@ -0,0 +1,121 @@
+/**
+ * Iterative radix-2 complex FFT of one power-of-two size, plus the 2D row/column passes used
+ * by NccTemplate. Arrays are split into real and imaginary parts. The inverse is unscaled: a
+ * forward/inverse round trip multiplies every value by n (n * n in 2D).
+ */
+final class Fft {
+    final int n;
+    private final int[] rev;
+    private final double[] cos;
+    private final double[] sin;
+
+    Fft(int n) {
+        if (n < 1 || Integer.bitCount(n) != 1) {
+            throw new IllegalArgumentException("FFT size must be a power of two: " + n);
+        }
+        this.n = n;
+        int bits = Integer.numberOfTrailingZeros(n);
+        rev = new int[n];
+        for (int i = 0; i < n; i++) rev[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+        cos = new double[n];
+        sin = new double[n];
+        for (int half = 1; half < n; half <<= 1) {
+            for (int k = 0; k < half; k++) {
+                double a = -Math.PI * k / half;
+                cos[half + k] = Math.cos(a);
+                sin[half + k] = Math.sin(a);
+            }
+        }
+    }
+
+    /** In-place transform of re/im[off, off + n). */
+    void transform(double[] re, double[] im, int off, boolean inverse) {
+        for (int i = 0; i < n; i++) {
+            int j = rev[i];
+            if (j > i) {
+                double t = re[off + i];
+                re[off + i] = re[off + j];
+                re[off + j] = t;
+                t = im[off + i];
+                im[off + i] = im[off + j];
+                im[off + j] = t;
+            }
+        }
+        double sign = inverse ? -1 : 1;
+        for (int half = 1; half < n; half <<= 1) {
+            // stage twiddles are stored contiguously at [half, 2 * half)
+            for (int i = off; i < off + n; i += half << 1) {
+                for (int k = 0; k < half; k++) {
+                    double wr = cos[half + k];
+                    double wi = sign * sin[half + k];
+                    int a = i + k;
+                    int b = a + half;
+                    double xr = re[b] * wr - im[b] * wi;
+                    double xi = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - xr;
+                    im[b] = im[a] - xi;
+                    re[a] += xr;
+                    im[a] += xi;
+                }
+            }
+        }
+    }
+
+    /**
+     * Forward transform of an n x n row-major block whose rows from {@code rows} on are all
+     * zero (their row pass is skipped).
+     */
+    void forward2d(double[] re, double[] im, int rows) {
+        for (int y = 0; y < rows; y++) transform(re, im, y * n, false);
+        columns(re, im, false);
+    }
+
+    /** Unscaled inverse 2D transform; only the first {@code rows} rows of the result are valid. */
+    void inverse2d(double[] re, double[] im, int rows) {
+        columns(re, im, true);
+        for (int y = 0; y < rows; y++) transform(re, im, y * n, true);
+    }
+
+    /**
+     * Transforms every column at once: the butterflies of a column transform are applied to
+     * whole rows, so memory is walked contiguously instead of with a stride of n.
+     */
+    private void columns(double[] re, double[] im, boolean inverse) {
+        for (int i = 0; i < n; i++) {
+            int j = rev[i];
+            if (j > i) {
+                swapRows(re, i, j);
+                swapRows(im, i, j);
+            }
+        }
+        double sign = inverse ? -1 : 1;
+        for (int half = 1; half < n; half <<= 1) {
+            for (int k = 0; k < half; k++) {
+                double wr = cos[half + k];
+                double wi = sign * sin[half + k];
+                for (int a = k; a < n; a += half << 1) {
+                    int ra = a * n;
+                    int rb = (a + half) * n;
+                    for (int x = 0; x < n; x++) {
+                        double br = re[rb + x];
+                        double bi = im[rb + x];
+                        double xr = br * wr - bi * wi;
+                        double xi = br * wi + bi * wr;
+                        re[rb + x] = re[ra + x] - xr;
+                        im[rb + x] = im[ra + x] - xi;
+                        re[ra + x] += xr;
+                        im[ra + x] += xi;
+                    }
+                }
+            }
+        }
+    }
+
+    private void swapRows(double[] v, int i, int j) {
+        for (int x = 0, p = i * n, q = j * n; x < n; x++, p++, q++) {
+            double t = v[p];
+            v[p] = v[q];
+            v[q] = t;
+        }
+    }
+}
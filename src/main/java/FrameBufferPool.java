@@ -0,0 +1,54 @@
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Small process-wide pool of TYPE_INT_RGB frame buffers for FrameSource.captureInto.
+ *
+ * A clicker borrows a buffer for one scan cycle and returns it afterwards, so the number of
+ * full-screen buffers alive tracks the number of cycles running at the same moment rather than
+ * the number of clickers. The pool holds at most {@code capacity} idle buffers, and only ever
+ * hands out buffers it created, so a caller's own images are never overwritten.
+ */
+public final class FrameBufferPool {
+    private static final FrameBufferPool SHARED = new FrameBufferPool(4);
+
+    private final int capacity;
+    private final ArrayDeque<BufferedImage> idle = new ArrayDeque<>();
+
+    public FrameBufferPool(int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    public static FrameBufferPool shared() {
+        return SHARED;
+    }
+
+    /** An idle buffer of exactly this size, or a new one when there is none. */
+    public BufferedImage acquire(int width, int height) {
+        synchronized (this) {
+            for (Iterator<BufferedImage> it = idle.iterator(); it.hasNext(); ) {
+                BufferedImage img = it.next();
+                if (img.getWidth() == width && img.getHeight() == height) {
+                    it.remove();
+                    return img;
+                }
+            }
+        }
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    }
+
+    /** Hand back a buffer obtained from acquire(). Null is ignored. */
+    public synchronized void release(BufferedImage img) {
+        if (img == null) return;
+        for (BufferedImage b : idle) {
+            if (b == img) return;
+        }
+        if (idle.size() >= capacity) idle.pollFirst(); // the least recently returned
+        idle.addLast(img);
+    }
+
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+}
@@ -0,0 +1,138 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.RasterFormatException;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Runs capture on its own thread so the next frame is grabbed while the previous one is matched.
+ *
+ * Frames live in a fixed ring of slots. The capture thread fills a free slot and hands it over
+ * through a bounded queue; the consumer take()s a frame and release()s the slot when done with it.
+ * When the consumer falls behind and no slot is free, the oldest frame still waiting is recycled
+ * (drop-oldest), so the consumer always gets the freshest capture and memory stays bounded.
+ */
+public class FramePipeline {
+    /** One slot of the ring. Owned by the consumer between take() and release(). */
+    public static final class Frame {
+        private BufferedImage image;
+        private long sequence;
+        private long captureStartNanos;
+        private long captureEndNanos;
+
+        public BufferedImage getImage() {
+            return image;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public long getCaptureStartNanos() {
+            return captureStartNanos;
+        }
+
+        public long getCaptureEndNanos() {
+            return captureEndNanos;
+        }
+    }
+
+    private final FrameSource source;
+    private final Rectangle region;
+    private final long intervalMs;
+    private final ArrayBlockingQueue<Frame> free;
+    private final ArrayBlockingQueue<Frame> ready;
+
+    private volatile boolean running;
+    private Thread captureThread;
+    private long sequence; // capture-thread confined
+    private volatile long captured;
+    private volatile long dropped;
+
+    /**
+     * @param region     capture region in screen coordinates, or null for the whole source
+     * @param slots      number of frame buffers, at least 2
+     * @param intervalMs minimum time between the starts of two captures
+     */
+    public FramePipeline(FrameSource source, Rectangle region, int slots, long intervalMs) {
+        this.source = source;
+        this.region = region;
+        this.intervalMs = Math.max(0, intervalMs);
+        int n = Math.max(2, slots);
+        this.free = new ArrayBlockingQueue<>(n);
+        this.ready = new ArrayBlockingQueue<>(n);
+        for (int i = 0; i < n; i++) free.add(new Frame());
+    }
+
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        captureThread = new Thread(this::captureLoop, "AutoClicker-Capture");
+        captureThread.setDaemon(true);
+        captureThread.start();
+    }
+
+    public synchronized void stop() {
+        running = false;
+        if (captureThread != null) {
+            captureThread.interrupt();
+            captureThread = null;
+        }
+    }
+
+    /** Blocks until a captured frame is available. Hand it back with release() once done. */
+    public Frame take() throws InterruptedException {
+        return ready.take();
+    }
+
+    public void release(Frame frame) {
+        if (frame != null) free.offer(frame);
+    }
+
+    public long getCaptured() {
+        return captured;
+    }
+
+    /** Frames that were overwritten before the consumer got to them. */
+    public long getDropped() {
+        return dropped;
+    }
+
+    private void captureLoop() {
+        while (running) {
+            long start = System.nanoTime();
+            try {
+                Frame slot = free.poll();
+                if (slot == null) {
+                    slot = ready.poll();
+                    if (slot != null) dropped++;
+                    else slot = free.take(); // every slot is held by the consumer
+                }
+                fill(slot, start);
+                long waitMs = intervalMs - (System.nanoTime() - start) / 1_000_000;
+                if (waitMs > 0) Thread.sleep(waitMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+        }
+    }
+
+    private void fill(Frame slot, long start) {
+        BufferedImage image = null;
+        try {
+            image = source.captureInto(region, slot.image);
+        } catch (HeadlessException | RasterFormatException ex) {
+            System.err.println("Error while taking screenshot: " + ex.getMessage());
+        }
+        if (image == null) {
+            free.offer(slot);
+            return;
+        }
+        slot.image = image;
+        slot.sequence = ++sequence;
+        slot.captureStartNanos = start;
+        slot.captureEndNanos = System.nanoTime();
+        captured++;
+        ready.offer(slot);
+    }
+}
@@ -0,0 +1,91 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * A frame as the worker saw it, for display: a private copy of the pixels, shrunk to the size
+ * it is shown at, plus what the scan found in them. The copy matters because the worker's own
+ * frame buffers are pooled (or belong to the capture pipeline) and are overwritten by later
+ * captures; shrinking it keeps a full-screen frame from costing a full-screen copy.
+ */
+public final class FramePreview {
+    private final BufferedImage image;
+    private final Rectangle area;
+    private final Rectangle match;
+    private final double score;
+    private final long captureNanos;
+    private final long matchNanos;
+
+    private FramePreview(BufferedImage image, Rectangle area, Rectangle match, double score,
+                         long captureNanos, long matchNanos) {
+        this.image = image;
+        this.area = area;
+        this.match = match;
+        this.score = score;
+        this.captureNanos = captureNanos;
+        this.matchNanos = matchNanos;
+    }
+
+    /**
+     * Copies {@code frame}, which shows the screen area {@code area}, scaled down (nearest
+     * pixel, aspect kept) to fit maxWidth x maxHeight. {@code match} is in frame coordinates
+     * (null if nothing was found), {@code score} NaN when the search gives none. {@code reuse}
+     * is written to instead of allocating when it is a TYPE_INT_RGB image of the result size.
+     */
+    static FramePreview copyOf(BufferedImage frame, Rectangle area, Rectangle match, double score,
+                               long captureNanos, long matchNanos, int maxWidth, int maxHeight,
+                               BufferedImage reuse) {
+        PixelFrame src = PixelFrame.of(frame);
+        double scale = Math.min(1.0, Math.min((double) maxWidth / src.width, (double) maxHeight / src.height));
+        int w = Math.max(1, (int) Math.round(src.width * scale));
+        int h = Math.max(1, (int) Math.round(src.height * scale));
+        BufferedImage copy = (reuse != null && reuse.getWidth() == w && reuse.getHeight() == h
+                && reuse.getType() == BufferedImage.TYPE_INT_RGB)
+                ? reuse : new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        int[] dst = ((DataBufferInt) copy.getRaster().getDataBuffer()).getData();
+        int[] cols = new int[w];
+        for (int x = 0; x < w; x++) cols[x] = (int) ((long) x * src.width / w);
+        for (int y = 0; y < h; y++) {
+            int row = src.offset + (int) ((long) y * src.height / h) * src.scanline;
+            if (w == src.width) {
+                System.arraycopy(src.data, row, dst, y * w, w);
+            } else {
+                for (int x = 0; x < w; x++) dst[y * w + x] = src.data[row + cols[x]];
+            }
+        }
+        return new FramePreview(copy, new Rectangle(area), (match == null) ? null : new Rectangle(match),
+                score, captureNanos, matchNanos);
+    }
+
+    /**
+     * The copied frame, possibly smaller than the area it shows (see getArea()). Owned by the
+     * preview until handed back with AutoClicker.recyclePreview.
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /** Screen area the frame shows. */
+    public Rectangle getArea() {
+        return new Rectangle(area);
+    }
+
+    /** Bounds of the match in frame coordinates (those of getArea(), not of the image), or null. */
+    public Rectangle getMatch() {
+        return (match == null) ? null : new Rectangle(match);
+    }
+
+    /** Confidence of the match (see MatchResult), or NaN when the search mode reports none. */
+    public double getScore() {
+        return score;
+    }
+
+    public long getCaptureNanos() {
+        return captureNanos;
+    }
+
+    /** Time spent matching this frame, 0 when no template is searched. */
+    public long getMatchNanos() {
+        return matchNanos;
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * Compact stand-in for the previous frame in change detection: only the pixels
+ * computeChangePercent would sample (every step-th column and row), stored column-major.
+ * Comparing a new frame against it gives exactly the counts a comparison against the full
+ * previous frame would, at 1/step^2 of the memory.
+ */
+final class FrameSignature {
+    /** Per-pixel RGB distance above which a sample counts as changed. */
+    static final int PIXEL_THRESHOLD = 30;
+
+    private final int step;
+    private int[] samples;
+    private int width;
+    private int height;
+    private int rows;
+    private long lastSampleCount;
+
+    FrameSignature(int step) {
+        this.step = Math.max(1, step);
+    }
+
+    static boolean differs(int rgb1, int rgb2) {
+        int dr = ((rgb1 >> 16) & 0xFF) - ((rgb2 >> 16) & 0xFF);
+        int dg = ((rgb1 >> 8) & 0xFF) - ((rgb2 >> 8) & 0xFF);
+        int db = (rgb1 & 0xFF) - (rgb2 & 0xFF);
+        return dr * dr + dg * dg + db * db > PIXEL_THRESHOLD * PIXEL_THRESHOLD;
+    }
+
+    boolean isEmpty() {
+        return samples == null;
+    }
+
+    void clear() {
+        samples = null;
+    }
+
+    /**
+     * Counts samples of {@code f} that differ from the stored frame (over the area both cover),
+     * then stores {@code f}'s samples in place of the old ones. Returns -1 when nothing was stored.
+     */
+    long compareAndUpdate(PixelFrame f) {
+        int cols = (f.width + step - 1) / step;
+        int newRows = (f.height + step - 1) / step;
+        int[] old = samples;
+        int[] dst = (old != null && old.length == cols * newRows && rows == newRows) ? old : new int[cols * newRows];
+        int cmpW = old == null ? 0 : Math.min(width, f.width);
+        int cmpH = old == null ? 0 : Math.min(height, f.height);
+
+        long changed = 0;
+        final int[] data = f.data;
+        for (int x = 0, c = 0; x < f.width; x += step, c++) {
+            int p = f.offset + x;
+            int o = c * rows;
+            int d = c * newRows;
+            for (int y = 0, r = 0; y < f.height; y += step, r++) {
+                int rgb = data[p + y * f.scanline];
+                if (x < cmpW && y < cmpH && differs(old[o + r], rgb)) changed++;
+                dst[d + r] = rgb;
+            }
+        }
+        lastSampleCount = (long) ((cmpW + step - 1) / step) * ((cmpH + step - 1) / step);
+        samples = dst;
+        width = f.width;
+        height = f.height;
+        rows = newRows;
+        return old == null ? -1 : changed;
+    }
+
+    /** Number of samples the last compareAndUpdate compared. */
+    long getLastSampleCount() {
+        return lastSampleCount;
+    }
+}
@@ -0,0 +1,33 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Where AutoClicker gets its frames from. ScreenScanner captures the real screen; the file and
+ * synthetic implementations make the scan loop runnable without a display.
+ */
+public interface FrameSource {
+    /**
+     * Capture the whole area covered by this source.
+     */
+    BufferedImage capture();
+
+    /**
+     * Capture a region in screen coordinates, clamped to getBounds(). Returns null when the
+     * clamped region is empty.
+     */
+    BufferedImage capture(Rectangle region);
+
+    /**
+     * Capture {@code region} (null = whole area), writing into {@code reuse} when the source can.
+     * Returns the frame, which is either {@code reuse} or a new image. Sources that always
+     * allocate, like ScreenScanner, keep this default.
+     */
+    default BufferedImage captureInto(Rectangle region, BufferedImage reuse) {
+        return region == null ? capture() : capture(region);
+    }
+
+    /**
+     * The area this source covers, in screen coordinates.
+     */
+    Rectangle getBounds();
+}
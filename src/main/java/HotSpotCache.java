@@ -0,0 +1,125 @@
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded, LRU-evicted set of recent match locations for one template.
+ *
+ * ImageMatcher probes the remembered locations first, then square rings of growing radius
+ * around them (on the stride grid), and only falls back to its full scan when none of those
+ * match. A hit found this way is not necessarily the first match in scan order.
+ */
+public class HotSpotCache {
+    private final int capacity;
+    private final int ringRadius;
+    // key = x << 32 | y; access order, so iteration starts at the least recently used entry
+    private final LinkedHashMap<Long, Boolean> spots;
+
+    private long exactHits;
+    private long ringHits;
+    private long misses;
+
+    public HotSpotCache(int capacity, int ringRadius) {
+        this.capacity = Math.max(1, capacity);
+        this.ringRadius = Math.max(0, ringRadius);
+        this.spots = new LinkedHashMap<Long, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Boolean> eldest) {
+                return size() > HotSpotCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Checks remembered locations, then rings around them. Returns the match or null; a null
+     * result is not counted as a miss until the caller reports the full scan via record().
+     */
+    Rectangle probe(ImageMatcher m, PixelFrame screen) {
+        List<long[]> recent = snapshot();
+        if (recent.isEmpty()) return null;
+        int tw = m.getTemplateWidth();
+        int th = m.getTemplateHeight();
+        int stride = m.getStride();
+
+        for (long[] p : recent) {
+            if (m.matchesAt(screen, (int) p[0], (int) p[1])) {
+                touch(p[0], p[1], true);
+                return new Rectangle((int) p[0], (int) p[1], tw, th);
+            }
+        }
+        for (int r = stride; r <= ringRadius; r += stride) {
+            for (long[] p : recent) {
+                long hit = probeRing(m, screen, (int) p[0], (int) p[1], r, stride);
+                if (hit >= 0) {
+                    touch(hit >> 32, (int) hit, false);
+                    return new Rectangle((int) (hit >> 32), (int) hit, tw, th);
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Square ring of radius r around (cx, cy); returns the hit as x << 32 | y, or -1. */
+    private static long probeRing(ImageMatcher m, PixelFrame screen, int cx, int cy, int r, int stride) {
+        // top and bottom edges, then left and right edges without the corners
+        for (int dx = -r; dx <= r; dx += stride) {
+            if (m.matchesAt(screen, cx + dx, cy - r)) return key(cx + dx, cy - r);
+            if (m.matchesAt(screen, cx + dx, cy + r)) return key(cx + dx, cy + r);
+        }
+        for (int dy = -r + stride; dy <= r - stride; dy += stride) {
+            if (m.matchesAt(screen, cx - r, cy + dy)) return key(cx - r, cy + dy);
+            if (m.matchesAt(screen, cx + r, cy + dy)) return key(cx + r, cy + dy);
+        }
+        return -1;
+    }
+
+    /** Records the outcome of a full scan that ran after probe() found nothing. */
+    synchronized void record(Rectangle fullScanResult) {
+        misses++;
+        if (fullScanResult != null) {
+            spots.put(key(fullScanResult.x, fullScanResult.y), Boolean.TRUE);
+        }
+    }
+
+    private synchronized void touch(long x, long y, boolean exact) {
+        if (exact) exactHits++;
+        else ringHits++;
+        spots.put(key(x, y), Boolean.TRUE);
+    }
+
+    private synchronized List<long[]> snapshot() {
+        List<long[]> out = new ArrayList<>(spots.size());
+        for (long k : spots.keySet()) {
+            out.add(0, new long[]{k >> 32, (int) k}); // most recently used first
+        }
+        return out;
+    }
+
+    private static long key(long x, long y) {
+        return (x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    public synchronized long getExactHits() {
+        return exactHits;
+    }
+
+    public synchronized long getRingHits() {
+        return ringHits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /** Fraction of lookups answered without a full scan. */
+    public synchronized double getHitRatio() {
+        long total = exactHits + ringHits + misses;
+        return total == 0 ? 0.0 : (double) (exactHits + ringHits) / total;
+    }
+
+    public synchronized void clear() {
+        spots.clear();
+    }
+}
@@ -3,74 +3,836 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ImageMatcher implements AutoCloseable {
+    /**
+     * FULL tests every candidate offset at full resolution.
+     * PYRAMID first rejects candidates on 8x/4x/2x block sums and only runs the full-resolution
+     * check on survivors; it returns exactly the same result as FULL.
+     * EXACT_HASH uses a 2D rolling hash and compares pixels only where the hash matches. It
+     * needs tolerance 0 and a template without transparent pixels; otherwise FULL is used.
+     * NCC ranks offsets by normalized cross-correlation of luma (see NccTemplate) and returns
+     * the best one if it scores at least the NCC threshold. Tolerance does not apply, and the
+     * result survives brightness and contrast changes. It needs an opaque template that is not
+     * a single flat color; otherwise FULL is used.
+     * AUTO uses NCC when template area times screen area reaches the auto-NCC threshold and
+     * the template supports it, and PYRAMID otherwise.
+     */
+    public enum SearchMode { FULL, PYRAMID, EXACT_HASH, NCC, AUTO }
+
+    /** Error measure for findBestMatch: sum of absolute or of squared channel differences. */
+    public enum ScoreMetric { SAD, SSD }
 
-public class ImageMatcher {
     private final BufferedImage targetImage;
     private final int tolerance; // color distance tolerance (0 = exact)
+    private final int tolerance2;
     private final int stride;    // sample stride for faster scanning (1 = every pixel)
+    private final int tw;
+    private final int th;
+
+    // opaque template pixels in check order, most distinctive first; recompiled from time to
+    // time against the colors of recent frames
+    private volatile CompiledTemplate compiled;
+    private volatile Offsets offsets; // compiled dx/dy resolved against the last seen scanline stride
+    private final int[] templateArgb;
+    private final ColorHistogram background = new ColorHistogram(); // profiler thread only
+    private final AtomicInteger profileTick = new AtomicInteger();
+    private final AtomicBoolean profiling = new AtomicBoolean(); // a recompile is queued or running
+    private volatile Future<?> lastProfile;
+    private static final int PROFILE_EVERY = 64; // findMatch calls between recompiles, power of two
+    private static final int PROFILE_STEP = 8;   // frame sampling step for the color histogram
+    // shared by all matchers, recompiles are rare and short
+    private static final ExecutorService PROFILER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "ImageMatcher-Profiler");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile SearchMode searchMode = SearchMode.FULL;
+    private volatile TemplatePyramid templatePyramid; // built on first PYRAMID search
+    private final AtomicReference<ImagePyramid> spareScreenPyramid = new AtomicReference<>();
+
+    private volatile NccTemplate nccTemplate; // built on first NCC search, caches the spectrum
+    private final AtomicReference<NccTemplate.Workspace> spareNccWorkspace = new AtomicReference<>();
+    private volatile double nccThreshold = 0.9;
+    // a 200x200 dialog on a 1920x1080 screen; below that FULL/PYRAMID are far cheaper
+    private volatile long autoNccThreshold = 200L * 200 * 1920 * 1080;
+
+    // 2D rolling hash (EXACT_HASH), arithmetic mod 2^32
+    private static final int ROW_BASE = 0x01000193;
+    private static final int COL_BASE = 0x9E3779B1;
+    private final boolean opaqueTemplate; // every pixel has alpha 255
+    private final int templateHash;
+    private final int hashRowPow;
+    private final int hashColPow;
+    private static final int HASH_CHUNK = 32; // columns hashed per row-major pass
+
+    private static final long NO_HIT = Long.MAX_VALUE;
+    private static final int MIN_BAND_ROWS = 16; // candidate rows per band, below this stay sequential
+    private volatile int parallelism = 1;
+    private volatile boolean firstMatchInScanOrder = true;
+    private volatile ExecutorService executor; // optional caller-supplied executor
+    private ForkJoinPool ownPool;
+    private volatile HotSpotCache hotSpots;
+    private volatile ScoreMetric scoreMetric = ScoreMetric.SSD;
+    private volatile long lastBest = NO_HIT; // (x << 32 | y) of the last findBestMatch result
+    private volatile double maxOverlap = 0.3; // findAll: intersection over union allowed between kept matches
 
     public ImageMatcher(String imagePath) {
         this(imagePath, 0, 1);
     }
 
     public ImageMatcher(String imagePath, int tolerance, int stride) {
+        this(loadImage(imagePath), tolerance, stride);
+        System.out.println("ImageMatcher: loaded target image '" + imagePath + "' size="
+                + targetImage.getWidth() + "x" + targetImage.getHeight());
+    }
+
+    public ImageMatcher(BufferedImage targetImage, int tolerance, int stride) {
+        this.targetImage = targetImage;
+        this.tolerance = Math.max(0, tolerance);
+        this.tolerance2 = this.tolerance * this.tolerance;
+        this.stride = Math.max(1, stride);
+        this.tw = targetImage.getWidth();
+        this.th = targetImage.getHeight();
+
+        int[] argb = targetImage.getRGB(0, 0, tw, th, null, 0, tw);
+        this.templateArgb = argb;
+
+        boolean opaque = true;
+        int hash = 0;
+        for (int y = 0; y < th; y++) {
+            int h = 0;
+            for (int x = 0; x < tw; x++) {
+                int p = argb[y * tw + x];
+                if ((p >>> 24) != 0xFF) opaque = false;
+                h = h * ROW_BASE + p;
+            }
+            hash = hash * COL_BASE + h;
+        }
+        this.opaqueTemplate = opaque;
+        this.templateHash = hash;
+        this.hashRowPow = pow(ROW_BASE, tw - 1);
+        this.hashColPow = pow(COL_BASE, th - 1);
+
+        this.compiled = CompiledTemplate.compile(argb, tw, th, this.tolerance, null);
+    }
+
+    private static BufferedImage loadImage(String imagePath) {
         try {
-            this.targetImage = ImageIO.read(new File(imagePath));
-            System.out.println("ImageMatcher: loaded target image '" + imagePath + "' size="
-                    + targetImage.getWidth() + "x" + targetImage.getHeight());
+            BufferedImage img = ImageIO.read(new File(imagePath));
+            if (img == null) throw new IOException("Unsupported image format: " + imagePath);
+            return img;
         } catch (IOException e) {
             throw new RuntimeException("Failed to load target image", e);
         }
-        this.tolerance = Math.max(0, tolerance);
-        this.stride = Math.max(1, stride);
+    }
+
+    public int getTemplateWidth() {
+        return tw;
+    }
+
+    public int getTemplateHeight() {
+        return th;
+    }
+
+    public int getTolerance() {
+        return tolerance;
+    }
+
+    public int getStride() {
+        return stride;
+    }
+
+    /** Current pixel check order. */
+    CompiledTemplate compiledTemplate() {
+        return compiled;
+    }
+
+    /** Template pixels as packed ARGB, row-major. Shared, do not modify. */
+    int[] templatePixels() {
+        return templateArgb;
+    }
+
+    /**
+     * Full-resolution check of a single candidate offset, e.g. for callers that generate their
+     * own candidates. Offsets outside the screen simply do not match.
+     */
+    boolean matchesAt(PixelFrame screen, int x, int y) {
+        if (x < 0 || y < 0 || x > screen.width - tw || y > screen.height - th) return false;
+        return isMatch(screen, offsetsFor(screen.scanline), x, y);
+    }
+
+    /** The candidate at (x,y) scored as findBestMatch scores it, e.g. for a matchesAt hit. */
+    MatchResult scoreAt(PixelFrame screen, int x, int y) {
+        boolean squared = scoreMetric == ScoreMetric.SSD;
+        Offsets offs = offsetsFor(screen.scanline);
+        long e = error(screen, offs, x, y, squared, Long.MAX_VALUE);
+        return new MatchResult(new Rectangle(x, y, tw, th), e, confidence(e, offs.pixels.length, squared));
+    }
+
+    public SearchMode getSearchMode() {
+        return searchMode;
+    }
+
+    public void setSearchMode(SearchMode searchMode) {
+        this.searchMode = (searchMode == null) ? SearchMode.FULL : searchMode;
+    }
+
+    public double getNccThreshold() {
+        return nccThreshold;
+    }
+
+    /** Lowest correlation score (up to 1.0) that NCC mode accepts as a match. */
+    public void setNccThreshold(double nccThreshold) {
+        this.nccThreshold = Math.max(-1.0, Math.min(1.0, nccThreshold));
+    }
+
+    public long getAutoNccThreshold() {
+        return autoNccThreshold;
+    }
+
+    /** Template area times screen area from which AUTO mode switches to NCC. */
+    public void setAutoNccThreshold(long autoNccThreshold) {
+        this.autoNccThreshold = Math.max(0, autoNccThreshold);
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Number of worker threads used by findMatch (1 = search on the calling thread).
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Run parallel searches on the given executor instead of the matcher's own ForkJoinPool.
+     * Pass null to go back to the internal pool.
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    public boolean isFirstMatchInScanOrder() {
+        return firstMatchInScanOrder;
+    }
+
+    /**
+     * When true (default) a parallel search returns the same match as the sequential one.
+     * When false it returns whichever band finds a match first, which is faster but not
+     * deterministic if the template appears more than once.
+     */
+    public void setFirstMatchInScanOrder(boolean firstMatchInScanOrder) {
+        this.firstMatchInScanOrder = firstMatchInScanOrder;
+    }
+
+    public HotSpotCache getHotSpotCache() {
+        return hotSpots;
+    }
+
+    /**
+     * Probe recent match locations (and rings around them) before scanning the whole frame.
+     * Pass null to always do the full scan.
+     */
+    public void setHotSpotCache(HotSpotCache hotSpots) {
+        this.hotSpots = hotSpots;
     }
 
     public Rectangle findMatch(BufferedImage screenshot) {
         if (screenshot == null) return null;
-        int maxX = screenshot.getWidth() - targetImage.getWidth();
-        int maxY = screenshot.getHeight() - targetImage.getHeight();
-        if (maxX < 0 || maxY < 0) return null; // template larger than screenshot
-
-        for (int x = 0; x <= maxX; x += stride) {
-            for (int y = 0; y <= maxY; y += stride) {
-                if (isMatch(screenshot, x, y)) {
-                    return new Rectangle(x, y, targetImage.getWidth(), targetImage.getHeight());
+        return findMatch(PixelFrame.of(screenshot));
+    }
+
+    public Rectangle findMatch(PixelFrame screen) {
+        if (screen == null) return null;
+        if (screen.width < tw || screen.height < th) return null; // template larger than screenshot
+        if (usesNcc(screen)) {
+            MatchResult r = nccSearch(screen);
+            return r == null ? null : r.getBounds();
+        }
+        if ((profileTick.getAndIncrement() & (PROFILE_EVERY - 1)) == 0) recompile(screen);
+
+        HotSpotCache spots = hotSpots;
+        if (spots == null) return search(screen);
+        Rectangle hit = spots.probe(this, screen);
+        if (hit != null) return hit;
+        hit = search(screen);
+        spots.record(hit);
+        return hit;
+    }
+
+    /**
+     * Re-rank the template pixels by how rare their colors have been on recent frames. The
+     * calling thread only copies a sparse sample of the frame (whose buffer the caller may
+     * reuse); the histogram and the recompile run on the profiler thread, and searches pick up
+     * the new order once it is published. Skipped while the previous recompile is pending.
+     */
+    private void recompile(PixelFrame screen) {
+        if (!profiling.compareAndSet(false, true)) return;
+        PixelFrame sample = sample(screen, PROFILE_STEP);
+        lastProfile = PROFILER.submit(() -> {
+            try {
+                background.decayAndAdd(sample, 1);
+                compiled = CompiledTemplate.compile(templateArgb, tw, th, tolerance, background);
+            } finally {
+                profiling.set(false);
+            }
+        });
+    }
+
+    /** Every step-th pixel of every step-th row, copied into a frame of its own. */
+    private static PixelFrame sample(PixelFrame f, int step) {
+        int w = (f.width + step - 1) / step;
+        int h = (f.height + step - 1) / step;
+        int[] out = new int[w * h];
+        int i = 0;
+        for (int y = 0; y < f.height; y += step) {
+            int p = f.offset + y * f.scanline;
+            for (int x = 0; x < f.width; x += step) out[i++] = f.data[p + x];
+        }
+        return new PixelFrame(out, w, h, 0, w, f.alphaMask);
+    }
+
+    /** Waits until the last recompile started by a search has been published (tests). */
+    void awaitRecompile() throws InterruptedException, ExecutionException {
+        Future<?> f = lastProfile;
+        if (f != null) f.get();
+    }
+
+    private Rectangle search(PixelFrame screen) {
+        int maxX = screen.width - tw;
+        int maxY = screen.height - th;
+        Scan scan = new Scan(screen, offsetsFor(screen.scanline), maxX);
+        SearchMode mode = searchMode;
+        if (mode == SearchMode.EXACT_HASH && tolerance == 0 && opaqueTemplate) {
+            scan.rollingHash = true;
+        } else if (mode == SearchMode.PYRAMID || mode == SearchMode.AUTO) {
+            scan.tp = templatePyramid();
+            scan.pyr = screenPyramid(screen);
+        }
+        try {
+            if (parallelism > 1 && maxY / stride >= MIN_BAND_ROWS) {
+                if (!searchParallel(scan, maxY)) return null; // interrupted, the result is incomplete
+            } else {
+                searchBand(scan, 0, maxY + 1);
+            }
+            long hit = scan.best.get();
+            if (hit == NO_HIT) return null;
+            return new Rectangle((int) (hit >>> 32), (int) hit, tw, th);
+        } finally {
+            if (scan.pyr != null) spareScreenPyramid.set(scan.pyr);
+        }
+    }
+
+    private TemplatePyramid templatePyramid() {
+        TemplatePyramid tp = templatePyramid;
+        if (tp == null) {
+            tp = new TemplatePyramid(templateArgb, tw, th, tolerance);
+            templatePyramid = tp;
+        }
+        return tp;
+    }
+
+    /** Block sums of {@code screen}; hand the result back through spareScreenPyramid when done. */
+    private ImagePyramid screenPyramid(PixelFrame screen) {
+        // reuse the previous call's block arrays; concurrent callers simply allocate their own
+        ImagePyramid pyr = spareScreenPyramid.getAndSet(null);
+        if (pyr == null) pyr = new ImagePyramid();
+        pyr.rebuild(screen);
+        return pyr;
+    }
+
+    /** True when findMatch/findBestMatch on this screen go through NCC. */
+    boolean usesNcc(PixelFrame screen) {
+        SearchMode mode = searchMode;
+        if (mode == SearchMode.AUTO) {
+            if ((long) tw * th * screen.width * screen.height < autoNccThreshold) return false;
+        } else if (mode != SearchMode.NCC) {
+            return false;
+        }
+        return nccTemplate().usable();
+    }
+
+    private NccTemplate nccTemplate() {
+        NccTemplate nt = nccTemplate;
+        if (nt == null) {
+            nt = new NccTemplate(templateArgb, tw, th);
+            nccTemplate = nt;
+        }
+        return nt;
+    }
+
+    /**
+     * Best NCC offset if it reaches the threshold. Its error is still reported in the current
+     * score metric; the confidence is the correlation score. Runs on the calling thread.
+     */
+    private MatchResult nccSearch(PixelFrame screen) {
+        NccTemplate.Workspace ws = spareNccWorkspace.getAndSet(null);
+        if (ws == null) ws = new NccTemplate.Workspace();
+        try {
+            NccTemplate.Hit hit = nccTemplate().search(screen, stride, ws);
+            if (hit == null || hit.score < nccThreshold) return null;
+            long e = error(screen, offsetsFor(screen.scanline), hit.x, hit.y,
+                    scoreMetric == ScoreMetric.SSD, Long.MAX_VALUE);
+            return new MatchResult(new Rectangle(hit.x, hit.y, tw, th), e, hit.score);
+        } finally {
+            spareNccWorkspace.set(ws);
+        }
+    }
+
+    public ScoreMetric getScoreMetric() {
+        return scoreMetric;
+    }
+
+    public void setScoreMetric(ScoreMetric scoreMetric) {
+        this.scoreMetric = (scoreMetric == null) ? ScoreMetric.SSD : scoreMetric;
+    }
+
+    public MatchResult findBestMatch(BufferedImage screenshot) {
+        if (screenshot == null) return null;
+        return findBestMatch(PixelFrame.of(screenshot));
+    }
+
+    /**
+     * The candidate offset with the lowest SAD/SSD error, or null if none is within budget.
+     *
+     * Unlike findMatch, single pixels may exceed the tolerance as long as the mean per-pixel
+     * error stays within it: the budget is n * tolerance^2 for SSD and n * tolerance * sqrt(3)
+     * for SAD, over the n opaque pixels. The error at the previous call's best offset seeds the
+     * bound when it is within budget (the target rarely moves between frames); each candidate
+     * is then abandoned as soon as its running error exceeds the best so far, distinctive
+     * pixels being summed first. In PYRAMID mode a
+     * block-sum lower bound rejects most candidates before any pixel is read. Ties go to the
+     * first candidate in scan order. Always scans on the calling thread and ignores the
+     * hot-spot cache, since the best match can be anywhere. When NCC is in use the result is
+     * the best-correlated offset instead, with the score as confidence.
+     */
+    public MatchResult findBestMatch(PixelFrame screen) {
+        if (screen == null || screen.width < tw || screen.height < th) return null;
+        if (usesNcc(screen)) return nccSearch(screen);
+        if ((profileTick.getAndIncrement() & (PROFILE_EVERY - 1)) == 0) recompile(screen);
+
+        Offsets offs = offsetsFor(screen.scanline);
+        int n = offs.pixels.length;
+        boolean squared = scoreMetric == ScoreMetric.SSD;
+        long budget = squared ? (long) n * tolerance2 : (long) Math.floor(n * tolerance * Math.sqrt(3));
+        long best = budget + 1;
+        // The last best offset usually still holds the target, and its error is far below the
+        // budget, so it makes a much tighter starting bound for abandonment. The scan visits it
+        // again, so an earlier candidate with the same error still wins the tie.
+        long last = lastBest;
+        if (last != NO_HIT) {
+            int lx = (int) (last >>> 32);
+            int ly = (int) last;
+            if (lx <= screen.width - tw && ly <= screen.height - th) {
+                long e = error(screen, offs, lx, ly, squared, budget);
+                if (e <= budget) best = e + 1;
+            }
+        }
+
+        TemplatePyramid tp = null;
+        ImagePyramid pyr = null;
+        if (searchMode == SearchMode.PYRAMID || searchMode == SearchMode.AUTO) {
+            tp = templatePyramid();
+            pyr = screenPyramid(screen);
+        }
+        try {
+            int bestX = -1;
+            int bestY = -1;
+            search:
+            for (int x = 0; x <= screen.width - tw; x += stride) {
+                for (int y = 0; y <= screen.height - th; y += stride) {
+                    long limit = best - 1;
+                    if (tp != null && tp.errorLowerBound(pyr, x, y, squared, limit) > limit) continue;
+                    long e = error(screen, offs, x, y, squared, limit);
+                    if (e > limit) continue;
+                    best = e;
+                    bestX = x;
+                    bestY = y;
+                    if (e == 0) break search;
                 }
             }
+            if (bestX < 0) return null;
+            lastBest = ((long) bestX << 32) | bestY;
+            return new MatchResult(new Rectangle(bestX, bestY, tw, th), best, confidence(best, n, squared));
+        } finally {
+            if (pyr != null) spareScreenPyramid.set(pyr);
         }
-        return null;
     }
 
-    private boolean isMatch(BufferedImage screen, int startX, int startY) {
-        int tw = targetImage.getWidth();
-        int th = targetImage.getHeight();
+    /** 1 minus the mean per-pixel error as a fraction of the largest possible one. */
+    private static double confidence(long error, int n, boolean squared) {
+        double maxPerPixel = squared ? 3.0 * 255 * 255 : 3.0 * 255;
+        double mean = n == 0 ? 0 : (double) error / n;
+        return squared ? 1 - Math.sqrt(mean / maxPerPixel) : 1 - mean / maxPerPixel;
+    }
+
+    public double getMaxOverlap() {
+        return maxOverlap;
+    }
 
-        // quick early-check: sample a few pixels first (skip fully transparent template pixels)
-        int samplesX = Math.max(1, tw / 4);
-        int samplesY = Math.max(1, th / 4);
-        for (int sx = 0; sx < tw; sx += samplesX) {
-            for (int sy = 0; sy < th; sy += samplesY) {
-                int trgb = targetImage.getRGB(sx, sy);
-                int alpha = (trgb >> 24) & 0xFF;
-                if (alpha == 0) continue; // ignore transparent parts of template
-                int sRgb = screen.getRGB(startX + sx, startY + sy);
-                if (!pixelsClose(trgb, sRgb)) {
-                    return false;
+    /**
+     * Largest intersection over union that two findAll results may have; of two matches
+     * overlapping more than this, only the better one is kept. 0 keeps only disjoint matches.
+     */
+    public void setMaxOverlap(double maxOverlap) {
+        this.maxOverlap = Math.max(0.0, Math.min(1.0, maxOverlap));
+    }
+
+    public List<MatchResult> findAll(BufferedImage screenshot) {
+        if (screenshot == null) return new ArrayList<>();
+        return findAll(PixelFrame.of(screenshot));
+    }
+
+    /**
+     * Every match on the screen from one pass over all candidate offsets, best first (ties in
+     * scan order). A candidate qualifies as in findMatch (every pixel within tolerance; in NCC
+     * mode a score of at least the NCC threshold) and is scored like findBestMatch. Matches
+     * that overlap a better one by more than maxOverlap are suppressed, so a button that also
+     * matches one pixel off is reported once. Apart from NCC, every mode scans like FULL here;
+     * the hot-spot cache and parallelism are not used.
+     */
+    public List<MatchResult> findAll(PixelFrame screen) {
+        List<MatchResult> out = new ArrayList<>();
+        if (screen == null || screen.width < tw || screen.height < th) return out;
+        Offsets offs = offsetsFor(screen.scanline);
+        boolean squared = scoreMetric == ScoreMetric.SSD;
+        List<MatchResult> candidates = new ArrayList<>();
+
+        if (usesNcc(screen)) {
+            NccTemplate.Workspace ws = spareNccWorkspace.getAndSet(null);
+            if (ws == null) ws = new NccTemplate.Workspace();
+            try {
+                for (NccTemplate.Hit h : nccTemplate().searchAll(screen, stride, nccThreshold, ws)) {
+                    long e = error(screen, offs, h.x, h.y, squared, Long.MAX_VALUE);
+                    candidates.add(new MatchResult(new Rectangle(h.x, h.y, tw, th), e, h.score));
+                }
+            } finally {
+                spareNccWorkspace.set(ws);
+            }
+        } else {
+            // the probe-ordered check rejects most offsets within a few reads, which beats
+            // testing each one against the block-sum pyramid here
+            for (int x = 0; x <= screen.width - tw; x += stride) {
+                for (int y = 0; y <= screen.height - th; y += stride) {
+                    if (!isMatch(screen, offs, x, y)) continue;
+                    long e = error(screen, offs, x, y, squared, Long.MAX_VALUE);
+                    candidates.add(new MatchResult(new Rectangle(x, y, tw, th), e,
+                            confidence(e, offs.pixels.length, squared)));
+                }
+            }
+        }
+
+        candidates.sort((a, b) -> {
+            int c = Double.compare(b.getConfidence(), a.getConfidence());
+            if (c != 0) return c;
+            Rectangle ra = a.getBounds();
+            Rectangle rb = b.getBounds();
+            return ra.x != rb.x ? Integer.compare(ra.x, rb.x) : Integer.compare(ra.y, rb.y);
+        });
+        // greedy non-maximum suppression; equal-sized windows can only overlap when they are in
+        // the same or a neighboring template-sized grid cell
+        double limit = maxOverlap;
+        Map<Long, List<Rectangle>> kept = new HashMap<>();
+        for (MatchResult r : candidates) {
+            Rectangle b = r.getBounds();
+            long cx = b.x / tw;
+            long cy = b.y / th;
+            boolean suppressed = false;
+            search:
+            for (long i = cx - 1; i <= cx + 1; i++) {
+                for (long j = cy - 1; j <= cy + 1; j++) {
+                    List<Rectangle> cell = kept.get(i << 32 | (j & 0xFFFFFFFFL));
+                    if (cell == null) continue;
+                    for (Rectangle k : cell) {
+                        if (overlap(b, k) > limit) {
+                            suppressed = true;
+                            break search;
+                        }
+                    }
+                }
+            }
+            if (suppressed) continue;
+            kept.computeIfAbsent(cx << 32 | (cy & 0xFFFFFFFFL), key -> new ArrayList<>()).add(b);
+            out.add(r);
+        }
+        return out;
+    }
+
+    /** Intersection over union of two rectangles of the template's size. */
+    private double overlap(Rectangle a, Rectangle b) {
+        long ix = Math.max(0, tw - Math.abs(a.x - b.x));
+        long iy = Math.max(0, th - Math.abs(a.y - b.y));
+        long inter = ix * iy;
+        return (double) inter / (2L * tw * th - inter);
+    }
+
+    /** SAD/SSD at (startX, startY); stops early and returns a value above limit once exceeded. */
+    private static long error(PixelFrame screen, Offsets offs, int startX, int startY, boolean squared, long limit) {
+        final int[] data = screen.data;
+        final int base = screen.offset + startY * screen.scanline + startX;
+        final int[] off = offs.pixels;
+        final int[] rgb = offs.template.rgb;
+        long err = 0;
+        for (int i = 0; i < off.length; i++) {
+            int t = rgb[i];
+            int s = data[base + off[i]];
+            int dr = ((t >> 16) & 0xFF) - ((s >> 16) & 0xFF);
+            int dg = ((t >> 8) & 0xFF) - ((s >> 8) & 0xFF);
+            int db = (t & 0xFF) - (s & 0xFF);
+            err += squared ? dr * dr + dg * dg + db * db : Math.abs(dr) + Math.abs(dg) + Math.abs(db);
+            if (err > limit) return err;
+        }
+        return err;
+    }
+
+    /**
+     * Splits the candidate rows into horizontal bands (their pixel rows overlap by the template
+     * height) and searches them concurrently. Every band stops as soon as the shared result
+     * makes its remaining columns irrelevant. Returns false, leaving the interrupt status set,
+     * if the calling thread was interrupted before every band finished.
+     */
+    private boolean searchParallel(Scan scan, int maxY) {
+        scan.ordered = firstMatchInScanOrder;
+        int candidateRows = maxY / stride + 1;
+        int bands = Math.min(parallelism * 2, Math.max(1, candidateRows / MIN_BAND_ROWS));
+        int rowsPerBand = (candidateRows + bands - 1) / bands;
+
+        List<Callable<Void>> tasks = new ArrayList<>(bands);
+        for (int b = 0; b < bands; b++) {
+            final int y0 = b * rowsPerBand * stride;
+            final int yEnd = Math.min(maxY + 1, (b + 1) * rowsPerBand * stride);
+            if (y0 > maxY) break;
+            tasks.add(() -> {
+                searchBand(scan, y0, yEnd);
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> f : searchExecutor().invokeAll(tasks)) {
+                f.get();
+            }
+            return true;
+        } catch (InterruptedException e) {
+            scan.abandoned = true; // bands still running stop at their next column
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Parallel search failed", e.getCause());
+        }
+    }
+
+    /**
+     * Column-major search of candidate rows [y0, yEnd) (y0 a multiple of stride). The first hit
+     * is merged into {@code scan.best} as the lowest (x, y) key. When the scan is ordered the
+     * band keeps going until a smaller x has been found elsewhere; otherwise any hit stops
+     * every band.
+     */
+    private void searchBand(Scan scan, int y0, int yEnd) {
+        if (scan.rollingHash) {
+            searchBandRollingHash(scan, y0, yEnd);
+            return;
+        }
+        final PixelFrame screen = scan.screen;
+        final Offsets offs = scan.offs;
+        final ImagePyramid pyr = scan.pyr;
+        final TemplatePyramid tp = scan.tp;
+        int coarse = ImagePyramid.FACTORS[0];
+        int step = stride * coarse / gcd(stride, coarse);
+        for (int x = 0; x <= scan.maxX; x += stride) {
+            if (scan.isSettledBefore(x)) return;
+
+            int foundY = yEnd;
+            if (pyr == null) {
+                for (int y = y0; y < yEnd; y += stride) {
+                    if (isMatch(screen, offs, x, y)) {
+                        foundY = y;
+                        break;
+                    }
                 }
+            } else {
+                // Candidates of one column are visited in groups sharing the same coarse-grid
+                // phase, so the cheap coarse prefilter runs as a tight strided loop. The lowest
+                // matching y of the column is kept, preserving the column-major scan order.
+                for (int start = y0; start < y0 + step && start < foundY; start += stride) {
+                    int y = start;
+                    while ((y = tp.nextCoarseCandidate(pyr, x, y, step, foundY)) >= 0) {
+                        if (tp.mayMatch(pyr, x, y) && isMatch(screen, offs, x, y)) {
+                            foundY = y;
+                            break;
+                        }
+                        y += step;
+                    }
+                }
+            }
+            if (foundY < yEnd) {
+                scan.offer(x, foundY);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Rabin-Karp search for EXACT_HASH mode. rowHash holds, per screen row of the band, the hash
+     * of the tw pixels starting at the current column; it is rolled one column to the right at a
+     * time. Columns are processed in chunks so that rolling walks each row contiguously; the
+     * window hash is then rolled down each column of the chunk, and pixels are compared only
+     * where it equals the template hash. Work is O(band pixels), independent of template size.
+     */
+    private void searchBandRollingHash(Scan scan, int y0, int yEnd) {
+        final PixelFrame screen = scan.screen;
+        final int[] data = screen.data;
+        final int alphaMask = screen.alphaMask;
+        final int scanline = screen.scanline;
+        final int rows = yEnd - 1 + th - y0;
+        final int outRow = hashRowPow; // ROW_BASE^(tw-1), removes the leftmost pixel
+        final int outCol = hashColPow; // COL_BASE^(th-1), removes the top row
+        final int[] rowHash = new int[rows];
+        final int[] chunk = new int[HASH_CHUNK * rows]; // column-major row hashes of one chunk
+
+        for (int r = 0; r < rows; r++) {
+            int p = screen.offset + (y0 + r) * scanline;
+            int h = 0;
+            for (int i = 0; i < tw; i++) h = h * ROW_BASE + (data[p + i] | alphaMask);
+            rowHash[r] = h;
+        }
+
+        for (int x0 = 0; x0 <= scan.maxX; x0 += HASH_CHUNK) {
+            int cols = Math.min(HASH_CHUNK, scan.maxX + 1 - x0);
+            for (int r = 0; r < rows; r++) {
+                int p = screen.offset + (y0 + r) * scanline + x0;
+                int h = rowHash[r];
+                for (int c = 0; c < cols; c++, p++) {
+                    chunk[c * rows + r] = h;
+                    if (x0 + c < scan.maxX) {
+                        h = (h - (data[p] | alphaMask) * outRow) * ROW_BASE + (data[p + tw] | alphaMask);
+                    }
+                }
+                rowHash[r] = h;
+            }
+
+            for (int c = 0; c < cols; c++) {
+                int x = x0 + c;
+                if (x % stride != 0) continue;
+                if (scan.isSettledBefore(x)) return;
+                int base = c * rows;
+                int h = 0;
+                for (int j = 0; j < th; j++) h = h * COL_BASE + chunk[base + j];
+                for (int y = y0; ; ) {
+                    if (h == templateHash && (y - y0) % stride == 0 && isMatch(screen, scan.offs, x, y)) {
+                        scan.offer(x, y);
+                        return;
+                    }
+                    int r = base + y - y0;
+                    if (++y >= yEnd) break;
+                    h = (h - chunk[r] * outCol) * COL_BASE + chunk[r + th];
+                }
+            }
+        }
+    }
+
+    /**
+     * Shuts down the pool parallel searches run on, if the matcher started one. The matcher
+     * stays usable; a later parallel search starts a new pool. An executor passed to
+     * setExecutor is left running.
+     */
+    @Override
+    public void close() {
+        ForkJoinPool pool;
+        synchronized (this) {
+            pool = ownPool;
+            ownPool = null;
+        }
+        if (pool != null) pool.shutdown();
+    }
+
+    private ExecutorService searchExecutor() {
+        ExecutorService ex = executor;
+        if (ex != null) return ex;
+        synchronized (this) {
+            if (ownPool == null || ownPool.getParallelism() != parallelism) {
+                if (ownPool != null) ownPool.shutdown();
+                ownPool = new ForkJoinPool(parallelism);
             }
+            return ownPool;
+        }
+    }
+
+    private static int pow(int base, int exp) {
+        int r = 1;
+        for (int i = 0; i < exp; i++) r *= base;
+        return r;
+    }
+
+    private static int gcd(int a, int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+    private Offsets offsetsFor(int scanline) {
+        Offsets o = offsets;
+        CompiledTemplate ct = compiled;
+        if (o == null || o.scanline != scanline || o.template != ct) {
+            o = new Offsets(scanline, ct, resolve(ct.dx, ct.dy, scanline), resolve(ct.runX, ct.runY, scanline));
+            offsets = o;
         }
+        return o;
+    }
+
+    private static int[] resolve(int[] dx, int[] dy, int scanline) {
+        int[] out = new int[dx.length];
+        for (int i = 0; i < out.length; i++) out[i] = dy[i] * scanline + dx[i];
+        return out;
+    }
 
-        // full check (skip transparent template pixels)
-        for (int x = 0; x < tw; x++) {
-            for (int y = 0; y < th; y++) {
-                int trgb = targetImage.getRGB(x, y);
-                int alpha = (trgb >> 24) & 0xFF;
-                if (alpha == 0) continue;
-                int sRgb = screen.getRGB(startX + x, startY + y);
-                if (!pixelsClose(trgb, sRgb)) {
+    private boolean isMatch(PixelFrame screen, Offsets offs, int startX, int startY) {
+        final int[] data = screen.data;
+        final int alphaMask = screen.alphaMask;
+        final int base = screen.offset + startY * screen.scanline + startX;
+
+        // distinctive probe pixels come first, so most wrong offsets fail within a few reads
+        final int[] off = offs.pixels;
+        final CompiledTemplate ct = offs.template;
+        final int[] rgb = ct.rgb;
+        for (int i = 0; i < ct.probes; i++) {
+            if (!pixelsClose(rgb[i], data[base + off[i]] | alphaMask)) {
+                return false;
+            }
+        }
+        if (PixelKernels.VECTORIZED) {
+            // the rest one horizontal run (contiguous on screen) at a time, several pixels per instruction
+            final int[] runRgb = ct.runRgb;
+            final int[] runStart = ct.runStart;
+            final int[] runLength = ct.runLength;
+            final int[] runs = offs.runs;
+            for (int r = 0; r < runs.length; r++) {
+                if (!PixelKernels.allClose(runRgb, runStart[r], data, base + runs[r], runLength[r],
+                        tolerance2, alphaMask)) {
                     return false;
                 }
             }
+            return true;
+        }
+        for (int i = ct.probes; i < off.length; i++) {
+            if (!pixelsClose(rgb[i], data[base + off[i]] | alphaMask)) {
+                return false;
+            }
         }
         return true;
     }
@@ -87,6 +849,54 @@ public class ImageMatcher {
         int dg = g1 - g2;
         int db = b1 - b2;
         int dist2 = dr*dr + dg*dg + db*db;
-        return dist2 <= tolerance * tolerance;
+        return dist2 <= tolerance2;
+    }
+
+    /** Per-call search state shared by the bands of one findMatch. */
+    private static final class Scan {
+        final PixelFrame screen;
+        final Offsets offs;
+        final int maxX;
+        final AtomicLong best = new AtomicLong(NO_HIT); // (x << 32 | y) of the best hit so far
+        boolean ordered = true;
+        volatile boolean abandoned;
+        boolean rollingHash;
+        ImagePyramid pyr;
+        TemplatePyramid tp;
+
+        Scan(PixelFrame screen, Offsets offs, int maxX) {
+            this.screen = screen;
+            this.offs = offs;
+            this.maxX = maxX;
+        }
+
+        /** True when columns from x on can no longer change the result. */
+        boolean isSettledBefore(int x) {
+            if (abandoned) return true;
+            long b = best.get();
+            return ordered ? (b >>> 32) < x : b != NO_HIT;
+        }
+
+        void offer(int x, int y) {
+            long key = ((long) x << 32) | y;
+            long cur;
+            while (key < (cur = best.get()) && !best.compareAndSet(cur, key)) {
+                // retry
+            }
+        }
+    }
+
+    private static final class Offsets {
+        final int scanline;
+        final CompiledTemplate template;
+        final int[] pixels; // template.dx/dy as offsets from the candidate's top-left pixel
+        final int[] runs;   // same for the first pixel of each template.run*
+
+        Offsets(int scanline, CompiledTemplate template, int[] pixels, int[] runs) {
+            this.scanline = scanline;
+            this.template = template;
+            this.pixels = pixels;
+            this.runs = runs;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,90 @@
+/**
+ * Block-sum pyramid of a frame: per-channel sums of aligned 2x2, 4x4 and 8x8 pixel blocks.
+ * Sums (not averages) are kept so the coarse-level bounds in TemplatePyramid stay exact.
+ * The three channel sums of a block are packed into one long (21 bits each, see pack()),
+ * so packed values can be added directly when building the next level.
+ * Arrays are reused across rebuilds when the frame size does not change.
+ */
+final class ImagePyramid {
+    /** Block sizes, coarsest first. Index into the per-level arrays below. */
+    static final int[] FACTORS = {8, 4, 2};
+    static final int[] SHIFTS = {3, 2, 1};
+    static final int LEVELS = FACTORS.length;
+
+    final int[] cols = new int[LEVELS];
+    final int[] rows = new int[LEVELS];
+    final long[][] sums = new long[LEVELS][]; // row-major: index = by * cols + bx
+    long[] coarseByColumn;                    // coarsest level again, column-major (bx * rows + by)
+
+    static long pack(int r, int g, int b) {
+        return ((long) r << 42) | ((long) g << 21) | b;
+    }
+
+    static int red(long packed) {
+        return (int) (packed >>> 42);
+    }
+
+    static int green(long packed) {
+        return (int) (packed >>> 21) & 0x1FFFFF;
+    }
+
+    static int blue(long packed) {
+        return (int) packed & 0x1FFFFF;
+    }
+
+    void rebuild(PixelFrame f) {
+        int finest = LEVELS - 1;
+        for (int l = 0; l < LEVELS; l++) {
+            cols[l] = f.width >> SHIFTS[l];
+            rows[l] = f.height >> SHIFTS[l];
+            int n = cols[l] * rows[l];
+            if (sums[l] == null || sums[l].length < n) sums[l] = new long[n];
+        }
+        if (coarseByColumn == null || coarseByColumn.length < sums[0].length) {
+            coarseByColumn = new long[sums[0].length];
+        }
+
+        // 2x2 level straight from the pixels
+        int c = cols[finest];
+        int r = rows[finest];
+        long[] S = sums[finest];
+        final int[] data = f.data;
+        for (int by = 0; by < r; by++) {
+            int row0 = f.offset + (by << 1) * f.scanline;
+            int row1 = row0 + f.scanline;
+            int o = by * c;
+            for (int bx = 0; bx < c; bx++) {
+                int x = bx << 1;
+                S[o + bx] = expand(data[row0 + x]) + expand(data[row0 + x + 1])
+                        + expand(data[row1 + x]) + expand(data[row1 + x + 1]);
+            }
+        }
+
+        // each coarser level sums 2x2 blocks of the level below
+        for (int l = finest - 1; l >= 0; l--) {
+            long[] src = sums[l + 1];
+            long[] dst = sums[l];
+            int srcCols = cols[l + 1];
+            for (int y = 0; y < rows[l]; y++) {
+                int s0 = (y << 1) * srcCols;
+                int s1 = s0 + srcCols;
+                int o = y * cols[l];
+                for (int x = 0; x < cols[l]; x++) {
+                    int sx = x << 1;
+                    dst[o + x] = src[s0 + sx] + src[s0 + sx + 1] + src[s1 + sx] + src[s1 + sx + 1];
+                }
+            }
+        }
+
+        long[] coarse = sums[0];
+        for (int y = 0; y < rows[0]; y++) {
+            for (int x = 0; x < cols[0]; x++) {
+                coarseByColumn[x * rows[0] + y] = coarse[y * cols[0] + x];
+            }
+        }
+    }
+
+    private static long expand(int rgb) {
+        return pack((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+    }
+}
@@ -0,0 +1,217 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Wraps an ImageMatcher for a stream of same-sized frames and only re-examines candidate
+ * offsets whose template window overlaps a tile that changed since the previous frame.
+ *
+ * The previous result tells us that every candidate before it in scan order did not match.
+ * Those candidates keep that outcome while their pixels are unchanged, so only dirty ones
+ * need testing; if the previous hit's own window changed, the scan continues from there.
+ * The result is the same as a full findMatch on every frame, barring a tile checksum collision.
+ * This needs the previous hit to be the first in scan order, so a changed frame gets a full
+ * findMatch instead when the matcher may return another one: when it uses NCC (which ranks
+ * windows by correlation rather than testing each one on its own), probes a HotSpotCache, or
+ * searches in parallel without setFirstMatchInScanOrder. The same goes for the first
+ * changed frame after a hit found that way.
+ */
+public class IncrementalMatcher {
+    private final ImageMatcher matcher;
+    private final int tileSize;
+
+    private int frameW = -1;
+    private int frameH = -1;
+    private int tilesX;
+    private int tilesY;
+    private int[] tileSums = new int[0];
+    private int[] nextSums = new int[0];
+    private int[] dirtyPrefix = new int[0]; // 2D prefix sums over the dirty-tile grid
+    private boolean hasState;
+    private Rectangle lastHit;
+    private boolean lastHitFirst; // lastHit (or null) came from a scan-order-first search
+
+    private long fullScans;
+    private long incrementalScans;
+    private long unchangedFrames;
+
+    public IncrementalMatcher(ImageMatcher matcher) {
+        this(matcher, 32);
+    }
+
+    public IncrementalMatcher(ImageMatcher matcher, int tileSize) {
+        this.matcher = matcher;
+        this.tileSize = Math.max(8, tileSize);
+    }
+
+    public ImageMatcher getMatcher() {
+        return matcher;
+    }
+
+    /** Forget the previous frame; the next call does a full scan. */
+    public synchronized void reset() {
+        hasState = false;
+        lastHit = null;
+    }
+
+    public synchronized long getFullScans() {
+        return fullScans;
+    }
+
+    public synchronized long getIncrementalScans() {
+        return incrementalScans;
+    }
+
+    public synchronized long getUnchangedFrames() {
+        return unchangedFrames;
+    }
+
+    public Rectangle findMatch(BufferedImage screenshot) {
+        if (screenshot == null) return null;
+        return findMatch(PixelFrame.of(screenshot));
+    }
+
+    public synchronized Rectangle findMatch(PixelFrame screen) {
+        if (screen == null) return null;
+        boolean sameSize = screen.width == frameW && screen.height == frameH;
+        if (!sameSize) {
+            frameW = screen.width;
+            frameH = screen.height;
+            tilesX = (frameW + tileSize - 1) / tileSize;
+            tilesY = (frameH + tileSize - 1) / tileSize;
+            tileSums = new int[tilesX * tilesY];
+            nextSums = new int[tilesX * tilesY];
+            dirtyPrefix = new int[(tilesX + 1) * (tilesY + 1)];
+        }
+        computeTileSums(screen, nextSums);
+        int[] prev = tileSums;
+        tileSums = nextSums;
+        nextSums = prev;
+
+        if (hasState && sameSize && !markDirty(prev)) {
+            unchangedFrames++;
+            return copy(lastHit);
+        }
+        boolean ordered = firstInScanOrder(screen);
+        if (!hasState || !sameSize || !ordered || !lastHitFirst) {
+            hasState = true;
+            fullScans++;
+            lastHit = matcher.findMatch(screen);
+            lastHitFirst = ordered;
+            return copy(lastHit);
+        }
+        incrementalScans++;
+        lastHit = rescan(screen);
+        return copy(lastHit);
+    }
+
+    /**
+     * True when the matcher's findMatch returns the first tolerance match in scan order on
+     * this frame, which rescan relies on. matchesAt is the tolerance test, which an NCC hit
+     * need not pass.
+     */
+    private boolean firstInScanOrder(PixelFrame screen) {
+        return !matcher.usesNcc(screen) && matcher.getHotSpotCache() == null
+                && (matcher.isFirstMatchInScanOrder() || matcher.getParallelism() == 1);
+    }
+
+    private Rectangle rescan(PixelFrame screen) {
+        int tw = matcher.getTemplateWidth();
+        int th = matcher.getTemplateHeight();
+        int stride = matcher.getStride();
+        int maxX = screen.width - tw;
+        int maxY = screen.height - th;
+        if (maxX < 0 || maxY < 0) return null;
+
+        // candidates after the previous hit were never evaluated
+        int limitX = lastHit == null ? maxX + 1 : lastHit.x;
+        int limitY = lastHit == null ? 0 : lastHit.y;
+
+        for (int x = 0; x <= Math.min(limitX, maxX); x += stride) {
+            int yLimit = (x == limitX) ? limitY : maxY + 1;
+            int c0 = x / tileSize;
+            int c1 = (x + tw - 1) / tileSize;
+            int runStart = -1;
+            int runEnd = -1;
+            for (int ty = 0; ty <= tilesY; ty++) {
+                boolean dirty = ty < tilesY && dirtyCount(c0, ty, c1, ty) > 0;
+                if (dirty) {
+                    int lo = Math.max(0, ty * tileSize - th + 1);
+                    int hi = Math.min(maxY, ty * tileSize + tileSize - 1);
+                    if (runStart < 0) runStart = lo;
+                    runEnd = hi;
+                    continue;
+                }
+                if (runStart < 0) continue;
+                // dirty candidate rows [runStart, runEnd]; align to the stride grid
+                int first = (runStart + stride - 1) / stride * stride;
+                for (int y = first; y <= runEnd && y < yLimit; y += stride) {
+                    if (matcher.matchesAt(screen, x, y)) return new Rectangle(x, y, tw, th);
+                }
+                runStart = -1;
+            }
+        }
+
+        if (lastHit == null) return null;
+        if (dirtyCount(lastHit.x / tileSize, lastHit.y / tileSize,
+                (lastHit.x + tw - 1) / tileSize, (lastHit.y + th - 1) / tileSize) == 0) {
+            return lastHit; // its window did not change, so it still matches
+        }
+        // the old hit's window changed: continue the scan from there
+        for (int x = lastHit.x; x <= maxX; x += stride) {
+            for (int y = (x == lastHit.x) ? lastHit.y : 0; y <= maxY; y += stride) {
+                if (matcher.matchesAt(screen, x, y)) return new Rectangle(x, y, tw, th);
+            }
+        }
+        return null;
+    }
+
+    private void computeTileSums(PixelFrame f, int[] sums) {
+        Arrays.fill(sums, 0);
+        final int[] data = f.data;
+        for (int y = 0; y < f.height; y++) {
+            int p = f.offset + y * f.scanline;
+            int rowTiles = (y / tileSize) * tilesX;
+            for (int tx = 0; tx < tilesX; tx++) {
+                int x0 = tx * tileSize;
+                int x1 = Math.min(f.width, x0 + tileSize);
+                int h = sums[rowTiles + tx];
+                for (int x = x0; x < x1; x++) {
+                    h = h * 31 + data[p + x];
+                }
+                sums[rowTiles + tx] = h;
+            }
+        }
+    }
+
+    /** Fills dirtyPrefix from the tile sums; returns false when no tile changed. */
+    private boolean markDirty(int[] prev) {
+        int w = tilesX + 1;
+        boolean any = false;
+        for (int ty = 0; ty < tilesY; ty++) {
+            int rowSum = 0;
+            for (int tx = 0; tx < tilesX; tx++) {
+                int i = ty * tilesX + tx;
+                if (tileSums[i] != prev[i]) {
+                    rowSum++;
+                    any = true;
+                }
+                dirtyPrefix[(ty + 1) * w + tx + 1] = dirtyPrefix[ty * w + tx + 1] + rowSum;
+            }
+        }
+        return any;
+    }
+
+    /** Number of dirty tiles in the inclusive tile rectangle [c0..c1] x [r0..r1]. */
+    private int dirtyCount(int c0, int r0, int c1, int r1) {
+        c1 = Math.min(c1, tilesX - 1);
+        r1 = Math.min(r1, tilesY - 1);
+        int w = tilesX + 1;
+        return dirtyPrefix[(r1 + 1) * w + c1 + 1] - dirtyPrefix[r0 * w + c1 + 1]
+                - dirtyPrefix[(r1 + 1) * w + c0] + dirtyPrefix[r0 * w + c0];
+    }
+
+    private static Rectangle copy(Rectangle r) {
+        return r == null ? null : new Rectangle(r);
+    }
+}
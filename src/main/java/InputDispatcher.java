@@ -0,0 +1,313 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs mouse input on its own thread, from a queue of timed steps, so the thread that
+ * requested it never waits for input timing.
+ *
+ * A Script lists steps (move, press, release, click) with pauses between them; dispatch()
+ * turns it into steps due at absolute times and returns at once with a Sequence handle. The
+ * dispatch thread takes each step from a DelayQueue when it is due and runs it. When the sink
+ * is a SteppingInputSink, a click becomes move, press and release, each at its own time, with
+ * the hold in between spent in the queue rather than in a sleep; other sinks get a single
+ * click() call, and scripts built for them take clicks only.
+ *
+ * A Sequence can be cancelled, e.g. when the target disappeared before the click ran: its
+ * remaining steps are dropped, except the release of a button it already pressed.
+ */
+public class InputDispatcher {
+    /** How long a scripted click holds the button down, like MouseController.click(). */
+    static final long CLICK_HOLD_MS = MouseController.CLICK_HOLD_MS;
+
+    private final InputSink sink;
+    private final DelayQueue<Step> queue = new DelayQueue<>();
+    private final AtomicLong order = new AtomicLong(); // FIFO among steps due at the same time
+    private volatile boolean running;
+    private volatile Thread thread;
+
+    public InputDispatcher(InputSink sink) {
+        this.sink = sink;
+    }
+
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        thread = new Thread(this::run, "InputDispatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Cancels everything still queued (releasing a pressed button) and stops the thread. */
+    public synchronized void stop() {
+        if (!running) return;
+        List<Step> left = new ArrayList<>();
+        queue.drainTo(left);
+        for (Step s : left) s.sequence.cancel();
+        for (Step s : left) s.run(); // only releases of pressed buttons still do something
+        running = false;
+        thread.interrupt();
+        thread = null;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /** Click at (x,y) after delayMs; starts the dispatch thread if needed. */
+    public Sequence click(int x, int y, long delayMs) {
+        return dispatch(new Script(sink).click(x, y), delayMs);
+    }
+
+    /**
+     * Queues the script's steps, the first one delayMs from now, and returns at once. A script
+     * with moves, presses or releases needs a SteppingInputSink.
+     */
+    public Sequence dispatch(Script script, long delayMs) {
+        boolean steps = sink instanceof SteppingInputSink;
+        if (script.stepped && !steps) {
+            throw new IllegalArgumentException("Script has steps, " + sink.getClass().getName() + " only clicks");
+        }
+        if (!script.steps.isEmpty() && !running) start();
+        long t = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMs));
+        List<Step> out = new ArrayList<>();
+        Sequence seq = new Sequence(this);
+        for (Step s : script.steps) {
+            t += TimeUnit.MILLISECONDS.toNanos(s.pauseMs);
+            if (s.kind == Kind.CLICK && steps) {
+                out.add(new Step(seq, Kind.MOVE, s.x, s.y, t));
+                out.add(new Step(seq, Kind.PRESS, 0, 0, t));
+                t += TimeUnit.MILLISECONDS.toNanos(CLICK_HOLD_MS);
+                out.add(new Step(seq, Kind.RELEASE, 0, 0, t));
+            } else {
+                out.add(new Step(seq, s.kind, s.x, s.y, t));
+            }
+        }
+        seq.begin(out.size(), out.isEmpty() ? System.nanoTime() : out.get(0).dueNanos);
+        for (Step s : out) {
+            s.order = order.getAndIncrement();
+            queue.add(s);
+        }
+        return seq;
+    }
+
+    private void run() {
+        while (running && thread == Thread.currentThread()) { // a restart replaces the thread
+            Step s;
+            try {
+                s = queue.take();
+            } catch (InterruptedException e) {
+                continue; // stop() interrupts after draining the queue
+            }
+            try {
+                s.run();
+            } catch (RuntimeException ex) {
+                System.err.println("Input step " + s.kind + " failed: " + ex.getMessage());
+                s.sequence.stepFinished();
+            }
+        }
+    }
+
+    /** Removes the sequence's queued steps that may be dropped; returns how many. */
+    private int drop(Sequence seq) {
+        int dropped = 0;
+        for (Step s : queue) {
+            if (s.sequence == seq && !s.mustRun() && queue.remove(s)) dropped++;
+        }
+        return dropped;
+    }
+
+    private enum Kind { MOVE, PRESS, RELEASE, CLICK }
+
+    /**
+     * Steps with pauses, built once and dispatched any number of times. Built for a sink:
+     * move, press and release are refused unless it is a SteppingInputSink.
+     */
+    public static final class Script {
+        private final List<Step> steps = new ArrayList<>();
+        private final InputSink sink;
+        private boolean stepped; // has a move, press or release
+        private long pendingPauseMs;
+
+        public Script(InputSink sink) {
+            this.sink = sink;
+        }
+
+        public Script move(int x, int y) {
+            return addStep(Kind.MOVE, x, y);
+        }
+
+        public Script press() {
+            return addStep(Kind.PRESS, 0, 0);
+        }
+
+        public Script release() {
+            return addStep(Kind.RELEASE, 0, 0);
+        }
+
+        /** Move, press and release after CLICK_HOLD_MS (a single click() on sinks without steps). */
+        public Script click(int x, int y) {
+            return add(Kind.CLICK, x, y);
+        }
+
+        /** Wait before the next step. */
+        public Script pause(long ms) {
+            pendingPauseMs += Math.max(0, ms);
+            return this;
+        }
+
+        private Script addStep(Kind kind, int x, int y) {
+            if (!(sink instanceof SteppingInputSink)) {
+                throw new UnsupportedOperationException(sink.getClass().getName() + " only supports clicks");
+            }
+            stepped = true;
+            return add(kind, x, y);
+        }
+
+        private Script add(Kind kind, int x, int y) {
+            Step s = new Step(null, kind, x, y, 0);
+            s.pauseMs = pendingPauseMs;
+            pendingPauseMs = 0;
+            steps.add(s);
+            return this;
+        }
+    }
+
+    /** Handle of one dispatched script. */
+    public static final class Sequence {
+        private final InputDispatcher dispatcher;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private int remaining;       // guarded by this
+        private boolean cancelled;   // guarded by this
+        private boolean pressed;     // guarded by this; a press ran without its release yet
+        private long startNanos;
+        private volatile long doneNanos;
+
+        private Sequence(InputDispatcher dispatcher) {
+            this.dispatcher = dispatcher;
+        }
+
+        private synchronized void begin(int steps, long startNanos) {
+            this.remaining = steps;
+            this.startNanos = startNanos;
+            if (steps == 0) finish();
+        }
+
+        /**
+         * Drops the steps that have not run yet, except a release owed to an earlier press.
+         * Returns false if the sequence had already finished.
+         */
+        public boolean cancel() {
+            synchronized (this) {
+                if (isDone() || cancelled) return !isDone();
+                cancelled = true;
+            }
+            int dropped = dispatcher.drop(this);
+            for (int i = 0; i < dropped; i++) stepFinished();
+            return true;
+        }
+
+        public synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        /** True when every step ran or was dropped. */
+        public boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        /** Waits up to timeoutMs for the sequence to finish; returns isDone(). */
+        public boolean await(long timeoutMs) throws InterruptedException {
+            return done.await(timeoutMs, TimeUnit.MILLISECONDS);
+        }
+
+        /** When the first step was due, System.nanoTime() based. */
+        public synchronized long getStartNanos() {
+            return startNanos;
+        }
+
+        /** System.nanoTime() when the sequence finished, or 0 while it has not. */
+        public long getDoneNanos() {
+            return doneNanos;
+        }
+
+        private synchronized void stepFinished() {
+            if (--remaining == 0) finish();
+        }
+
+        private void finish() {
+            doneNanos = System.nanoTime();
+            done.countDown();
+        }
+    }
+
+    private static final class Step implements Delayed {
+        final Sequence sequence;
+        final Kind kind;
+        final int x;
+        final int y;
+        final long dueNanos;
+        long order;
+        long pauseMs; // Script only: pause before this step
+
+        Step(Sequence sequence, Kind kind, int x, int y, long dueNanos) {
+            this.sequence = sequence;
+            this.kind = kind;
+            this.x = x;
+            this.y = y;
+            this.dueNanos = dueNanos;
+        }
+
+        /** A release after its sequence pressed the button runs even when cancelled. */
+        boolean mustRun() {
+            synchronized (sequence) {
+                return kind == Kind.RELEASE && sequence.pressed;
+            }
+        }
+
+        /** Runs the step unless its sequence was cancelled, then counts it as finished. */
+        void run() {
+            InputSink sink = sequence.dispatcher.sink;
+            // only clicks reach a sink without steps, see dispatch()
+            synchronized (sequence) {
+                // checked under the lock, so a concurrent cancel() either drops a release or sees its press
+                if (sequence.cancelled && !(kind == Kind.RELEASE && sequence.pressed)) {
+                    sequence.stepFinished();
+                    return;
+                }
+                switch (kind) {
+                    case MOVE:
+                        ((SteppingInputSink) sink).move(x, y);
+                        break;
+                    case PRESS:
+                        ((SteppingInputSink) sink).press();
+                        sequence.pressed = true;
+                        break;
+                    case RELEASE:
+                        ((SteppingInputSink) sink).release();
+                        sequence.pressed = false;
+                        break;
+                    default:
+                        sink.click(x, y);
+                }
+            }
+            sequence.stepFinished();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            Step s = (Step) o;
+            if (dueNanos != s.dueNanos) return Long.compare(dueNanos - s.dueNanos, 0);
+            return Long.compare(order, s.order);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+import java.awt.*;
+
+/**
+ * Where AutoClicker sends its clicks. MouseController drives the real mouse;
+ * RecordingInputSink only records them. Sinks that can also move, press and release on their
+ * own implement SteppingInputSink.
+ */
+public interface InputSink {
+    /**
+     * Left-click at (x,y) in screen coordinates.
+     */
+    void click(int x, int y);
+
+    /**
+     * The area clicks may land in, in screen coordinates.
+     */
+    Rectangle getBounds();
+}
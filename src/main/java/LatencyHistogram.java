@@ -0,0 +1,75 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with log-linear buckets in microseconds: exact below 8 us,
+ * then 8 sub-buckets per power of two, so any reported percentile is within 12.5% of the
+ * true value. Fixed size (about 2.5 KB), no allocation on record().
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int BUCKETS = SUB + (64 - SUB_BITS) * SUB;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sumMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void recordNanos(long nanos) {
+        long us = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(bucket(us));
+        count.incrementAndGet();
+        sumMicros.addAndGet(us);
+        maxMicros.accumulateAndGet(us, Math::max);
+    }
+
+    static int bucket(long us) {
+        if (us < SUB) return (int) us;
+        int e = 63 - Long.numberOfLeadingZeros(us);
+        int sub = (int) (us >>> (e - SUB_BITS)) - SUB;
+        return SUB + (e - SUB_BITS) * SUB + sub;
+    }
+
+    /** Largest value that falls into bucket i. */
+    static long upperBound(int i) {
+        if (i < SUB) return i;
+        int e = (i - SUB) / SUB + SUB_BITS;
+        int sub = (i - SUB) % SUB;
+        long lower = (long) (SUB + sub) << (e - SUB_BITS);
+        return lower + (1L << (e - SUB_BITS)) - 1;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public double getMeanMs() {
+        long n = count.get();
+        return n == 0 ? 0 : sumMicros.get() / 1000.0 / n;
+    }
+
+    public double getMaxMs() {
+        return maxMicros.get() / 1000.0;
+    }
+
+    /** Value at quantile q (0..1) in milliseconds, or 0 when nothing was recorded. */
+    public double getPercentileMs(double q) {
+        long n = count.get();
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(q * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(upperBound(i), maxMicros.get()) / 1000.0;
+        }
+        return getMaxMs();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        count.set(0);
+        sumMicros.set(0);
+        maxMicros.set(0);
+    }
+}
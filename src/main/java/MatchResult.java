@@ -0,0 +1,39 @@
+import java.awt.*;
+
+/**
+ * Result of ImageMatcher.findBestMatch: where the template fits best and how well.
+ *
+ * The error is the SAD or SSD over the template's opaque pixels and channels. Confidence is
+ * 1 minus the mean per-pixel error as a fraction of the largest possible one, so 1.0 is a
+ * pixel-exact match and anti-aliased or slightly recolored matches land just below it.
+ * In NCC search mode the confidence is the correlation score instead.
+ */
+public final class MatchResult {
+    private final Rectangle bounds;
+    private final long error;
+    private final double confidence;
+
+    MatchResult(Rectangle bounds, long error, double confidence) {
+        this.bounds = bounds;
+        this.error = error;
+        this.confidence = confidence;
+    }
+
+    public Rectangle getBounds() {
+        return new Rectangle(bounds);
+    }
+
+    public long getError() {
+        return error;
+    }
+
+    public double getConfidence() {
+        return confidence;
+    }
+
+    @Override
+    public String toString() {
+        return "MatchResult[" + bounds.x + "," + bounds.y + " " + bounds.width + "x" + bounds.height
+                + " error=" + error + String.format(" confidence=%.4f]", confidence);
+    }
+}
@@ -1,30 +1,85 @@
 import java.awt.*;
 import java.awt.event.InputEvent;
 
-public class MouseController {
+public class MouseController implements SteppingInputSink {
+    /** How long click() holds the button down. */
+    static final int CLICK_HOLD_MS = 50;
+    private static final int SETTLE_MS = 5; // after moving and releasing
+
     private final Robot robot;
 
     public MouseController() {
         try {
             this.robot = new Robot();
-            this.robot.setAutoDelay(5);
         } catch (AWTException e) {
             throw new RuntimeException("Failed to initialize mouse controller", e);
         }
     }
 
     /**
-     * Move to (x,y) and left-click. Coordinates are clamped to the primary screen bounds
-     * to avoid Robot throwing exceptions or moving outside visible area.
+     * Move to (x,y) and left-click. (x,y) are virtual-desktop coordinates, so points on
+     * secondary monitors (possibly negative) are clicked where they are; points outside every
+     * monitor are clamped onto the nearest one to avoid Robot moving outside the visible area.
      */
+    @Override
     public void click(int x, int y) {
-        Dimension screen = Toolkit.getDefaultToolkit().getScreenSize();
-        int cx = Math.max(0, Math.min(x, screen.width - 1));
-        int cy = Math.max(0, Math.min(y, screen.height - 1));
+        move(x, y);
+        robot.delay(SETTLE_MS);
+        press();
+        robot.delay(CLICK_HOLD_MS);
+        release();
+        robot.delay(SETTLE_MS);
+    }
+
+    /** Moves to (x,y), clamped like click(); returns at once. */
+    @Override
+    public void move(int x, int y) {
+        Point p = clamp(x, y, screenBounds());
+        robot.mouseMove(p.x, p.y);
+    }
 
-        robot.mouseMove(cx, cy);
+    @Override
+    public void press() {
         robot.mousePress(InputEvent.BUTTON1_DOWN_MASK);
-        robot.delay(50);
+    }
+
+    @Override
+    public void release() {
         robot.mouseRelease(InputEvent.BUTTON1_DOWN_MASK);
     }
-}
\ No newline at end of file
+
+    /**
+     * The virtual desktop: the bounding box of all monitors. With monitors of different sizes
+     * it includes areas that are on no monitor; click() clamps those onto the nearest one.
+     */
+    @Override
+    public Rectangle getBounds() {
+        Rectangle all = null;
+        for (Rectangle b : screenBounds()) all = (all == null) ? b : all.union(b);
+        return all;
+    }
+
+    private static Rectangle[] screenBounds() {
+        GraphicsDevice[] devices = GraphicsEnvironment.getLocalGraphicsEnvironment().getScreenDevices();
+        Rectangle[] out = new Rectangle[devices.length];
+        for (int i = 0; i < devices.length; i++) out[i] = devices[i].getDefaultConfiguration().getBounds();
+        return out;
+    }
+
+    /** (x,y) itself when some screen contains it, otherwise the closest point on any screen. */
+    static Point clamp(int x, int y, Rectangle[] screens) {
+        Point best = null;
+        long bestDist = Long.MAX_VALUE;
+        for (Rectangle s : screens) {
+            int cx = Math.max(s.x, Math.min(x, s.x + s.width - 1));
+            int cy = Math.max(s.y, Math.min(y, s.y + s.height - 1));
+            long dx = cx - x;
+            long dy = cy - y;
+            if (dx * dx + dy * dy < bestDist) {
+                bestDist = dx * dx + dy * dy;
+                best = new Point(cx, cy);
+            }
+        }
+        return best;
+    }
+}
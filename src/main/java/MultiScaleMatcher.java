@@ -0,0 +1,298 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds one template across several display scalings (e.g. 100%, 125% and 150%) without a
+ * separate template image per scaling.
+ *
+ * The template is resampled once per scale factor and each copy gets its own ImageMatcher,
+ * created on first use and cached. The scale that matched last time is tried first, so a
+ * steady setup costs one search per frame. When that scale misses, the remaining scales are
+ * ranked on a block-averaged copy of the screen and template (the coarse level): a scale is
+ * pruned when not even its best coarse position is within the coarse tolerance, and the
+ * survivors are searched at full resolution, best coarse score first. Scales searched with
+ * NCC are never pruned, only ranked: the coarse level tests color tolerance, which a
+ * brightness or contrast shifted target fails and NCC does not.
+ *
+ * Search mode, parallelism, score metric and NCC settings are copied from the base matcher
+ * before every search, so they can still be changed after construction.
+ */
+public class MultiScaleMatcher implements AutoCloseable {
+    /** Extra per-pixel color distance allowed on the coarse level, for block misalignment. */
+    static final int COARSE_SLACK = 48;
+    private static final int MAX_COARSE_FACTOR = 4;
+    private static final int MIN_COARSE_SIDE = 4; // coarse templates at least this many blocks wide and high
+
+    private final ImageMatcher base;
+    private final double[] scales;          // ascending
+    private final ImageMatcher[] matchers;  // per scale, built on first use
+    private final ImageMatcher[] coarse;    // per scale, block-averaged template
+    private final int coarseFactor;         // 1 = no coarse level, templates too small
+
+    private int lastWinner = -1;
+    private long coarsePasses;
+    private long prunedScales;
+
+    /** Scales minScale, minScale + step, ... up to maxScale. */
+    public MultiScaleMatcher(ImageMatcher base, double minScale, double maxScale, double step) {
+        this(base, range(minScale, maxScale, step));
+    }
+
+    public MultiScaleMatcher(ImageMatcher base, double... scales) {
+        if (scales == null || scales.length == 0) throw new IllegalArgumentException("No scale factors given");
+        this.base = base;
+        this.scales = scales.clone();
+        Arrays.sort(this.scales);
+        for (double s : this.scales) {
+            if (!(s > 0)) throw new IllegalArgumentException("Scale factors must be positive: " + s);
+        }
+        this.matchers = new ImageMatcher[this.scales.length];
+        this.coarse = new ImageMatcher[this.scales.length];
+
+        int minSide = Integer.MAX_VALUE;
+        for (double s : this.scales) {
+            minSide = Math.min(minSide, Math.min(scaledSize(base.getTemplateWidth(), s),
+                    scaledSize(base.getTemplateHeight(), s)));
+        }
+        int f = MAX_COARSE_FACTOR;
+        while (f > 1 && minSide / f < MIN_COARSE_SIDE) f >>= 1;
+        this.coarseFactor = f;
+    }
+
+    private static double[] range(double minScale, double maxScale, double step) {
+        if (!(step > 0) || !(minScale > 0) || maxScale < minScale) {
+            throw new IllegalArgumentException("Bad scale range " + minScale + ".." + maxScale + " step " + step);
+        }
+        int n = (int) Math.floor((maxScale - minScale) / step + 1e-9) + 1;
+        double[] out = new double[n];
+        for (int i = 0; i < n; i++) out[i] = Math.round((minScale + i * step) * 1e6) / 1e6;
+        return out;
+    }
+
+    public ImageMatcher getBaseMatcher() {
+        return base;
+    }
+
+    public double[] getScales() {
+        return scales.clone();
+    }
+
+    /** Scale factor of the last successful match, or NaN before the first one. */
+    public synchronized double getLastScale() {
+        return lastWinner < 0 ? Double.NaN : scales[lastWinner];
+    }
+
+    /** Matcher of the scale that matched last, e.g. for verifying a click; null before the first match. */
+    public synchronized ImageMatcher getLastMatcher() {
+        return lastWinner < 0 ? null : matchers[lastWinner];
+    }
+
+    /** Number of searches in which the last winning scale missed and the coarse ranking ran. */
+    public synchronized long getCoarsePasses() {
+        return coarsePasses;
+    }
+
+    /** Total scales skipped because their coarse level ruled them out. */
+    public synchronized long getPrunedScales() {
+        return prunedScales;
+    }
+
+    public Rectangle findMatch(BufferedImage screenshot) {
+        if (screenshot == null) return null;
+        return findMatch(PixelFrame.of(screenshot));
+    }
+
+    /** First match in try order (last winner, then surviving scales by coarse score). */
+    public synchronized Rectangle findMatch(PixelFrame screen) {
+        if (screen == null) return null;
+        if (lastWinner >= 0) {
+            Rectangle hit = matcher(lastWinner).findMatch(screen);
+            if (hit != null) return hit;
+        }
+        for (int i : rankScales(screen)) {
+            Rectangle hit = matcher(i).findMatch(screen);
+            if (hit != null) {
+                lastWinner = i;
+                return hit;
+            }
+        }
+        return null;
+    }
+
+    public MatchResult findBestMatch(BufferedImage screenshot) {
+        if (screenshot == null) return null;
+        return findBestMatch(PixelFrame.of(screenshot));
+    }
+
+    /**
+     * Highest-confidence ImageMatcher.findBestMatch result over the last winner and the
+     * surviving scales; stops early on a perfect match.
+     */
+    public synchronized MatchResult findBestMatch(PixelFrame screen) {
+        if (screen == null) return null;
+        List<Integer> order = new ArrayList<>();
+        if (lastWinner >= 0) order.add(lastWinner);
+        for (int i : rankScales(screen)) {
+            if (i != lastWinner) order.add(i);
+        }
+        MatchResult best = null;
+        int bestScale = -1;
+        for (int i : order) {
+            MatchResult r = matcher(i).findBestMatch(screen);
+            if (r != null && (best == null || r.getConfidence() > best.getConfidence())) {
+                best = r;
+                bestScale = i;
+                if (r.getConfidence() >= 1.0) break;
+            }
+        }
+        if (bestScale >= 0) lastWinner = bestScale;
+        return best;
+    }
+
+    /**
+     * Scales other than the last winner that survive the coarse level, best coarse score first
+     * (NCC scales always survive, after the coarse hits). Without a coarse level, all of them
+     * ordered by distance from 1.0.
+     */
+    /**
+     * Releases the search pools of the scaled matchers this matcher built. The base matcher
+     * belongs to the caller and is not closed.
+     */
+    @Override
+    public synchronized void close() {
+        for (ImageMatcher m : matchers) {
+            if (m != null && m != base) m.close();
+        }
+    }
+
+    private List<Integer> rankScales(PixelFrame screen) {
+        coarsePasses++;
+        List<Integer> order = new ArrayList<>();
+        if (coarseFactor == 1) {
+            for (int i = 0; i < scales.length; i++) {
+                if (i != lastWinner) order.add(i);
+            }
+            order.sort((a, b) -> Double.compare(Math.abs(Math.log(scales[a])), Math.abs(Math.log(scales[b]))));
+            return order;
+        }
+
+        PixelFrame small = downsample(screen, coarseFactor);
+        double[] confidence = new double[scales.length];
+        for (int i = 0; i < scales.length; i++) {
+            if (i == lastWinner) continue;
+            ImageMatcher c = coarseMatcher(i);
+            MatchResult r = (small.width < c.getTemplateWidth() || small.height < c.getTemplateHeight())
+                    ? null : c.findBestMatch(small);
+            if (r == null && !matcher(i).usesNcc(screen)) {
+                prunedScales++;
+                continue;
+            }
+            confidence[i] = (r == null) ? -1 : r.getConfidence();
+            order.add(i);
+        }
+        order.sort((a, b) -> Double.compare(confidence[b], confidence[a]));
+        return order;
+    }
+
+    private ImageMatcher matcher(int i) {
+        ImageMatcher m = matchers[i];
+        if (m == null) {
+            if (scales[i] == 1.0) {
+                m = base;
+            } else {
+                m = new ImageMatcher(resample(templateImage(), scales[i]), base.getTolerance(), base.getStride());
+            }
+            matchers[i] = m;
+        }
+        if (m != base) {
+            m.setSearchMode(base.getSearchMode());
+            m.setParallelism(base.getParallelism());
+            m.setFirstMatchInScanOrder(base.isFirstMatchInScanOrder());
+            m.setScoreMetric(base.getScoreMetric());
+            m.setNccThreshold(base.getNccThreshold());
+            m.setAutoNccThreshold(base.getAutoNccThreshold());
+        }
+        return m;
+    }
+
+    private ImageMatcher coarseMatcher(int i) {
+        ImageMatcher c = coarse[i];
+        if (c == null) {
+            BufferedImage scaled = scales[i] == 1.0 ? templateImage() : resample(templateImage(), scales[i]);
+            PixelFrame f = downsample(PixelFrame.of(scaled), coarseFactor);
+            BufferedImage img = new BufferedImage(f.width, f.height, BufferedImage.TYPE_INT_ARGB);
+            img.setRGB(0, 0, f.width, f.height, f.data, 0, f.width);
+            c = new ImageMatcher(img, base.getTolerance() + COARSE_SLACK, 1);
+            c.setScoreMetric(ImageMatcher.ScoreMetric.SAD);
+            coarse[i] = c;
+        }
+        return c;
+    }
+
+    private BufferedImage templateImage() {
+        int tw = base.getTemplateWidth();
+        int th = base.getTemplateHeight();
+        BufferedImage img = new BufferedImage(tw, th, BufferedImage.TYPE_INT_ARGB);
+        img.setRGB(0, 0, tw, th, base.templatePixels(), 0, tw);
+        return img;
+    }
+
+    static int scaledSize(int size, double scale) {
+        return Math.max(1, (int) Math.round(size * scale));
+    }
+
+    /**
+     * Bilinear resample, as display scaling renders UI elements. Pixels end up either opaque
+     * or fully transparent (alpha cut at 50%), since the matcher only skips alpha 0.
+     */
+    static BufferedImage resample(BufferedImage src, double scale) {
+        int w = scaledSize(src.getWidth(), scale);
+        int h = scaledSize(src.getHeight(), scale);
+        BufferedImage out = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = out.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g.drawImage(src, 0, 0, w, h, null);
+        g.dispose();
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                int p = out.getRGB(x, y);
+                out.setRGB(x, y, (p >>> 24) >= 0x80 ? p | 0xFF000000 : p & 0x00FFFFFF);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Averages f x f blocks (the incomplete right and bottom blocks are dropped). A block with
+     * any transparent pixel becomes transparent.
+     */
+    static PixelFrame downsample(PixelFrame src, int f) {
+        int w = src.width / f;
+        int h = src.height / f;
+        int[] out = new int[w * h];
+        int n = f * f;
+        for (int by = 0; by < h; by++) {
+            for (int bx = 0; bx < w; bx++) {
+                int r = 0, g = 0, b = 0;
+                boolean opaque = true;
+                for (int y = 0; y < f; y++) {
+                    int p = src.offset + (by * f + y) * src.scanline + bx * f;
+                    for (int x = 0; x < f; x++) {
+                        int rgb = src.data[p + x] | src.alphaMask;
+                        if ((rgb >>> 24) == 0) opaque = false;
+                        r += (rgb >> 16) & 0xFF;
+                        g += (rgb >> 8) & 0xFF;
+                        b += rgb & 0xFF;
+                    }
+                }
+                int rgb = ((r + n / 2) / n << 16) | ((g + n / 2) / n << 8) | (b + n / 2) / n;
+                out[by * w + bx] = opaque ? 0xFF000000 | rgb : rgb;
+            }
+        }
+        return new PixelFrame(out, w, h, 0, w, 0);
+    }
+}
@@ -0,0 +1,194 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * FrameSource spanning every monitor. All coordinates are virtual-desktop coordinates, in
+ * which secondary monitors may lie at negative x or y.
+ *
+ * Each monitor has its own ScreenScanner (and Robot) and its own worker thread. A capture
+ * runs the per-monitor captures concurrently and copies them into one frame covering the
+ * requested area; parts of that area outside every monitor stay black. findMatch() matches
+ * each monitor's part of such a frame on that monitor's worker, so with several monitors a
+ * scan takes about as long as the slowest monitor instead of all of them in turn.
+ */
+public class MultiScreenSource implements FrameSource {
+    private final FrameSource[] screens;
+    private final Rectangle[] bounds;  // per screen
+    private final Rectangle desktop;   // union of bounds
+    private final ExecutorService workers;
+
+    /** All monitors of the local graphics environment; mirrored monitors are captured once. */
+    public MultiScreenSource() {
+        this(localScreens());
+    }
+
+    /** Screens whose getBounds() are given in virtual-desktop coordinates. */
+    public MultiScreenSource(List<? extends FrameSource> screens) {
+        if (screens.isEmpty()) throw new IllegalArgumentException("No screens given");
+        this.screens = screens.toArray(new FrameSource[0]);
+        this.bounds = new Rectangle[this.screens.length];
+        Rectangle all = null;
+        for (int i = 0; i < bounds.length; i++) {
+            bounds[i] = this.screens[i].getBounds();
+            all = (all == null) ? new Rectangle(bounds[i]) : all.union(bounds[i]);
+        }
+        this.desktop = all;
+        this.workers = Executors.newFixedThreadPool(this.screens.length, r -> {
+            Thread t = new Thread(r, "MultiScreenSource-worker");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private static List<ScreenScanner> localScreens() {
+        List<ScreenScanner> out = new ArrayList<>();
+        List<Rectangle> seen = new ArrayList<>();
+        for (GraphicsDevice d : GraphicsEnvironment.getLocalGraphicsEnvironment().getScreenDevices()) {
+            Rectangle b = d.getDefaultConfiguration().getBounds();
+            if (seen.contains(b)) continue;
+            seen.add(b);
+            out.add(new ScreenScanner(d));
+        }
+        return out;
+    }
+
+    /** Number of monitors, mirrored ones counted once. */
+    public int getScreenCount() {
+        return screens.length;
+    }
+
+    /** Bounds of each monitor, in virtual-desktop coordinates. */
+    public List<Rectangle> getScreenBounds() {
+        List<Rectangle> out = new ArrayList<>();
+        for (Rectangle b : bounds) out.add(new Rectangle(b));
+        return out;
+    }
+
+    @Override
+    public BufferedImage capture() {
+        return captureInto(null, null);
+    }
+
+    @Override
+    public BufferedImage capture(Rectangle region) {
+        return captureInto(region, null);
+    }
+
+    /** Writes into {@code reuse} when it is a TYPE_INT_RGB image of the clamped region's size. */
+    @Override
+    public BufferedImage captureInto(Rectangle region, BufferedImage reuse) {
+        Rectangle r = (region == null) ? new Rectangle(desktop) : region.intersection(desktop);
+        if (r.isEmpty()) return null;
+        List<Integer> hit = new ArrayList<>();
+        for (int i = 0; i < screens.length; i++) {
+            if (bounds[i].contains(r)) return screens[i].capture(r); // within one monitor, nothing to stitch
+            if (bounds[i].intersects(r)) hit.add(i);
+        }
+
+        BufferedImage frame = reuse;
+        boolean fresh = frame == null || frame.getWidth() != r.width || frame.getHeight() != r.height
+                || frame.getType() != BufferedImage.TYPE_INT_RGB;
+        if (fresh) frame = new BufferedImage(r.width, r.height, BufferedImage.TYPE_INT_RGB);
+        PixelFrame dst = PixelFrame.of(frame);
+        if (!fresh) Arrays.fill(dst.data, 0); // gaps between monitors must not keep old pixels
+
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i : hit) {
+            FrameSource screen = screens[i];
+            Rectangle part = bounds[i].intersection(r);
+            tasks.add(() -> {
+                BufferedImage img = screen.capture(part);
+                if (img != null) copy(PixelFrame.of(img), dst, part.x - r.x, part.y - r.y);
+                return null;
+            });
+        }
+        runAll(tasks);
+        return frame;
+    }
+
+    /** Copies src into dst at (x, y); concurrent calls must write disjoint areas. */
+    private static void copy(PixelFrame src, PixelFrame dst, int x, int y) {
+        int w = Math.min(src.width, dst.width - x);
+        int h = Math.min(src.height, dst.height - y);
+        for (int row = 0; row < h; row++) {
+            int s = src.offset + row * src.scanline;
+            int d = dst.offset + (y + row) * dst.scanline + x;
+            if (src.alphaMask == 0) {
+                System.arraycopy(src.data, s, dst.data, d, w);
+            } else {
+                for (int i = 0; i < w; i++) dst.data[d + i] = src.data[s + i] | src.alphaMask;
+            }
+        }
+    }
+
+    @Override
+    public Rectangle getBounds() {
+        return new Rectangle(desktop);
+    }
+
+    /**
+     * Searches a frame of this source monitor by monitor, each on its own worker, and returns
+     * the hit (in frame coordinates) of the first monitor in enumeration order that has one.
+     * {@code frameArea} is the virtual-desktop area the frame shows, e.g. getBounds() for a
+     * full capture. A template straddling two monitors is not found.
+     */
+    public Rectangle findMatch(ImageMatcher matcher, BufferedImage frame, Rectangle frameArea) {
+        if (frame == null) return null;
+        PixelFrame pf = PixelFrame.of(frame);
+        List<Callable<Rectangle>> tasks = new ArrayList<>();
+        for (Rectangle b : bounds) {
+            Rectangle part = b.intersection(frameArea)
+                    .intersection(new Rectangle(frameArea.x, frameArea.y, pf.width, pf.height));
+            if (part.width < matcher.getTemplateWidth() || part.height < matcher.getTemplateHeight()) continue;
+            int x = part.x - frameArea.x;
+            int y = part.y - frameArea.y;
+            tasks.add(() -> {
+                Rectangle hit = matcher.findMatch(pf.slice(x, y, part.width, part.height));
+                if (hit != null) hit.translate(x, y);
+                return hit;
+            });
+        }
+        for (Rectangle hit : runAll(tasks)) {
+            if (hit != null) return hit;
+        }
+        return null;
+    }
+
+    /** Runs the tasks on the workers (the first on the calling thread) and returns their results in order. */
+    private <T> List<T> runAll(List<Callable<T>> tasks) {
+        List<Future<T>> futures = new ArrayList<>();
+        for (int i = 1; i < tasks.size(); i++) futures.add(workers.submit(tasks.get(i)));
+        List<T> out = new ArrayList<>();
+        try {
+            if (!tasks.isEmpty()) out.add(tasks.get(0).call());
+            for (Future<T> f : futures) out.add(f.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted during multi-screen scan", e);
+        } catch (ExecutionException e) {
+            throw unchecked(e.getCause());
+        } catch (Exception e) {
+            throw unchecked(e);
+        } finally {
+            for (Future<T> f : futures) f.cancel(true);
+        }
+        return out;
+    }
+
+    private static RuntimeException unchecked(Throwable t) {
+        return (t instanceof RuntimeException) ? (RuntimeException) t : new RuntimeException(t);
+    }
+
+    /** Stops the worker threads; later captures or searches spanning several monitors fail. */
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+}
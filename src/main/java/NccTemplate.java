@@ -0,0 +1,272 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Zero-mean luma of one template, for ImageMatcher's NCC (normalized cross-correlation) mode.
+ *
+ * The dot product of the template with every screen offset is computed tile by tile with FFTs
+ * (overlap-save): an n x n tile of screen luma is transformed, multiplied by the conjugate of
+ * the template's cached spectrum and transformed back, which yields the dot product for all
+ * (n-tw+1) x (n-th+1) offsets the tile fully contains. Two tiles share one complex transform,
+ * one in the real and one in the imaginary part. Window sums of luma and luma^2 come from
+ * integral images, giving the score
+ *
+ *   sum(t' * s) / (|t'| * sqrt(sum(s^2) - sum(s)^2 / n))     (t' = template luma minus its mean)
+ *
+ * in [-1, 1], unchanged when the screen gets uniformly brighter/darker or more/less contrasty.
+ * The cost grows with the screen area and only logarithmically with the template size.
+ * Only opaque, non-flat templates are supported; see usable().
+ */
+final class NccTemplate {
+    static final int MAX_TILE = 1024;
+    private static final double TIE = 1e-9; // scores closer than this tie, first in scan order wins
+
+    private final int tw;
+    private final int th;
+    private final int n;
+    private final double[] zeroMean;
+    private final double norm;
+    private final boolean opaque;
+    private volatile Spectrum spectrum;
+
+    NccTemplate(int[] argb, int tw, int th) {
+        this.tw = tw;
+        this.th = th;
+        this.n = tw * th;
+        boolean allOpaque = true;
+        long sum = 0;
+        long sq = 0;
+        int[] luma = new int[n];
+        for (int i = 0; i < n; i++) {
+            if ((argb[i] >>> 24) != 0xFF) allOpaque = false;
+            luma[i] = luma(argb[i]);
+            sum += luma[i];
+            sq += (long) luma[i] * luma[i];
+        }
+        this.opaque = allOpaque;
+        double mean = (double) sum / n;
+        zeroMean = new double[n];
+        for (int i = 0; i < n; i++) zeroMean[i] = luma[i] - mean;
+        this.norm = Math.sqrt((double) (n * sq - sum * sum) / n);
+    }
+
+    static int luma(int rgb) {
+        return (((rgb >> 16) & 0xFF) * 77 + ((rgb >> 8) & 0xFF) * 150 + (rgb & 0xFF) * 29) >> 8;
+    }
+
+    /** False for templates with transparent pixels, a single luma value, or a side above MAX_TILE. */
+    boolean usable() {
+        return opaque && norm > 0 && tw <= MAX_TILE && th <= MAX_TILE;
+    }
+
+    /** Best-scoring offset on the stride grid, or null if the screen is smaller than the template. */
+    Hit search(PixelFrame screen, int stride, Workspace ws) {
+        return correlate(screen, stride, ws, 0, null);
+    }
+
+    /** Every offset on the stride grid scoring at least minScore, in no particular order. */
+    List<Hit> searchAll(PixelFrame screen, int stride, double minScore, Workspace ws) {
+        List<Hit> all = new ArrayList<>();
+        correlate(screen, stride, ws, minScore, all);
+        return all;
+    }
+
+    /** Returns the best hit; also adds every hit scoring at least minScore to {@code all} if given. */
+    private Hit correlate(PixelFrame screen, int stride, Workspace ws, double minScore, List<Hit> all) {
+        int maxX = screen.width - tw;
+        int maxY = screen.height - th;
+        if (maxX < 0 || maxY < 0) return null;
+        Spectrum spec = spectrumFor(tileSize(maxX + 1, maxY + 1));
+        int size = spec.fft.n;
+        ws.prepare(screen, size);
+
+        int stepX = size - tw + 1;
+        int stepY = size - th + 1;
+        int tilesX = (maxX + stepX) / stepX;
+        int tiles = tilesX * ((maxY + stepY) / stepY);
+        double[] re = ws.re;
+        double[] im = ws.im;
+        double scale = 1.0 / ((double) size * size);
+
+        Hit best = null;
+        for (int t = 0; t < tiles; t += 2) {
+            int ax = (t % tilesX) * stepX;
+            int ay = (t / tilesX) * stepY;
+            boolean pair = t + 1 < tiles;
+            int bx = pair ? ((t + 1) % tilesX) * stepX : 0;
+            int by = pair ? ((t + 1) / tilesX) * stepY : 0;
+
+            Arrays.fill(re, 0.0);
+            Arrays.fill(im, 0.0);
+            int rows = ws.fill(re, ax, ay, size);
+            if (pair) rows = Math.max(rows, ws.fill(im, bx, by, size));
+            spec.fft.forward2d(re, im, rows);
+            for (int i = 0; i < re.length; i++) {
+                // (a + ib) * conj(c + id)
+                double a = re[i], b = im[i], c = spec.re[i], d = spec.im[i];
+                re[i] = a * c + b * d;
+                im[i] = b * c - a * d;
+            }
+            spec.fft.inverse2d(re, im, stepY);
+
+            best = better(best, scoreTile(re, ax, ay, maxX, maxY, size, stride, scale, ws, minScore, all));
+            if (pair) best = better(best, scoreTile(im, bx, by, maxX, maxY, size, stride, scale, ws, minScore, all));
+        }
+        return best;
+    }
+
+    private Hit scoreTile(double[] corr, int x0, int y0, int maxX, int maxY, int size, int stride,
+                          double scale, Workspace ws, double minScore, List<Hit> all) {
+        Hit best = null;
+        int xEnd = Math.min(maxX, x0 + size - tw);
+        int yEnd = Math.min(maxY, y0 + size - th);
+        int firstX = (x0 + stride - 1) / stride * stride;
+        int firstY = (y0 + stride - 1) / stride * stride;
+        for (int x = firstX; x <= xEnd; x += stride) {
+            for (int y = firstY; y <= yEnd; y += stride) {
+                long var = ws.windowVariance(x, y, tw, th, n); // n^2 times the luma variance
+                if (var <= 0) continue; // a flat window correlates with nothing
+                double score = Math.min(1.0,
+                        corr[(y - y0) * size + (x - x0)] * scale / (norm * Math.sqrt((double) var / n)));
+                if (all != null && score >= minScore) all.add(new Hit(x, y, score));
+                if (best == null || score > best.score + TIE) best = new Hit(x, y, score);
+            }
+        }
+        return best;
+    }
+
+    private static Hit better(Hit a, Hit b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (Math.abs(a.score - b.score) <= TIE) {
+            return (a.x < b.x || (a.x == b.x && a.y < b.y)) ? a : b;
+        }
+        return a.score > b.score ? a : b;
+    }
+
+    /** Power-of-two tile size with the lowest estimated transform cost for this screen. */
+    private int tileSize(int candidatesX, int candidatesY) {
+        int best = -1;
+        double bestCost = Double.MAX_VALUE;
+        for (int size = Integer.highestOneBit(Math.max(tw, th) * 2 - 1); size <= MAX_TILE; size <<= 1) {
+            long tiles = (long) ceilDiv(candidatesX, size - tw + 1) * ceilDiv(candidatesY, size - th + 1);
+            double cost = (tiles + 1) / 2 * (double) size * size * Integer.numberOfTrailingZeros(size);
+            if (cost < bestCost) {
+                bestCost = cost;
+                best = size;
+            }
+        }
+        return best;
+    }
+
+    private static int ceilDiv(int a, int b) {
+        return (a + b - 1) / b;
+    }
+
+    private Spectrum spectrumFor(int size) {
+        Spectrum s = spectrum;
+        if (s == null || s.fft.n != size) {
+            s = new Spectrum(new Fft(size));
+            for (int y = 0; y < th; y++) {
+                System.arraycopy(zeroMean, y * tw, s.re, y * size, tw);
+            }
+            s.fft.forward2d(s.re, s.im, th);
+            spectrum = s;
+        }
+        return s;
+    }
+
+    static final class Hit {
+        final int x;
+        final int y;
+        final double score;
+
+        Hit(int x, int y, double score) {
+            this.x = x;
+            this.y = y;
+            this.score = score;
+        }
+    }
+
+    private static final class Spectrum {
+        final Fft fft;
+        final double[] re;
+        final double[] im;
+
+        Spectrum(Fft fft) {
+            this.fft = fft;
+            this.re = new double[fft.n * fft.n];
+            this.im = new double[fft.n * fft.n];
+        }
+    }
+
+    /**
+     * Per-search buffers: screen luma, its integral images and the FFT arrays. Reused across
+     * searches while the frame and tile sizes stay the same.
+     */
+    static final class Workspace {
+        private int width = -1;
+        private int height = -1;
+        private int[] luma = new int[0];
+        // (width+1) x (height+1) integral of luma; may wrap on huge frames, but window sums
+        // are differences and always fit, so the wrapped arithmetic still yields them exactly
+        private int[] sum = new int[0];
+        private long[] sq = new long[0];  // same for luma^2
+        double[] re = new double[0];
+        double[] im = new double[0];
+
+        void prepare(PixelFrame f, int size) {
+            if (f.width != width || f.height != height) {
+                width = f.width;
+                height = f.height;
+                luma = new int[width * height];
+                sum = new int[(width + 1) * (height + 1)];
+                sq = new long[(width + 1) * (height + 1)];
+            }
+            if (re.length != size * size) {
+                re = new double[size * size];
+                im = new double[size * size];
+            }
+            int w1 = width + 1;
+            for (int y = 0; y < height; y++) {
+                int p = f.offset + y * f.scanline;
+                int rowSum = 0;
+                long rowSq = 0;
+                for (int x = 0; x < width; x++) {
+                    int l = luma(f.data[p + x]);
+                    luma[y * width + x] = l;
+                    rowSum += l;
+                    rowSq += l * l;
+                    int i = (y + 1) * w1 + x + 1;
+                    sum[i] = sum[i - w1] + rowSum;
+                    sq[i] = sq[i - w1] + rowSq;
+                }
+            }
+        }
+
+        /** Copies the size x size tile at (x0, y0) into dst; returns the number of rows filled. */
+        int fill(double[] dst, int x0, int y0, int size) {
+            int cols = Math.min(size, width - x0);
+            int rows = Math.min(size, height - y0);
+            for (int r = 0; r < rows; r++) {
+                int src = (y0 + r) * width + x0;
+                int o = r * size;
+                for (int c = 0; c < cols; c++) dst[o + c] = luma[src + c];
+            }
+            return rows;
+        }
+
+        /** n * sum(s^2) - sum(s)^2 over the w x h window at (x, y); exact, so 0 means flat. */
+        long windowVariance(int x, int y, int w, int h, int n) {
+            int w1 = width + 1;
+            int a = y * w1 + x;
+            int b = a + w;
+            int c = a + h * w1;
+            int d = c + w;
+            long s = sum[d] - sum[b] - sum[c] + sum[a]; // int arithmetic on purpose, see sum
+            long q = sq[d] - sq[b] - sq[c] + sq[a];
+            return n * q - s * s;
+        }
+    }
+}
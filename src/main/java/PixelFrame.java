@@ -0,0 +1,76 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+/**
+ * Packed ARGB view over a BufferedImage. For TYPE_INT_RGB / TYPE_INT_ARGB images the
+ * backing DataBufferInt array is used directly; any other raster type is converted once
+ * with a single bulk getRGB call.
+ *
+ * Pixel (x,y) lives at data[offset + y * scanline + x]. OR-ing alphaMask into a raw value
+ * yields exactly what BufferedImage.getRGB(x, y) would have returned.
+ */
+public final class PixelFrame {
+    final int[] data;
+    final int width;
+    final int height;
+    final int offset;
+    final int scanline;
+    final int alphaMask;
+
+    PixelFrame(int[] data, int width, int height, int offset, int scanline, int alphaMask) {
+        this.data = data;
+        this.width = width;
+        this.height = height;
+        this.offset = offset;
+        this.scanline = scanline;
+        this.alphaMask = alphaMask;
+    }
+
+    public static PixelFrame of(BufferedImage img) {
+        int type = img.getType();
+        Raster raster = img.getRaster();
+        DataBuffer db = raster.getDataBuffer();
+        if ((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+                && db instanceof DataBufferInt && db.getNumBanks() == 1
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+            SinglePixelPackedSampleModel sm = (SinglePixelPackedSampleModel) raster.getSampleModel();
+            // account for sub-images, whose rasters are translated into a shared buffer
+            int off = db.getOffset() + sm.getOffset(
+                    -raster.getSampleModelTranslateX(), -raster.getSampleModelTranslateY());
+            int alphaMask = (type == BufferedImage.TYPE_INT_RGB) ? 0xFF000000 : 0;
+            return new PixelFrame(((DataBufferInt) db).getData(), img.getWidth(), img.getHeight(),
+                    off, sm.getScanlineStride(), alphaMask);
+        }
+        int w = img.getWidth();
+        int h = img.getHeight();
+        int[] argb = img.getRGB(0, 0, w, h, null, 0, w);
+        return new PixelFrame(argb, w, h, 0, w, 0);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /** Zero-copy view of the w x h area at (x, y), which must lie within this frame. */
+    PixelFrame slice(int x, int y, int w, int h) {
+        if (x < 0 || y < 0 || w < 0 || h < 0 || x + w > width || y + h > height) {
+            throw new IllegalArgumentException("Slice " + w + "x" + h + " at " + x + "," + y
+                    + " outside " + width + "x" + height + " frame");
+        }
+        return new PixelFrame(data, w, h, offset + y * scanline + x, scanline, alphaMask);
+    }
+
+    /**
+     * Same value as BufferedImage.getRGB(x, y). Convenience only; hot loops index data directly.
+     */
+    public int getRGB(int x, int y) {
+        return data[offset + y * scanline + x] | alphaMask;
+    }
+}
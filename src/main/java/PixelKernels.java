@@ -0,0 +1,29 @@
+/**
+ * Pixel-run kernels used by the matcher's tolerance check and by change detection.
+ *
+ * This is the Java 11 build, which always runs the scalar loops. The multi-release jar also
+ * carries a Java 17 build of this class (src/main/java17) that uses the incubating Vector API
+ * when the JVM was started with {@code --add-modules jdk.incubator.vector}; both builds give
+ * identical results.
+ */
+final class PixelKernels {
+    /** True when the Vector API kernels are in use. */
+    static final boolean VECTORIZED = false;
+
+    private PixelKernels() {
+    }
+
+    /**
+     * True when each of the n pixels a[ai..] is within RGB distance sqrt(tolerance2) of
+     * b[bi..]. With tolerance2 == 0 the values must be equal, alphaMask being OR-ed into b
+     * (see PixelFrame).
+     */
+    static boolean allClose(int[] a, int ai, int[] b, int bi, int n, int tolerance2, int alphaMask) {
+        return ScalarPixelKernels.allClose(a, ai, b, bi, n, tolerance2, alphaMask);
+    }
+
+    /** Number of the n pixel pairs a[ai..], b[bi..] whose squared RGB distance exceeds threshold2. */
+    static int countFar(int[] a, int ai, int[] b, int bi, int n, int threshold2) {
+        return ScalarPixelKernels.countFar(a, ai, b, bi, n, threshold2);
+    }
+}
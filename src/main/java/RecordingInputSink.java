@@ -0,0 +1,82 @@
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * InputSink that records clicks instead of moving the mouse. An optional listener lets a
+ * synthetic frame source react to clicks (e.g. make the clicked button disappear). Stepped
+ * input is recorded the same way: a release after a press is a click where the pointer is.
+ */
+public class RecordingInputSink implements SteppingInputSink {
+    private final Rectangle bounds;
+    private final List<Point> clicks = new ArrayList<>();
+    private final List<Long> clickNanos = new ArrayList<>();
+    private volatile Consumer<Point> listener;
+    private Point pointer = new Point(); // guarded by this
+    private boolean pressed;             // guarded by this
+
+    public RecordingInputSink(Rectangle bounds) {
+        this.bounds = new Rectangle(bounds);
+    }
+
+    public void setListener(Consumer<Point> listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void click(int x, int y) {
+        Point p = new Point(x, y);
+        synchronized (this) {
+            pointer = p;
+            clicks.add(p);
+            clickNanos.add(System.nanoTime());
+        }
+        Consumer<Point> l = listener;
+        if (l != null) l.accept(p);
+    }
+
+    @Override
+    public synchronized void move(int x, int y) {
+        pointer = new Point(x, y);
+    }
+
+    @Override
+    public synchronized void press() {
+        pressed = true;
+    }
+
+    /** Records a click at the pointer if the button was down, like a real button reacts. */
+    @Override
+    public void release() {
+        Point p;
+        synchronized (this) {
+            if (!pressed) return;
+            pressed = false;
+            p = pointer;
+            clicks.add(p);
+            clickNanos.add(System.nanoTime());
+        }
+        Consumer<Point> l = listener;
+        if (l != null) l.accept(p);
+    }
+
+    @Override
+    public Rectangle getBounds() {
+        return new Rectangle(bounds);
+    }
+
+    public synchronized List<Point> getClicks() {
+        return new ArrayList<>(clicks);
+    }
+
+    /** System.nanoTime() of each recorded click, in the same order as getClicks(). */
+    public synchronized List<Long> getClickNanos() {
+        return new ArrayList<>(clickNanos);
+    }
+
+    public synchronized void clear() {
+        clicks.clear();
+        clickNanos.clear();
+    }
+}
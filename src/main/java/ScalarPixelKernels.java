@@ -0,0 +1,37 @@
+/**
+ * Plain-Java pixel loops behind PixelKernels. The Java 17 build of PixelKernels falls back to
+ * these when the Vector API is not available, and the vector kernels must give exactly the
+ * same results.
+ */
+final class ScalarPixelKernels {
+    private ScalarPixelKernels() {
+    }
+
+    static boolean allClose(int[] a, int ai, int[] b, int bi, int n, int tolerance2, int alphaMask) {
+        if (tolerance2 == 0) {
+            for (int i = 0; i < n; i++) {
+                if (a[ai + i] != (b[bi + i] | alphaMask)) return false;
+            }
+            return true;
+        }
+        for (int i = 0; i < n; i++) {
+            if (distance2(a[ai + i], b[bi + i]) > tolerance2) return false;
+        }
+        return true;
+    }
+
+    static int countFar(int[] a, int ai, int[] b, int bi, int n, int threshold2) {
+        int far = 0;
+        for (int i = 0; i < n; i++) {
+            if (distance2(a[ai + i], b[bi + i]) > threshold2) far++;
+        }
+        return far;
+    }
+
+    static int distance2(int rgb1, int rgb2) {
+        int dr = ((rgb1 >> 16) & 0xFF) - ((rgb2 >> 16) & 0xFF);
+        int dg = ((rgb1 >> 8) & 0xFF) - ((rgb2 >> 8) & 0xFF);
+        int db = (rgb1 & 0xFF) - (rgb2 & 0xFF);
+        return dr * dr + dg * dg + db * db;
+    }
+}
@@ -0,0 +1,296 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.RasterFormatException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Runs many ScanJobs (template, region, click offset, interval) on one frame source, input
+ * sink and worker thread.
+ *
+ * Each tick collects the jobs that are due, groups their regions into as few captures as pay
+ * off (see planCaptures), captures each group once and hands every job a zero-copy slice of
+ * that frame. The cost of a tick therefore follows the screen area the due jobs cover, not
+ * the number of jobs. Jobs that fall due within DUE_SLACK_MS of a tick run in that tick, so
+ * jobs with similar intervals keep sharing captures instead of drifting apart. Due jobs with
+ * the same region are searched together, in one TemplateSet pass over that region.
+ *
+ * Unlike AutoClicker, a job clicks once per hit and does not verify or retry; it simply
+ * looks again after its interval.
+ */
+public class ScanEngine {
+    /** Jobs due this soon are run early, in the current tick. */
+    static final long DUE_SLACK_MS = 20;
+    /**
+     * Fixed cost of one capture call expressed in pixels: two regions are captured together
+     * when their bounding box is at most this much larger than the regions themselves.
+     */
+    static final long CAPTURE_OVERHEAD_PIXELS = 256 * 256;
+    private static final long MAX_IDLE_MS = 1000;
+    private static final long STOP_TIMEOUT_MS = 2000;
+
+    private final FrameSource frames;
+    private final InputSink input;
+    private final List<ScanJob> jobs = new CopyOnWriteArrayList<>();
+    // by the matchers of jobs searched together; dropped whenever the jobs change
+    private final Map<List<ImageMatcher>, TemplateSet> templateSets = new ConcurrentHashMap<>();
+    private volatile boolean running = false;
+    private volatile Thread workerThread;
+    private final Object wake = new Object(); // the worker waits on this between ticks
+    private boolean jobsChanged;              // guarded by wake
+
+    private volatile long ticks;
+    private volatile long captures;
+    private volatile long capturedPixels;
+    private volatile long sharedPasses;
+
+    public ScanEngine(FrameSource frames, InputSink input) {
+        this.frames = frames;
+        this.input = input;
+    }
+
+    /** Builds the engine on the real screen and mouse. */
+    public ScanEngine() {
+        this(new ScreenScanner(), new MouseController());
+    }
+
+    /** Adds a job; it is first due on the next tick. */
+    public ScanJob addJob(String name, ImageMatcher matcher, Rectangle region,
+                          int clickOffsetX, int clickOffsetY, long intervalMs) {
+        return addJob(new ScanJob(name, matcher, region, clickOffsetX, clickOffsetY, intervalMs));
+    }
+
+    public ScanJob addJob(ScanJob job) {
+        synchronized (job) {
+            job.nextDueNanos = Long.MIN_VALUE;
+        }
+        jobs.add(job);
+        templateSets.clear();
+        wakeUp();
+        return job;
+    }
+
+    public boolean removeJob(ScanJob job) {
+        templateSets.clear();
+        return jobs.remove(job);
+    }
+
+    public List<ScanJob> getJobs() {
+        return new ArrayList<>(jobs);
+    }
+
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        workerThread = new Thread(() -> {
+            while (running && workerThread == Thread.currentThread()) { // a restart replaces the thread
+                try {
+                    tick(System.nanoTime());
+                    long sleepMs = millisUntilNextDue(System.nanoTime());
+                    synchronized (wake) {
+                        // a job added meanwhile may be due earlier than the computed sleep
+                        if (running && !jobsChanged && sleepMs > 0) wake.wait(sleepMs);
+                        jobsChanged = false;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    stop();
+                } catch (HeadlessException | RasterFormatException ex) {
+                    System.err.println("Error while taking screenshot: " + ex.getMessage());
+                }
+            }
+        }, "ScanEngine-Worker");
+        workerThread.setDaemon(true);
+        workerThread.start();
+    }
+
+    /**
+     * Stops the worker and waits (up to STOP_TIMEOUT_MS) for it to finish, so no job clicks
+     * once this returns. A click in progress is interrupted; the rest of that tick is skipped.
+     */
+    public void stop() {
+        Thread worker;
+        synchronized (this) {
+            running = false;
+            worker = workerThread;
+            workerThread = null;
+        }
+        wakeUp();
+        if (worker == null || worker == Thread.currentThread()) return;
+        worker.interrupt();
+        try {
+            worker.join(STOP_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void wakeUp() {
+        synchronized (wake) {
+            jobsChanged = true;
+            wake.notifyAll();
+        }
+    }
+
+    /**
+     * Runs every job due at {@code nowNanos} (give or take DUE_SLACK_MS) against shared
+     * captures. start() calls this in a loop; tests may call it directly while the engine is
+     * not running. Returns the number of clicks.
+     */
+    public int tick(long nowNanos) {
+        long horizon = nowNanos + DUE_SLACK_MS * 1_000_000L;
+        Rectangle screen = frames.getBounds();
+        List<ScanJob> due = new ArrayList<>();
+        List<Rectangle> areas = new ArrayList<>();
+        for (ScanJob job : jobs) {
+            synchronized (job) {
+                if (job.nextDueNanos > horizon) continue;
+                job.nextDueNanos = nowNanos + job.getIntervalNanos();
+            }
+            Rectangle r = job.getRegion();
+            r = (r == null) ? new Rectangle(screen) : r.intersection(screen);
+            if (r.width < job.getMatcher().getTemplateWidth() || r.height < job.getMatcher().getTemplateHeight()) {
+                job.recordScan(null); // region off screen or smaller than the template
+                continue;
+            }
+            due.add(job);
+            areas.add(r);
+        }
+        ticks++;
+        if (due.isEmpty()) return 0;
+
+        int clicks = 0;
+        boolean[] scanned = new boolean[due.size()]; // captures may overlap, scan each job once
+        List<Rectangle> plan = planCaptures(areas);
+        for (Rectangle capture : plan) {
+            BufferedImage shot = frames.capture(capture);
+            captures++;
+            capturedPixels += (long) capture.width * capture.height;
+            // a source covering less than it reported gives a smaller image; skip rather than misplace
+            PixelFrame frame = (shot == null || shot.getWidth() != capture.width || shot.getHeight() != capture.height)
+                    ? null : PixelFrame.of(shot);
+            Map<Rectangle, List<ScanJob>> byArea = new LinkedHashMap<>();
+            for (int i = 0; i < due.size(); i++) {
+                if (scanned[i] || !capture.contains(areas.get(i))) continue;
+                scanned[i] = true;
+                byArea.computeIfAbsent(areas.get(i), k -> new ArrayList<>()).add(due.get(i));
+            }
+            for (Map.Entry<Rectangle, List<ScanJob>> e : byArea.entrySet()) {
+                Rectangle area = e.getKey();
+                List<ScanJob> group = e.getValue();
+                Rectangle[] hits = new Rectangle[group.size()];
+                if (frame != null) {
+                    PixelFrame view = frame.slice(area.x - capture.x, area.y - capture.y, area.width, area.height);
+                    if (group.size() == 1) {
+                        hits[0] = group.get(0).getMatcher().findMatch(view);
+                    } else {
+                        MatchResult[] found = templateSet(group).matchEach(view);
+                        sharedPasses++;
+                        for (int k = 0; k < hits.length; k++) hits[k] = (found[k] == null) ? null : found[k].getBounds();
+                    }
+                }
+                for (int k = 0; k < hits.length; k++) {
+                    if (hits[k] != null) hits[k].translate(area.x, area.y);
+                    if (hits[k] != null && click(group.get(k), hits[k])) clicks++;
+                    group.get(k).recordScan(hits[k]);
+                }
+            }
+        }
+        return clicks;
+    }
+
+    /** Clicks the job's offset from the center of {@code hit} (screen coordinates) if it is on screen. */
+    private boolean click(ScanJob job, Rectangle hit) {
+        if (Thread.currentThread().isInterrupted()) return false; // stop() interrupted the worker
+        int x = hit.x + hit.width / 2 + job.getClickOffsetX();
+        int y = hit.y + hit.height / 2 + job.getClickOffsetY();
+        if (!input.getBounds().contains(x, y)) {
+            System.out.println("Job " + job.getName() + ": click coordinates out of bounds: (" + x + "," + y + ")");
+            return false;
+        }
+        System.out.println("Job " + job.getName() + ": match at " + hit + " -> click at (" + x + "," + y + ")");
+        input.click(x, y);
+        return true;
+    }
+
+    private TemplateSet templateSet(List<ScanJob> group) {
+        List<ImageMatcher> matchers = new ArrayList<>();
+        for (ScanJob job : group) matchers.add(job.getMatcher());
+        return templateSets.computeIfAbsent(matchers, TemplateSet::new);
+    }
+
+    /**
+     * Groups regions into capture rectangles, each containing whole regions. Starting from one
+     * capture per region, the pair whose bounding box wastes the fewest pixels is merged while
+     * that waste stays within CAPTURE_OVERHEAD_PIXELS, so overlapping and nearby regions share
+     * one capture and far-apart ones (opposite screen corners, say) do not pull in everything
+     * between them.
+     */
+    static List<Rectangle> planCaptures(List<Rectangle> regions) {
+        List<Rectangle> plan = new ArrayList<>();
+        for (Rectangle r : regions) plan.add(new Rectangle(r));
+        while (plan.size() > 1) {
+            int bestA = -1;
+            int bestB = -1;
+            long bestWaste = Long.MAX_VALUE;
+            for (int a = 0; a < plan.size(); a++) {
+                for (int b = a + 1; b < plan.size(); b++) {
+                    Rectangle ra = plan.get(a);
+                    Rectangle rb = plan.get(b);
+                    long waste = area(ra.union(rb)) - area(ra) - area(rb);
+                    if (waste < bestWaste) {
+                        bestWaste = waste;
+                        bestA = a;
+                        bestB = b;
+                    }
+                }
+            }
+            if (bestWaste > CAPTURE_OVERHEAD_PIXELS) break;
+            plan.set(bestA, plan.get(bestA).union(plan.remove(bestB)));
+        }
+        return plan;
+    }
+
+    private static long area(Rectangle r) {
+        return (long) r.width * r.height;
+    }
+
+    private long millisUntilNextDue(long nowNanos) {
+        long next = Long.MAX_VALUE;
+        for (ScanJob job : jobs) {
+            synchronized (job) {
+                next = Math.min(next, job.nextDueNanos);
+            }
+        }
+        if (next == Long.MAX_VALUE) return MAX_IDLE_MS;
+        return Math.max(0, Math.min(MAX_IDLE_MS, (next - nowNanos) / 1_000_000L));
+    }
+
+    /** Number of tick() calls so far. */
+    public long getTicks() {
+        return ticks;
+    }
+
+    /** Number of screen captures taken so far, over all ticks. */
+    public long getCaptures() {
+        return captures;
+    }
+
+    /** Total area of those captures, in pixels. */
+    public long getCapturedPixels() {
+        return capturedPixels;
+    }
+
+    /** Number of single passes that searched the templates of several jobs with the same region. */
+    public long getSharedPasses() {
+        return sharedPasses;
+    }
+}
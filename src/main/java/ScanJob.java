@@ -0,0 +1,87 @@
+import java.awt.*;
+
+/**
+ * One rule run by a ScanEngine: look for {@code matcher}'s template inside {@code region}
+ * every {@code intervalMs} and click its center plus the click offset when found.
+ * Counters are updated by the engine's worker and may be read from any thread.
+ */
+public final class ScanJob {
+    private final String name;
+    private final ImageMatcher matcher;
+    private final Rectangle region; // screen coordinates, null = whole frame source
+    private final int clickOffsetX;
+    private final int clickOffsetY;
+    private final long intervalNanos;
+
+    long nextDueNanos; // guarded by the engine
+    private volatile long scans;
+    private volatile long hits;
+    private volatile Rectangle lastMatch;
+
+    public ScanJob(String name, ImageMatcher matcher, Rectangle region,
+                   int clickOffsetX, int clickOffsetY, long intervalMs) {
+        if (matcher == null) throw new IllegalArgumentException("ScanJob " + name + " has no matcher");
+        this.name = name;
+        this.matcher = matcher;
+        this.region = (region == null) ? null : new Rectangle(region);
+        this.clickOffsetX = clickOffsetX;
+        this.clickOffsetY = clickOffsetY;
+        this.intervalNanos = Math.max(1, intervalMs) * 1_000_000L;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public ImageMatcher getMatcher() {
+        return matcher;
+    }
+
+    /** Searched area in screen coordinates, or null for the whole frame source. */
+    public Rectangle getRegion() {
+        return (region == null) ? null : new Rectangle(region);
+    }
+
+    public int getClickOffsetX() {
+        return clickOffsetX;
+    }
+
+    public int getClickOffsetY() {
+        return clickOffsetY;
+    }
+
+    public long getIntervalMs() {
+        return intervalNanos / 1_000_000L;
+    }
+
+    long getIntervalNanos() {
+        return intervalNanos;
+    }
+
+    /** Number of times the job was matched against a frame. */
+    public long getScans() {
+        return scans;
+    }
+
+    /** Number of scans that found (and clicked) the template. */
+    public long getHits() {
+        return hits;
+    }
+
+    /** Screen bounds of the last match, or null if the last scan found nothing. */
+    public Rectangle getLastMatch() {
+        Rectangle m = lastMatch;
+        return (m == null) ? null : new Rectangle(m);
+    }
+
+    void recordScan(Rectangle match) {
+        scans++;
+        if (match != null) hits++;
+        lastMatch = match;
+    }
+
+    @Override
+    public String toString() {
+        return "ScanJob[" + name + ", region=" + region + ", every " + getIntervalMs() + " ms]";
+    }
+}
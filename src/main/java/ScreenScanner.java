@@ -1,8 +1,9 @@
 import java.awt.*;
 import java.awt.image.BufferedImage;
 
-public class ScreenScanner {
+public class ScreenScanner implements FrameSource {
     private final Robot robot;
+    private final GraphicsDevice device; // null = primary screen
 
     public ScreenScanner() {
         try {
@@ -10,10 +11,24 @@ public class ScreenScanner {
         } catch (AWTException e) {
             throw new RuntimeException("Failed to initialize screen scanner", e);
         }
+        this.device = null;
     }
 
     /**
-     * Capture the entire primary screen and return the BufferedImage.
+     * Scanner for one monitor, with its own Robot. Its bounds are the device's full bounds in
+     * virtual-desktop coordinates; see MultiScreenSource.
+     */
+    public ScreenScanner(GraphicsDevice device) {
+        try {
+            this.robot = new Robot(device);
+        } catch (AWTException e) {
+            throw new RuntimeException("Failed to initialize screen scanner for " + device.getIDstring(), e);
+        }
+        this.device = device;
+    }
+
+    /**
+     * Capture the entire screen (the primary one, or this scanner's device) and return the BufferedImage.
      * Caller can pass the screenshot to ImageMatcher.findMatch(...) to avoid
      * multiple captures for the same check/verification.
      */
@@ -37,6 +52,21 @@ public class ScreenScanner {
         return robot.createScreenCapture(r);
     }
 
+    @Override
+    public BufferedImage capture() {
+        return takeScreenshot();
+    }
+
+    @Override
+    public BufferedImage capture(Rectangle region) {
+        return takeScreenshot(region);
+    }
+
+    @Override
+    public Rectangle getBounds() {
+        return getScreenBounds();
+    }
+
     /**
      * Convenience: capture and search immediately.
      */
@@ -46,6 +76,7 @@ public class ScreenScanner {
     }
 
     private Rectangle getScreenBounds() {
+        if (device != null) return device.getDefaultConfiguration().getBounds();
         // prefer the maximum window bounds to avoid taskbar overlap surprises,
         // but fall back to full screen size.
         Rectangle bounds = GraphicsEnvironment.getLocalGraphicsEnvironment()
@@ -0,0 +1,16 @@
+/**
+ * An InputSink that can also move the pointer and press and release the button on their
+ * own, so InputDispatcher can put the steps of a click on its own timeline instead of
+ * calling click(), and scripts can drag. MouseController and RecordingInputSink are such
+ * sinks.
+ */
+public interface SteppingInputSink extends InputSink {
+    /** Move the pointer to (x,y) without clicking. */
+    void move(int x, int y);
+
+    /** Press the left button where the pointer is. */
+    void press();
+
+    /** Release the left button. */
+    void release();
+}
@@ -0,0 +1,101 @@
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic frames for headless runs: a seeded desktop-like background (flat panels and
+ * a little noise) with template images drawn at known positions. Targets can be removed,
+ * e.g. from a RecordingInputSink listener, to simulate a button that goes away when clicked.
+ */
+public class SyntheticFrameSource implements FrameSource {
+    private final int width;
+    private final int height;
+    private final BufferedImage background;
+    private final List<Target> targets = new ArrayList<>();
+    private long frames;
+
+    private static final class Target {
+        final BufferedImage image;
+        final Rectangle bounds;
+
+        Target(BufferedImage image, int x, int y) {
+            this.image = image;
+            this.bounds = new Rectangle(x, y, image.getWidth(), image.getHeight());
+        }
+    }
+
+    public SyntheticFrameSource(int width, int height, long seed) {
+        this.width = width;
+        this.height = height;
+        this.background = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random rnd = new Random(seed);
+        Graphics2D g = background.createGraphics();
+        g.setColor(new Color(0xF0F0F0));
+        g.fillRect(0, 0, width, height);
+        int panels = Math.max(1, width * height / 20000);
+        for (int i = 0; i < panels; i++) {
+            g.setColor(new Color(rnd.nextInt(0xFFFFFF)));
+            g.fillRect(rnd.nextInt(width), rnd.nextInt(height), 10 + rnd.nextInt(200), 5 + rnd.nextInt(60));
+        }
+        g.dispose();
+        for (int i = 0; i < width * height / 50; i++) {
+            int x = rnd.nextInt(width);
+            int y = rnd.nextInt(height);
+            background.setRGB(x, y, background.getRGB(x, y) ^ (rnd.nextInt(8) * 0x010101));
+        }
+    }
+
+    /** Draw {@code image} with its top-left corner at (x,y) on every following frame. */
+    public synchronized void addTarget(BufferedImage image, int x, int y) {
+        targets.add(new Target(image, x, y));
+    }
+
+    /** Remove every target whose bounds contain the point. Returns true if one was removed. */
+    public synchronized boolean removeTargetAt(Point p) {
+        return targets.removeIf(t -> t.bounds.contains(p));
+    }
+
+    public synchronized void clearTargets() {
+        targets.clear();
+    }
+
+    public synchronized long getFrameCount() {
+        return frames;
+    }
+
+    @Override
+    public BufferedImage capture() {
+        return captureInto(null, null);
+    }
+
+    /** Redraws into {@code reuse} when it is a full-size TYPE_INT_RGB frame. */
+    @Override
+    public synchronized BufferedImage captureInto(Rectangle region, BufferedImage reuse) {
+        if (region != null) return DirectoryFrameSource.crop(captureInto(null, reuse), region);
+        frames++;
+        BufferedImage frame = reuse;
+        if (frame == null || frame.getWidth() != width || frame.getHeight() != height
+                || frame.getType() != BufferedImage.TYPE_INT_RGB) {
+            frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+        Graphics2D g = frame.createGraphics();
+        g.drawImage(background, 0, 0, null);
+        for (Target t : targets) {
+            g.drawImage(t.image, t.bounds.x, t.bounds.y, null);
+        }
+        g.dispose();
+        return frame;
+    }
+
+    @Override
+    public BufferedImage capture(Rectangle region) {
+        return DirectoryFrameSource.crop(capture(), region);
+    }
+
+    @Override
+    public Rectangle getBounds() {
+        return new Rectangle(0, 0, width, height);
+    }
+}
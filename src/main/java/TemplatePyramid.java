@@ -0,0 +1,188 @@
+import java.util.Arrays;
+
+/**
+ * Coarse-level rejection tables for one template, matching ImagePyramid's levels.
+ *
+ * A candidate offset (x,y) is generally not aligned to the screen's block grid, so for each
+ * level and each phase ((-x) mod f, (-y) mod f) we store the template blocks that do line
+ * up with screen blocks at that phase. Only blocks without transparent pixels are kept.
+ *
+ * If every pixel of a block is within {@code tolerance} of the screen, the block sums differ
+ * by at most {@code f*f*tolerance} (triangle inequality), so a block that violates that bound
+ * proves the candidate cannot match. The test never rejects a true match.
+ */
+final class TemplatePyramid {
+    // per level and phase: block positions {i0, j0, i1, j1, ...} and packed channel sums
+    private final int[][][] positions = new int[ImagePyramid.LEVELS][][];
+    private final long[][][] sums = new long[ImagePyramid.LEVELS][][];
+    private final long[] limit2 = new long[ImagePyramid.LEVELS];
+    private final boolean exact;
+
+    TemplatePyramid(int[] argb, int tw, int th, int tolerance) {
+        this.exact = tolerance == 0;
+        for (int l = 0; l < ImagePyramid.LEVELS; l++) {
+            int f = ImagePyramid.FACTORS[l];
+            long lim = (long) tolerance * f * f;
+            limit2[l] = lim * lim;
+            positions[l] = new int[f * f][];
+            sums[l] = new long[f * f][];
+            for (int py = 0; py < f; py++) {
+                for (int px = 0; px < f; px++) {
+                    buildPhase(argb, tw, th, f, l, px, py);
+                }
+            }
+        }
+    }
+
+    private void buildPhase(int[] argb, int tw, int th, int f, int level, int px, int py) {
+        int bw = Math.max(0, (tw - px) / f);
+        int bh = Math.max(0, (th - py) / f);
+        long[][] found = new long[bw * bh][];
+        int n = 0;
+        for (int i = 0; i < bw; i++) {
+            for (int j = 0; j < bh; j++) {
+                int sr = 0, sg = 0, sb = 0;
+                long sq = 0;
+                boolean opaque = true;
+                for (int y = py + j * f; y < py + j * f + f && opaque; y++) {
+                    for (int x = px + i * f; x < px + i * f + f; x++) {
+                        int p = argb[y * tw + x];
+                        if (((p >> 24) & 0xFF) == 0) {
+                            opaque = false;
+                            break;
+                        }
+                        int r = (p >> 16) & 0xFF, g = (p >> 8) & 0xFF, b = p & 0xFF;
+                        sr += r;
+                        sg += g;
+                        sb += b;
+                        sq += r * r + g * g + b * b;
+                    }
+                }
+                if (!opaque) continue;
+                // textured blocks (edges, glyphs) are rarely matched by flat backgrounds, so the
+                // blocks with the highest internal variance are tested first
+                long n2 = (long) f * f;
+                long variance = sq * n2 - ((long) sr * sr + (long) sg * sg + (long) sb * sb);
+                found[n++] = new long[]{-variance, i, j, ImagePyramid.pack(sr, sg, sb)};
+            }
+        }
+        found = Arrays.copyOf(found, n);
+        Arrays.sort(found, (a, b) -> Long.compare(a[0], b[0]));
+        int[] pos = new int[n * 2];
+        long[] s = new long[n];
+        for (int k = 0; k < n; k++) {
+            pos[2 * k] = (int) found[k][1];
+            pos[2 * k + 1] = (int) found[k][2];
+            s[k] = found[k][3];
+        }
+        positions[level][py * f + px] = pos;
+        sums[level][py * f + px] = s;
+    }
+
+    /**
+     * Column scan for the PYRAMID search mode: the lowest y in {start, start+step, ...} below
+     * limitY whose candidate survives the first (most distinctive) coarsest-level block, or -1.
+     * step must be a multiple of the coarsest factor so the phase stays fixed along the scan.
+     */
+    int nextCoarseCandidate(ImagePyramid pyr, int x, int start, int step, int limitY) {
+        int f = ImagePyramid.FACTORS[0];
+        int shift = ImagePyramid.SHIFTS[0];
+        int px = (-x) & (f - 1);
+        int py = (-start) & (f - 1);
+        long[] ts = sums[0][py * f + px];
+        if (ts.length == 0) return start < limitY ? start : -1;
+        int[] pos = positions[0][py * f + px];
+        int rows = pyr.rows[0];
+        long[] S = pyr.coarseByColumn;
+        long t = ts[0];
+        int idx = (((x + px) >> shift) + pos[0]) * rows + ((start + py) >> shift) + pos[1];
+        int dIdx = step >> shift;
+        if (exact) {
+            for (int y = start; y < limitY; y += step, idx += dIdx) {
+                if (S[idx] == t) return y;
+            }
+            return -1;
+        }
+        long lim2 = limit2[0];
+        int tr = ImagePyramid.red(t), tg = ImagePyramid.green(t), tb = ImagePyramid.blue(t);
+        for (int y = start; y < limitY; y += step, idx += dIdx) {
+            long s = S[idx];
+            long dr = tr - ImagePyramid.red(s);
+            long dg = tg - ImagePyramid.green(s);
+            long db = tb - ImagePyramid.blue(s);
+            if (dr * dr + dg * dg + db * db <= lim2) return y;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns false only if some pyramid level proves the template cannot match at (x,y).
+     * Levels are checked coarsest first.
+     */
+    boolean mayMatch(ImagePyramid pyr, int x, int y) {
+        for (int l = 0; l < ImagePyramid.LEVELS; l++) {
+            int f = ImagePyramid.FACTORS[l];
+            int shift = ImagePyramid.SHIFTS[l];
+            int px = (-x) & (f - 1);
+            int py = (-y) & (f - 1);
+            int phase = py * f + px;
+            long[] ts = sums[l][phase];
+            if (ts.length == 0) continue;
+            int[] pos = positions[l][phase];
+            int cols = pyr.cols[l];
+            int base = ((y + py) >> shift) * cols + ((x + px) >> shift);
+            long[] S = pyr.sums[l];
+            if (exact) {
+                for (int k = 0; k < ts.length; k++) {
+                    if (ts[k] != S[base + pos[2 * k + 1] * cols + pos[2 * k]]) return false;
+                }
+                continue;
+            }
+            long lim2 = limit2[l];
+            for (int k = 0; k < ts.length; k++) {
+                long t = ts[k];
+                long s = S[base + pos[2 * k + 1] * cols + pos[2 * k]];
+                long dr = ImagePyramid.red(t) - ImagePyramid.red(s);
+                long dg = ImagePyramid.green(t) - ImagePyramid.green(s);
+                long db = ImagePyramid.blue(t) - ImagePyramid.blue(s);
+                if (dr * dr + dg * dg + db * db > lim2) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Lower bound on the SAD (or SSD when {@code squared}) between the template and the screen
+     * at (x,y), from block sums alone: per block and channel, |sum of differences| bounds the
+     * SAD, and (sum of differences)^2 / f^2 bounds the SSD. Blocks of one level are disjoint,
+     * so their bounds add up. Returns as soon as the bound exceeds {@code limit}.
+     */
+    long errorLowerBound(ImagePyramid pyr, int x, int y, boolean squared, long limit) {
+        long best = 0;
+        for (int l = 0; l < ImagePyramid.LEVELS; l++) {
+            int f = ImagePyramid.FACTORS[l];
+            int shift = ImagePyramid.SHIFTS[l];
+            int px = (-x) & (f - 1);
+            int py = (-y) & (f - 1);
+            int phase = py * f + px;
+            long[] ts = sums[l][phase];
+            int[] pos = positions[l][phase];
+            int cols = pyr.cols[l];
+            int base = ((y + py) >> shift) * cols + ((x + px) >> shift);
+            long[] S = pyr.sums[l];
+            long n2 = (long) f * f;
+            long bound = 0;
+            for (int k = 0; k < ts.length; k++) {
+                long t = ts[k];
+                long s = S[base + pos[2 * k + 1] * cols + pos[2 * k]];
+                long dr = ImagePyramid.red(t) - ImagePyramid.red(s);
+                long dg = ImagePyramid.green(t) - ImagePyramid.green(s);
+                long db = ImagePyramid.blue(t) - ImagePyramid.blue(s);
+                bound += squared ? (dr * dr + dg * dg + db * db) / n2 : Math.abs(dr) + Math.abs(dg) + Math.abs(db);
+                if (bound > limit) return bound;
+            }
+            best = Math.max(best, bound);
+        }
+        return best;
+    }
+}
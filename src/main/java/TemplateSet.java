@@ -0,0 +1,180 @@
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Searches many templates in a single pass over one frame.
+ *
+ * Every template gets an anchor: its opaque pixel whose color is rarest within the template.
+ * Anchors are indexed by quantized color, so the pass reads each screen pixel once, looks up
+ * the templates whose anchor could be within tolerance of it, and only runs the full check of
+ * those templates at the implied offset. The per-pixel cost is one table probe regardless of
+ * how many templates the set holds.
+ *
+ * Screen pixels are visited in column-major order, so each template's hit is the same
+ * "first match" that its own ImageMatcher.findMatch would return in the color tolerance
+ * modes (FULL, PYRAMID and EXACT_HASH, which only differ in how fast they get there).
+ * A template whose matcher uses NCC on the frame is searched on its own with findBestMatch
+ * instead, since correlation is not a per-pixel test an anchor could stand in for.
+ */
+public class TemplateSet {
+    private final List<ImageMatcher> matchers;
+    private final int shift; // color cell = 2^shift per channel, at least 2*maxTolerance+1 wide
+
+    // anchor of template i: offset inside the template and its packed RGB
+    private final int[] anchorDx;
+    private final int[] anchorDy;
+    private final int[] anchorRgb;
+
+    // open-addressing table: quantized color -> templates whose anchor may fall into that cell
+    private final int[] tableKeys;
+    private final int[][] tableTemplates;
+    private final int tableMask;
+
+    public TemplateSet(List<ImageMatcher> matchers) {
+        this.matchers = new ArrayList<>(matchers);
+        int n = this.matchers.size();
+        int maxTol = 0;
+        for (ImageMatcher m : this.matchers) maxTol = Math.max(maxTol, m.getTolerance());
+        int s = 0;
+        while ((1 << s) < 2 * maxTol + 1 && s < 8) s++;
+        this.shift = s;
+
+        anchorDx = new int[n];
+        anchorDy = new int[n];
+        anchorRgb = new int[n];
+        Map<Integer, List<Integer>> cells = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            ImageMatcher m = this.matchers.get(i);
+            pickAnchor(i, m);
+            if (anchorDx[i] < 0) continue; // fully transparent template, never matches
+            int tol = m.getTolerance();
+            int r = (anchorRgb[i] >> 16) & 0xFF, g = (anchorRgb[i] >> 8) & 0xFF, b = anchorRgb[i] & 0xFF;
+            // every cell that intersects the tolerance cube around the anchor color
+            for (int cr = cell(r - tol); cr <= cell(r + tol); cr++) {
+                for (int cg = cell(g - tol); cg <= cell(g + tol); cg++) {
+                    for (int cb = cell(b - tol); cb <= cell(b + tol); cb++) {
+                        cells.computeIfAbsent((cr << 16) | (cg << 8) | cb, k -> new ArrayList<>()).add(i);
+                    }
+                }
+            }
+        }
+
+        int cap = Integer.highestOneBit(Math.max(4, cells.size() * 2 + 1)) << 1;
+        tableKeys = new int[cap];
+        Arrays.fill(tableKeys, -1);
+        tableTemplates = new int[cap][];
+        tableMask = cap - 1;
+        for (Map.Entry<Integer, List<Integer>> e : cells.entrySet()) {
+            int slot = slot(e.getKey());
+            while (tableKeys[slot] != -1) slot = (slot + 1) & tableMask;
+            tableKeys[slot] = e.getKey();
+            tableTemplates[slot] = e.getValue().stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    private int cell(int channel) {
+        return Math.max(0, Math.min(255, channel)) >> shift;
+    }
+
+    private int slot(int key) {
+        int h = key * 0x9E3779B1;
+        return (h ^ (h >>> 16)) & tableMask;
+    }
+
+    private void pickAnchor(int i, ImageMatcher m) {
+        int[] argb = m.templatePixels();
+        int tw = m.getTemplateWidth();
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (int p : argb) {
+            if (((p >> 24) & 0xFF) != 0) counts.merge(p, 1, Integer::sum);
+        }
+        anchorDx[i] = -1;
+        int best = Integer.MAX_VALUE;
+        for (int x = 0; x < tw; x++) {
+            for (int y = 0; y < m.getTemplateHeight(); y++) {
+                int p = argb[y * tw + x];
+                if (((p >> 24) & 0xFF) == 0) continue;
+                int c = counts.get(p);
+                if (c < best) {
+                    best = c;
+                    anchorDx[i] = x;
+                    anchorDy[i] = y;
+                    anchorRgb[i] = p;
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return matchers.size();
+    }
+
+    public List<ImageMatcher> getMatchers() {
+        return matchers;
+    }
+
+    /**
+     * Returns one entry per template, in the order given to the constructor: what that
+     * template's own matcher would find (its first match in scan order, or in NCC mode its
+     * best one) with its score, or null when it is not on screen.
+     */
+    public MatchResult[] matchEach(BufferedImage screenshot) {
+        if (screenshot == null) return new MatchResult[matchers.size()];
+        return matchEach(PixelFrame.of(screenshot));
+    }
+
+    public MatchResult[] matchEach(PixelFrame screen) {
+        int n = matchers.size();
+        MatchResult[] hits = new MatchResult[n];
+        boolean[] done = new boolean[n]; // found, or not part of the shared pass
+        int remaining = 0;
+        for (int i = 0; i < n; i++) {
+            ImageMatcher m = matchers.get(i);
+            if (m.usesNcc(screen)) {
+                hits[i] = m.findBestMatch(screen);
+                done[i] = true;
+            } else if (anchorDx[i] < 0 || screen.width < m.getTemplateWidth() || screen.height < m.getTemplateHeight()) {
+                done[i] = true;
+            } else {
+                remaining++;
+            }
+        }
+        if (remaining == 0) return hits;
+
+        final int[] data = screen.data;
+        final int shift = this.shift;
+        for (int x = 0; x < screen.width; x++) {
+            int p = screen.offset + x;
+            for (int y = 0; y < screen.height; y++, p += screen.scanline) {
+                int rgb = data[p];
+                int key = (((rgb >> 16) & 0xFF) >> shift << 16) | ((((rgb >> 8) & 0xFF) >> shift) << 8)
+                        | ((rgb & 0xFF) >> shift);
+                int slot = slot(key);
+                int k;
+                while ((k = tableKeys[slot]) != key) {
+                    if (k == -1) break;
+                    slot = (slot + 1) & tableMask;
+                }
+                if (k == -1) continue;
+
+                for (int t : tableTemplates[slot]) {
+                    if (done[t]) continue;
+                    ImageMatcher m = matchers.get(t);
+                    int cx = x - anchorDx[t];
+                    int cy = y - anchorDy[t];
+                    int stride = m.getStride();
+                    if (cx < 0 || cy < 0 || cx % stride != 0 || cy % stride != 0) continue;
+                    if (!m.matchesAt(screen, cx, cy)) continue;
+                    hits[t] = m.scoreAt(screen, cx, cy);
+                    done[t] = true;
+                    if (--remaining == 0) return hits;
+                }
+            }
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,26 @@
+/**
+ * Java 17 build of PixelKernels, packaged under META-INF/versions/17 of the multi-release
+ * jar. Dispatches to VectorPixelKernels when the jdk.incubator.vector module is present (the
+ * JVM needs {@code --add-modules jdk.incubator.vector}) and {@code -Dautoclicker.vector=false}
+ * is not set; otherwise to the same scalar loops as the Java 11 build.
+ */
+final class PixelKernels {
+    /** True when the Vector API kernels are in use. */
+    static final boolean VECTORIZED = !"false".equals(System.getProperty("autoclicker.vector"))
+            && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    private PixelKernels() {
+    }
+
+    static boolean allClose(int[] a, int ai, int[] b, int bi, int n, int tolerance2, int alphaMask) {
+        return VECTORIZED
+                ? VectorPixelKernels.allClose(a, ai, b, bi, n, tolerance2, alphaMask)
+                : ScalarPixelKernels.allClose(a, ai, b, bi, n, tolerance2, alphaMask);
+    }
+
+    static int countFar(int[] a, int ai, int[] b, int bi, int n, int threshold2) {
+        return VECTORIZED
+                ? VectorPixelKernels.countFar(a, ai, b, bi, n, threshold2)
+                : ScalarPixelKernels.countFar(a, ai, b, bi, n, threshold2);
+    }
+}
@@ -0,0 +1,75 @@
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API versions of the PixelKernels loops: one lane per pixel, channels unpacked with
+ * lane-wise shifts and masks, squared distance in 32-bit lanes (at most 3 * 255^2, so no
+ * overflow). Integer-only, hence bit-identical to ScalarPixelKernels. Self-contained apart
+ * from the vector module, including the scalar tails, so tests can load it on its own.
+ */
+final class VectorPixelKernels {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    private VectorPixelKernels() {
+    }
+
+    static boolean allClose(int[] a, int ai, int[] b, int bi, int n, int tolerance2, int alphaMask) {
+        int i = 0;
+        int bound = SPECIES.loopBound(n);
+        if (tolerance2 == 0) {
+            for (; i < bound; i += SPECIES.length()) {
+                IntVector va = IntVector.fromArray(SPECIES, a, ai + i);
+                IntVector vb = IntVector.fromArray(SPECIES, b, bi + i).or(alphaMask);
+                if (va.compare(VectorOperators.NE, vb).anyTrue()) return false;
+            }
+            for (; i < n; i++) {
+                if (a[ai + i] != (b[bi + i] | alphaMask)) return false;
+            }
+            return true;
+        }
+        for (; i < bound; i += SPECIES.length()) {
+            if (far(IntVector.fromArray(SPECIES, a, ai + i), IntVector.fromArray(SPECIES, b, bi + i), tolerance2)
+                    .anyTrue()) {
+                return false;
+            }
+        }
+        for (; i < n; i++) {
+            if (distance2(a[ai + i], b[bi + i]) > tolerance2) return false;
+        }
+        return true;
+    }
+
+    static int countFar(int[] a, int ai, int[] b, int bi, int n, int threshold2) {
+        int i = 0;
+        int count = 0;
+        int bound = SPECIES.loopBound(n);
+        for (; i < bound; i += SPECIES.length()) {
+            count += far(IntVector.fromArray(SPECIES, a, ai + i), IntVector.fromArray(SPECIES, b, bi + i), threshold2)
+                    .trueCount();
+        }
+        for (; i < n; i++) {
+            if (distance2(a[ai + i], b[bi + i]) > threshold2) count++;
+        }
+        return count;
+    }
+
+    /** Lanes whose squared RGB distance exceeds limit2. */
+    private static VectorMask<Integer> far(IntVector va, IntVector vb, int limit2) {
+        IntVector dr = va.lanewise(VectorOperators.LSHR, 16).and(0xFF)
+                .sub(vb.lanewise(VectorOperators.LSHR, 16).and(0xFF));
+        IntVector dg = va.lanewise(VectorOperators.LSHR, 8).and(0xFF)
+                .sub(vb.lanewise(VectorOperators.LSHR, 8).and(0xFF));
+        IntVector db = va.and(0xFF).sub(vb.and(0xFF));
+        IntVector d2 = dr.mul(dr).add(dg.mul(dg)).add(db.mul(db));
+        return d2.compare(VectorOperators.GT, limit2);
+    }
+
+    private static int distance2(int rgb1, int rgb2) {
+        int dr = ((rgb1 >> 16) & 0xFF) - ((rgb2 >> 16) & 0xFF);
+        int dg = ((rgb1 >> 8) & 0xFF) - ((rgb2 >> 8) & 0xFF);
+        int db = (rgb1 & 0xFF) - (rgb2 & 0xFF);
+        return dr * dr + dg * dg + db * db;
+    }
+}
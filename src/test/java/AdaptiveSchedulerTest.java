@@ -0,0 +1,54 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdaptiveSchedulerTest {
+    private static final long MS = 1_000_000L;
+
+    @Test
+    void backsOffWhileIdleAndRespectsCpuBudget() {
+        AdaptiveScheduler s = new AdaptiveScheduler(50, 800, 0.5);
+        long t = 0;
+        long[] expectedTargets = {100, 200, 400, 800, 800};
+        for (long target : expectedTargets) {
+            long sleep = s.onCycle(t, t + 10 * MS, false, false);
+            assertEquals(target, s.getTargetIntervalMs());
+            assertEquals(target - 10, sleep);
+            t += target * MS;
+        }
+        assertTrue(s.getAchievedIntervalMs() > 100);
+
+        // change snaps back to the fast cadence, a match holds it there for a while
+        s.onCycle(t, t + 10 * MS, true, false);
+        assertEquals(50, s.getTargetIntervalMs());
+        s.onCycle(t, t + 10 * MS, false, true);
+        for (int i = 0; i < 4; i++) {
+            s.onCycle(t, t + 10 * MS, false, false);
+            assertEquals(50, s.getTargetIntervalMs());
+        }
+        s.onCycle(t, t + 10 * MS, false, false);
+        assertEquals(100, s.getTargetIntervalMs());
+
+        // a 120 ms scan at a 50% budget needs at least 120 ms of sleep, whatever the target
+        s.reset();
+        assertEquals(120, s.onCycle(0, 120 * MS, true, false));
+        assertEquals(0.5, s.getDutyCycle(), 1e-9);
+    }
+
+    @Test
+    void clickAndVerifyTimeIsNotChargedToTheCpuBudget() {
+        AdaptiveScheduler s = new AdaptiveScheduler(50, 800, 0.25);
+        // 10 ms of scanning plus a 1 s click-and-verify: the next scan follows at once
+        assertEquals(0, s.onCycle(0, 1010 * MS, 10 * MS, true, true));
+        assertEquals(50, s.getTargetIntervalMs());
+        assertTrue(s.getDutyCycle() < 0.25);
+        // counted as busy, the same cycle would have paused three times as long
+        s.reset();
+        assertEquals(3030, s.onCycle(0, 1010 * MS, true, true));
+
+        // heavy scanning in a short cycle still has to respect the budget
+        s.reset();
+        assertEquals(160, s.onCycle(0, 240 * MS, 100 * MS, true, false));
+        assertEquals(0.25, s.getDutyCycle(), 1e-9);
+    }
+}
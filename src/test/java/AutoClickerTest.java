@@ -1,4 +1,14 @@
 import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class AutoClickerTest {
@@ -13,4 +23,600 @@ public class AutoClickerTest {
         MouseController controller = new MouseController();
         assertNotNull(controller);
     }
-}
\ No newline at end of file
+
+    static BufferedImage button() {
+        BufferedImage b = new BufferedImage(40, 16, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = b.createGraphics();
+        g.setColor(new Color(0x2A6FDB));
+        g.fillRect(0, 0, 40, 16);
+        g.setColor(Color.WHITE);
+        g.fillRect(6, 6, 28, 4);
+        g.dispose();
+        return b;
+    }
+
+    @Test
+    void headlessScanClicksSyntheticTargetAndVerifiesItIsGone() throws InterruptedException {
+        SyntheticFrameSource frames = new SyntheticFrameSource(320, 240, 11);
+        frames.addTarget(button(), 200, 150);
+        RecordingInputSink input = new RecordingInputSink(frames.getBounds());
+        input.setListener(frames::removeTargetAt);
+
+        AutoClicker clicker = new AutoClicker(new ImageMatcher(button(), 0, 1), frames, input,
+                0, 0, 100, null, false, 5);
+        assertTrue(clicker.scanOnce());
+        List<Point> clicks = input.getClicks();
+        assertEquals(1, clicks.size(), "verification should see the target gone after one click");
+        assertEquals(new Point(220, 158), clicks.get(0));
+
+        assertFalse(clicker.scanOnce());
+        assertEquals(1, input.getClicks().size());
+    }
+
+    @Test
+    void pipelinedModeClicksOnceAndDropsStaleFrames() throws InterruptedException {
+        SyntheticFrameSource frames = new SyntheticFrameSource(320, 240, 11);
+        frames.addTarget(button(), 200, 150);
+        RecordingInputSink input = new RecordingInputSink(frames.getBounds());
+        CountDownLatch clicked = new CountDownLatch(1);
+        input.setListener(p -> {
+            frames.removeTargetAt(p);
+            clicked.countDown();
+        });
+
+        AutoClicker clicker = new AutoClicker(new ImageMatcher(button(), 0, 1), frames, input,
+                0, 0, 100, null, false, 5);
+        clicker.setClickVerifyDelays(0, 0);
+        clicker.setPipelined(true);
+        clicker.start();
+        try {
+            assertTrue(clicked.await(5, TimeUnit.SECONDS));
+            Thread.sleep(400); // a few more frames without the target
+        } finally {
+            clicker.stop();
+        }
+        assertEquals(List.of(new Point(220, 158)), input.getClicks());
+
+        // a consumer slower than capture only ever sees the newest frame
+        FramePipeline pipeline = new FramePipeline(frames, null, 2, 0);
+        pipeline.start();
+        try {
+            FramePipeline.Frame first = pipeline.take();
+            long firstSequence = first.getSequence();
+            Thread.sleep(100);
+            pipeline.release(first);
+            FramePipeline.Frame next = pipeline.take();
+            assertTrue(next.getSequence() > firstSequence + 1);
+            assertTrue(pipeline.getDropped() > 0);
+            assertEquals(320, next.getImage().getWidth());
+        } finally {
+            pipeline.stop();
+        }
+    }
+
+    @Test
+    void metricsCountStagesAndOutcomes() throws InterruptedException {
+        SyntheticFrameSource frames = new SyntheticFrameSource(320, 240, 11);
+        frames.addTarget(button(), 200, 150);
+        RecordingInputSink input = new RecordingInputSink(frames.getBounds());
+        // the first click does nothing, so verification fails once and the click is retried
+        input.setListener(p -> {
+            if (input.getClicks().size() > 1) frames.removeTargetAt(p);
+        });
+        AutoClicker clicker = new AutoClicker(new ImageMatcher(button(), 0, 1), frames, input,
+                0, 0, 100, null, false, 5);
+        clicker.setClickVerifyDelays(0, 0);
+        assertTrue(clicker.scanOnce());
+        assertFalse(clicker.scanOnce());
+
+        ClickerMetrics m = clicker.getMetrics();
+        assertEquals(2, m.getScans());
+        assertEquals(1, m.getHits());
+        assertEquals(1, m.getMisses());
+        assertEquals(1, m.getRetries());
+        assertEquals(0, m.getVerifyFailures());
+        assertEquals(2, m.getCaptureLatency().getCount());
+        assertEquals(2, m.getMatchLatency().getCount());
+        assertEquals(2, m.getClickLatency().getCount());
+        assertEquals(2, m.getVerifyLatency().getCount());
+        String json = m.getSnapshotJson();
+        assertTrue(json.contains("\"hits\":1") && json.contains("\"verify\":{\"count\":2"), json);
+
+        LatencyHistogram h = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) h.recordNanos(i * 1_000_000L);
+        assertEquals(500, h.getPercentileMs(0.5), 500 * 0.125);
+        assertEquals(990, h.getPercentileMs(0.99), 990 * 0.125);
+        assertEquals(1000, h.getMaxMs(), 1e-9);
+    }
+
+    @Test
+    void verificationCapturesOnlyTheClickedArea() throws InterruptedException {
+        SyntheticFrameSource synthetic = new SyntheticFrameSource(320, 240, 11);
+        List<Rectangle> regions = new ArrayList<>();
+        FrameSource frames = new FrameSource() {
+            @Override
+            public BufferedImage capture() {
+                regions.add(null);
+                return synthetic.capture();
+            }
+
+            @Override
+            public BufferedImage capture(Rectangle region) {
+                regions.add(region);
+                return synthetic.capture(region);
+            }
+
+            @Override
+            public Rectangle getBounds() {
+                return synthetic.getBounds();
+            }
+        };
+        RecordingInputSink input = new RecordingInputSink(synthetic.getBounds());
+        // the button shifts by 3 px when clicked instead of disappearing
+        input.setListener(p -> {
+            if (synthetic.removeTargetAt(p)) synthetic.addTarget(button(), 203, 150);
+        });
+
+        synthetic.addTarget(button(), 200, 150);
+        AutoClicker clicker = new AutoClicker(new ImageMatcher(button(), 0, 1), frames, input,
+                0, 0, 100, null, false, 5);
+        clicker.setClickVerifyDelays(0, 0);
+        clicker.setClickVerifier(ClickVerifier.GONE_AT_LOCATION, 8);
+        assertTrue(clicker.scanOnce());
+        assertEquals(1, input.getClicks().size());
+        assertEquals(Arrays.asList(null, new Rectangle(192, 142, 56, 32)), regions);
+
+        // searching the whole margin still sees the shifted button, so every retry is used
+        synthetic.clearTargets();
+        synthetic.addTarget(button(), 200, 150);
+        input.clear();
+        clicker.setClickVerifier(ClickVerifier.GONE_FROM_AREA, 8);
+        assertTrue(clicker.scanOnce());
+        assertEquals(5, input.getClicks().size());
+        assertEquals(1, clicker.getMetrics().getVerifyFailures());
+    }
+
+    @Test
+    void batchModeClicksEveryTargetAndVerifiesThemTogether() throws InterruptedException {
+        SyntheticFrameSource synthetic = new SyntheticFrameSource(320, 240, 11);
+        List<Rectangle> regions = new ArrayList<>();
+        FrameSource frames = new FrameSource() {
+            @Override
+            public BufferedImage capture() {
+                return synthetic.capture();
+            }
+
+            @Override
+            public BufferedImage capture(Rectangle region) {
+                regions.add(region);
+                return synthetic.capture(region);
+            }
+
+            @Override
+            public Rectangle getBounds() {
+                return synthetic.getBounds();
+            }
+        };
+        int[][] buttons = {{200, 150}, {30, 40}, {120, 40}, {30, 200}};
+        for (int[] b : buttons) synthetic.addTarget(button(), b[0], b[1]);
+        RecordingInputSink input = new RecordingInputSink(synthetic.getBounds());
+        // the button at (120, 40) needs two clicks
+        int[] stubborn = {0};
+        input.setListener(p -> {
+            if (p.x == 140 && stubborn[0]++ == 0) return;
+            synthetic.removeTargetAt(p);
+        });
+
+        AutoClicker clicker = new AutoClicker(new ImageMatcher(button(), 0, 1), frames, input,
+                0, 0, 100, null, false, 5);
+        clicker.setClickVerifyDelays(0, 0);
+        clicker.setBatchClicking(true, AutoClicker.ClickOrder.READING);
+        assertTrue(clicker.scanOnce());
+        assertEquals(Arrays.asList(new Point(50, 48), new Point(140, 48), new Point(220, 158),
+                new Point(50, 208), new Point(140, 48)), input.getClicks());
+        // one capture per verify round, spanning all pending targets
+        assertEquals(Arrays.asList(new Rectangle(22, 32, 226, 192), new Rectangle(112, 32, 56, 32)),
+                regions);
+        assertEquals(1, clicker.getMetrics().getRetries());
+        assertEquals(0, clicker.getMetrics().getVerifyFailures());
+        assertFalse(clicker.scanOnce());
+
+        List<Rectangle> targets = Arrays.asList(new Rectangle(100, 0, 5, 5), new Rectangle(0, 10, 5, 5),
+                new Rectangle(10, 0, 5, 5), new Rectangle(90, 12, 5, 5));
+        assertEquals(Arrays.asList(targets.get(2), targets.get(0), targets.get(1), targets.get(3)),
+                AutoClicker.orderTargets(targets, AutoClicker.ClickOrder.READING));
+        assertEquals(Arrays.asList(targets.get(2), targets.get(1), targets.get(3), targets.get(0)),
+                AutoClicker.orderTargets(targets, AutoClicker.ClickOrder.NEAREST));
+    }
+
+    @Test
+    void changeSignatureCountsLikeFullFrameComparison() throws InterruptedException {
+        Random rnd = new Random(8);
+        FrameSignature sig = new FrameSignature(4);
+        BufferedImage prev = null;
+        int[][] sizes = {{101, 77}, {101, 77}, {96, 80}, {101, 77}, {64, 40}};
+        for (int[] size : sizes) {
+            BufferedImage img = ImageMatcherTest.randomImage(rnd, size[0], size[1], BufferedImage.TYPE_INT_RGB);
+            long changed = sig.compareAndUpdate(PixelFrame.of(img));
+            if (prev == null) {
+                assertEquals(-1, changed);
+            } else {
+                assertEquals(AutoClicker.countChangedSamples(PixelFrame.of(prev), PixelFrame.of(img), 4), changed);
+            }
+            prev = img;
+        }
+
+        // a source that fills the buffer it is given gets the same pooled buffer every cycle
+        SyntheticFrameSource synthetic = new SyntheticFrameSource(160, 120, 4);
+        List<BufferedImage> given = new ArrayList<>();
+        FrameSource frames = new FrameSource() {
+            @Override
+            public BufferedImage capture() {
+                return synthetic.capture();
+            }
+
+            @Override
+            public BufferedImage capture(Rectangle region) {
+                return synthetic.capture(region);
+            }
+
+            @Override
+            public BufferedImage captureInto(Rectangle region, BufferedImage reuse) {
+                given.add(reuse);
+                return synthetic.captureInto(region, reuse);
+            }
+
+            @Override
+            public Rectangle getBounds() {
+                return synthetic.getBounds();
+            }
+        };
+        AutoClicker clicker = new AutoClicker(null, frames, new RecordingInputSink(synthetic.getBounds()),
+                0, 0, 100, null, true, 50);
+        for (int i = 0; i < 3; i++) {
+            assertFalse(clicker.scanOnce());
+        }
+        assertNull(given.get(0));
+        assertNotNull(given.get(1));
+        assertSame(given.get(1), given.get(2));
+    }
+
+    @Test
+    void syntheticFramesAreDeterministic() {
+        BufferedImage a = new SyntheticFrameSource(64, 48, 5).capture();
+        BufferedImage b = new SyntheticFrameSource(64, 48, 5).capture();
+        for (int y = 0; y < 48; y++) {
+            for (int x = 0; x < 64; x++) {
+                assertEquals(a.getRGB(x, y), b.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    void scanEngineSharesOneCapturePerClusterOfDueRegions() {
+        SyntheticFrameSource frames = new SyntheticFrameSource(1600, 1200, 12);
+        frames.addTarget(button(), 100, 100);
+        frames.addTarget(button(), 1400, 1000);
+        RecordingInputSink input = new RecordingInputSink(frames.getBounds());
+        ImageMatcher matcher = new ImageMatcher(button(), 0, 1);
+
+        ScanEngine engine = new ScanEngine(frames, input);
+        for (int i = 0; i < 5; i++) {
+            // five overlapping rules around the same button
+            engine.addJob("near" + i, matcher, new Rectangle(80 + 5 * i, 90, 120, 60), 0, 0, 100);
+        }
+        ScanJob corner = engine.addJob("corner", matcher, new Rectangle(1350, 950, 150, 150), 0, 0, 100);
+        ScanJob empty = engine.addJob("empty", matcher, new Rectangle(1000, 50, 100, 100), 0, 0, 1000);
+
+        long t0 = System.nanoTime();
+        assertEquals(6, engine.tick(t0));
+        assertEquals(3, engine.getCaptures(), "near rules share a capture, far regions get their own");
+        assertEquals(3, frames.getFrameCount());
+        assertEquals(5, input.getClicks().stream().filter(p -> p.equals(new Point(120, 108))).count());
+        assertTrue(input.getClicks().contains(new Point(1420, 1008)));
+        assertEquals(new Rectangle(1400, 1000, 40, 16), corner.getLastMatch());
+        assertEquals(1, empty.getScans());
+        assertNull(empty.getLastMatch());
+
+        // 100 ms later the slower rule is not due, so only two captures
+        assertEquals(6, engine.tick(t0 + 100_000_000L));
+        assertEquals(5, engine.getCaptures());
+        assertEquals(1, empty.getScans());
+        assertEquals(2, corner.getHits());
+
+        List<Rectangle> plan = ScanEngine.planCaptures(List.of(
+                new Rectangle(0, 0, 100, 100), new Rectangle(700, 500, 100, 100), new Rectangle(50, 50, 100, 100)));
+        assertEquals(List.of(new Rectangle(0, 0, 150, 150), new Rectangle(700, 500, 100, 100)), plan);
+    }
+
+    @Test
+    void scanEngineSearchesJobsOnTheSameRegionInOnePass() {
+        SyntheticFrameSource frames = new SyntheticFrameSource(320, 240, 13);
+        BufferedImage patch = frames.capture().getSubimage(30, 40, 12, 10);
+        frames.addTarget(button(), 200, 150);
+        RecordingInputSink input = new RecordingInputSink(frames.getBounds());
+        ImageMatcher absent = new ImageMatcher(new SyntheticFrameSource(20, 20, 99).capture(), 0, 1);
+
+        ScanEngine engine = new ScanEngine(frames, input);
+        ScanJob buttonJob = engine.addJob("button", new ImageMatcher(button(), 0, 1), null, 0, 0, 100);
+        ImageMatcher patchMatcher = new ImageMatcher(patch, 0, 1);
+        Rectangle patchHit = patchMatcher.findMatch(frames.capture()); // first in scan order
+        ScanJob patchJob = engine.addJob("patch", patchMatcher, null, 0, 0, 100);
+        ScanJob absentJob = engine.addJob("absent", absent, null, 0, 0, 100);
+        assertEquals(2, engine.tick(System.nanoTime()));
+        assertEquals(1, engine.getCaptures());
+        assertEquals(1, engine.getSharedPasses());
+        assertEquals(new Rectangle(200, 150, 40, 16), buttonJob.getLastMatch());
+        assertEquals(patchHit, patchJob.getLastMatch());
+        assertNull(absentJob.getLastMatch());
+        assertEquals(List.of(new Point(220, 158), new Point(patchHit.x + 6, patchHit.y + 5)), input.getClicks());
+    }
+
+    @Test
+    void scanEngineDoesNotClickAfterStopReturns() throws InterruptedException {
+        SyntheticFrameSource frames = new SyntheticFrameSource(320, 240, 14);
+        frames.addTarget(button(), 200, 150);
+        CountDownLatch firstClick = new CountDownLatch(1);
+        RecordingInputSink clicks = new RecordingInputSink(frames.getBounds());
+        InputSink slow = new InputSink() {
+            @Override
+            public void click(int x, int y) {
+                clicks.click(x, y);
+                firstClick.countDown();
+                try {
+                    Thread.sleep(300); // a long click hold
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public Rectangle getBounds() {
+                return clicks.getBounds();
+            }
+        };
+        ScanEngine engine = new ScanEngine(frames, slow);
+        ImageMatcher matcher = new ImageMatcher(button(), 0, 1);
+        for (int i = 0; i < 3; i++) engine.addJob("job" + i, matcher, new Rectangle(150, 100, 150, 100), 0, 0, 100);
+        engine.start();
+        assertTrue(firstClick.await(5, TimeUnit.SECONDS));
+        engine.stop();
+        int atStop = clicks.getClicks().size();
+        Thread.sleep(700);
+        assertEquals(atStop, clicks.getClicks().size(), "clicked after stop() returned");
+        assertFalse(engine.isRunning());
+    }
+
+    /** A synthetic screen placed at (x, y) of the virtual desktop. */
+    static FrameSource monitorAt(SyntheticFrameSource screen, int x, int y) {
+        return new FrameSource() {
+            @Override
+            public BufferedImage capture() {
+                return screen.capture();
+            }
+
+            @Override
+            public BufferedImage capture(Rectangle region) {
+                Rectangle local = new Rectangle(region);
+                local.translate(-x, -y);
+                return screen.capture(local);
+            }
+
+            @Override
+            public Rectangle getBounds() {
+                Rectangle b = screen.getBounds();
+                b.translate(x, y);
+                return b;
+            }
+        };
+    }
+
+    @Test
+    void multiScreenSourceFindsAndClicksTargetsOnSecondaryMonitors() throws InterruptedException {
+        SyntheticFrameSource left = new SyntheticFrameSource(320, 240, 1);
+        SyntheticFrameSource primary = new SyntheticFrameSource(320, 240, 2);
+        SyntheticFrameSource right = new SyntheticFrameSource(320, 240, 3);
+        right.addTarget(button(), 200, 150);
+        MultiScreenSource screens = new MultiScreenSource(List.of(
+                monitorAt(left, -320, 0), monitorAt(primary, 0, 0), monitorAt(right, 320, -40)));
+        try {
+            assertEquals(new Rectangle(-320, -40, 960, 280), screens.getBounds());
+            BufferedImage all = screens.capture();
+            assertEquals(left.capture().getRGB(5, 7), all.getRGB(5, 7 + 40));
+            assertEquals(right.capture().getRGB(300, 0), all.getRGB(640 + 300, 0));
+            assertEquals(0xFF000000, all.getRGB(10, 10), "no monitor there");
+            BufferedImage straddling = screens.capture(new Rectangle(-10, 0, 20, 20));
+            assertEquals(left.capture().getRGB(315, 3), straddling.getRGB(5, 3));
+            assertEquals(primary.capture().getRGB(4, 3), straddling.getRGB(14, 3));
+
+            RecordingInputSink input = new RecordingInputSink(screens.getBounds());
+            input.setListener(p -> right.removeTargetAt(new Point(p.x - 320, p.y + 40)));
+            AutoClicker clicker = new AutoClicker(new ImageMatcher(button(), 0, 1), screens, input,
+                    0, 0, 100, null, false, 5);
+            clicker.setClickVerifyDelays(0, 0);
+            assertTrue(clicker.scanOnce());
+            assertEquals(List.of(new Point(320 + 220, -40 + 158)), input.getClicks());
+        } finally {
+            screens.shutdown();
+        }
+
+        Rectangle[] monitors = {new Rectangle(0, 0, 1920, 1080), new Rectangle(1920, 0, 1280, 720)};
+        assertEquals(new Point(2000, 700), MouseController.clamp(2000, 700, monitors));
+        assertEquals(new Point(2500, 719), MouseController.clamp(2500, 900, monitors), "below the smaller monitor");
+        assertEquals(new Point(0, 5), MouseController.clamp(-50, 5, monitors));
+    }
+
+    @Test
+    void asyncInputClicksOffTheWorkerAndVerifiesOnLaterScans() throws InterruptedException {
+        SyntheticFrameSource frames = new SyntheticFrameSource(320, 240, 11);
+        frames.addTarget(button(), 200, 150);
+        RecordingInputSink input = new RecordingInputSink(frames.getBounds());
+        CountDownLatch clicked = new CountDownLatch(1);
+        input.setListener(p -> {
+            frames.removeTargetAt(p);
+            clicked.countDown();
+        });
+        AutoClicker clicker = new AutoClicker(new ImageMatcher(button(), 0, 1), frames, input,
+                0, 0, 100, null, false, 5);
+        clicker.setClickVerifyDelays(0, 0);
+        clicker.setAsyncInput(true);
+        try {
+            assertTrue(clicker.scanOnce(), "the click is dispatched");
+            assertTrue(clicked.await(5, TimeUnit.SECONDS));
+            assertEquals(List.of(new Point(220, 158)), input.getClicks());
+            for (int i = 0; i < 3; i++) assertFalse(clicker.scanOnce());
+            assertEquals(1, input.getClicks().size(), "verified gone, not clicked again");
+            assertEquals(0, clicker.getMetrics().getRetries());
+        } finally {
+            clicker.stop();
+        }
+    }
+
+    /** Stepped sink that logs each step and when it ran. */
+    static final class StepLog implements SteppingInputSink {
+        final List<String> steps = new ArrayList<>();
+        final List<Long> nanos = new ArrayList<>();
+
+        private synchronized void log(String step) {
+            steps.add(step);
+            nanos.add(System.nanoTime());
+        }
+
+        synchronized List<String> steps() {
+            return new ArrayList<>(steps);
+        }
+
+        @Override
+        public void click(int x, int y) {
+            log("click " + x + "," + y);
+        }
+
+        @Override
+        public Rectangle getBounds() {
+            return new Rectangle(0, 0, 100, 100);
+        }
+
+        @Override
+        public void move(int x, int y) {
+            log("move " + x + "," + y);
+        }
+
+        @Override
+        public void press() {
+            log("press");
+        }
+
+        @Override
+        public void release() {
+            log("release");
+        }
+    }
+
+    @Test
+    void inputDispatcherRunsStepsOnTheirTimelineAndCancelsTheRest() throws InterruptedException {
+        RecordingInputSink clicks = new RecordingInputSink(new Rectangle(0, 0, 100, 100));
+        InputDispatcher plain = new InputDispatcher(clicks);
+        InputDispatcher stepped = null;
+        try {
+            InputDispatcher.Sequence late = plain.click(5, 6, 500);
+            assertTrue(late.cancel());
+            assertTrue(late.isDone());
+            assertFalse(late.cancel(), "already finished");
+            assertTrue(plain.click(7, 8, 0).await(5000));
+            assertEquals(List.of(new Point(7, 8)), clicks.getClicks(), "only the click that was not cancelled");
+
+            StepLog log = new StepLog();
+            stepped = new InputDispatcher(log);
+            InputDispatcher.Sequence seq = stepped.dispatch(new InputDispatcher.Script(log).click(5, 6).pause(20).move(7, 8), 0);
+            assertTrue(seq.await(5000));
+            assertEquals(List.of("move 5,6", "press", "release", "move 7,8"), log.steps());
+            // steps never run before they are due: release after the hold, the move 20 ms later
+            long hold = TimeUnit.MILLISECONDS.toNanos(InputDispatcher.CLICK_HOLD_MS);
+            assertTrue(log.nanos.get(2) - seq.getStartNanos() >= hold);
+            assertTrue(log.nanos.get(3) - seq.getStartNanos() >= hold + TimeUnit.MILLISECONDS.toNanos(20));
+
+            // cancelled while the button is down: the move is dropped, the release still runs
+            StepLog drag = new StepLog();
+            InputDispatcher dragging = new InputDispatcher(drag);
+            InputDispatcher.Sequence d = dragging.dispatch(new InputDispatcher.Script(drag)
+                    .move(1, 1).press().pause(300).move(9, 9).release(), 0);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!drag.steps().contains("press") && System.nanoTime() < deadline) Thread.sleep(1);
+            assertTrue(d.cancel());
+            assertTrue(d.await(5000));
+            assertEquals(List.of("move 1,1", "press", "release"), drag.steps());
+            dragging.stop();
+
+            // a sink without steps takes scripts of clicks only, refused while building
+            InputSink clickOnly = new InputSink() {
+                @Override
+                public void click(int x, int y) {
+                }
+
+                @Override
+                public Rectangle getBounds() {
+                    return new Rectangle(0, 0, 100, 100);
+                }
+            };
+            InputDispatcher.Script script = new InputDispatcher.Script(clickOnly).click(1, 2).pause(5);
+            assertThrows(UnsupportedOperationException.class, () -> script.move(3, 4));
+            assertThrows(IllegalArgumentException.class, () -> new InputDispatcher(clickOnly)
+                    .dispatch(new InputDispatcher.Script(drag).press(), 0));
+        } finally {
+            plain.stop();
+            if (stepped != null) stepped.stop();
+        }
+    }
+
+    @Test
+    void previewHoldsACopyOfTheLatestScannedFrameUntilTaken() throws InterruptedException {
+        SyntheticFrameSource frames = new SyntheticFrameSource(320, 240, 11);
+        frames.addTarget(button(), 200, 150);
+        RecordingInputSink input = new RecordingInputSink(frames.getBounds());
+        input.setListener(frames::removeTargetAt);
+        AutoClicker clicker = new AutoClicker(new ImageMatcher(button(), 0, 1), frames, input,
+                0, 0, 100, null, false, 5);
+        clicker.setClickVerifyDelays(0, 0);
+        assertTrue(clicker.scanOnce());
+        assertNull(clicker.takePreview(), "off by default");
+
+        clicker.setPreviewEnabled(true);
+        frames.addTarget(button(), 40, 30);
+        clicker.scanOnce();
+        FramePreview shown = clicker.takePreview();
+        assertNotNull(shown);
+        assertEquals(new Rectangle(40, 30, 40, 16), shown.getMatch());
+        assertEquals(frames.getBounds(), shown.getArea());
+        assertNull(clicker.takePreview(), "taken");
+
+        // later scans reuse the pooled frame buffer; the preview keeps its own pixels
+        int buttonPixel = shown.getImage().getRGB(50, 37);
+        clicker.scanOnce();
+        assertEquals(buttonPixel, shown.getImage().getRGB(50, 37));
+        FramePreview next = clicker.takePreview();
+        assertNotNull(next);
+        assertNull(next.getMatch(), "the button was clicked away");
+        assertNotEquals(buttonPixel, next.getImage().getRGB(50, 37));
+
+        clicker.scanOnce();
+        clicker.scanOnce();
+        assertNotNull(clicker.takePreview());
+        assertNull(clicker.takePreview(), "one slot, not a queue");
+
+        // larger frames are shrunk to the preview size; the match stays in frame coordinates
+        clicker.setPreviewSize(160, 160);
+        frames.addTarget(button(), 100, 80);
+        clicker.scanOnce();
+        FramePreview small = clicker.takePreview();
+        assertEquals(160, small.getImage().getWidth());
+        assertEquals(120, small.getImage().getHeight());
+        assertEquals(new Rectangle(100, 80, 40, 16), small.getMatch());
+        assertEquals(frames.getBounds(), small.getArea());
+        assertEquals(0xFF2A6FDB, small.getImage().getRGB(51, 40), "button pixel (102,80)");
+
+        // a recycled image is drawn into again instead of allocating a new one
+        clicker.recyclePreview(small);
+        clicker.scanOnce();
+        assertSame(small.getImage(), clicker.takePreview().getImage());
+    }
+}
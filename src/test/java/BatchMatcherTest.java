@@ -0,0 +1,83 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchMatcherTest {
+
+    @Test
+    void everyImageGetsOneRowPerTemplateWithTheMatcherResult(@TempDir Path dir) throws Exception {
+        Random rnd = new Random(21);
+        BufferedImage source = ImageMatcherTest.randomImage(rnd, 120, 90, BufferedImage.TYPE_INT_RGB);
+        BufferedImage button = ImageMatcherTest.template(source, 30, 20, 14, 10, false);
+        BufferedImage absent = ImageMatcherTest.template(
+                ImageMatcherTest.randomImage(rnd, 40, 40, BufferedImage.TYPE_INT_RGB), 5, 5, 12, 12, false);
+        Map<String, ImageMatcher> templates = new LinkedHashMap<>();
+        templates.put("button", new ImageMatcher(button, 0, 1));
+        templates.put("absent", new ImageMatcher(absent, 0, 1));
+
+        Map<String, Rectangle> expected = new HashMap<>();
+        for (int i = 0; i < 12; i++) {
+            BufferedImage shot = ImageMatcherTest.randomImage(rnd, 120, 90, BufferedImage.TYPE_INT_RGB);
+            if (i % 3 != 0) shot.getGraphics().drawImage(button, 5 * i, 3 * i, null);
+            String name = "shot" + i + ".png";
+            ImageIO.write(shot, "png", dir.resolve(name).toFile());
+            expected.put(name, templates.get("button").findMatch(shot));
+        }
+        Files.write(dir.resolve("broken.png"), "not a png".getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve("notes.txt"), "ignored".getBytes(StandardCharsets.UTF_8));
+
+        // fewer read-ahead slots than images, so workers are reused while rows are written
+        BatchMatcher batch = new BatchMatcher(templates, 3, 4);
+        StringWriter out = new StringWriter();
+        BatchMatcher.Summary summary = batch.run(dir, out, BatchMatcher.Format.CSV);
+        assertEquals(13, summary.getImages());
+        assertEquals(1, summary.getFailed());
+
+        String[] lines = out.toString().split("\n");
+        assertEquals("file,template,found,x,y,width,height,confidence,decode_ms,match_ms,error", lines[0]);
+        assertEquals(1 + 12 * 2 + 1, lines.length);
+        int hits = 0;
+        for (int i = 1; i < lines.length; i++) {
+            String[] f = lines[i].split(",", -1);
+            assertEquals(11, f.length, lines[i]);
+            if (f[0].equals("broken.png")) {
+                assertFalse(f[10].isEmpty());
+                continue;
+            }
+            if (f[1].equals("absent")) {
+                assertEquals("false", f[2]);
+                continue;
+            }
+            Rectangle want = expected.get(f[0]);
+            assertEquals(want != null, Boolean.parseBoolean(f[2]), f[0]);
+            if (want != null) {
+                hits++;
+                assertEquals(want.x, Integer.parseInt(f[3]), f[0]);
+                assertEquals(want.y, Integer.parseInt(f[4]), f[0]);
+                assertEquals("1.0000", f[7]);
+            }
+            // button row directly precedes the absent row of the same image
+            assertTrue(lines[i + 1].startsWith(f[0] + ",absent,"), lines[i + 1]);
+        }
+        assertEquals(8, hits);
+        assertEquals(8, summary.getHits());
+
+        StringWriter jsonl = new StringWriter();
+        batch.run(dir, jsonl, BatchMatcher.Format.JSONL);
+        assertEquals(12 * 2 + 1, jsonl.toString().split("\n").length);
+        assertTrue(jsonl.toString().contains("{\"file\":\"broken.png\",\"error\":"));
+    }
+}
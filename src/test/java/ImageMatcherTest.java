@@ -0,0 +1,773 @@
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class ImageMatcherTest {
+
+    // small palette so that partial matches (and early-rejection paths) are common
+    static BufferedImage randomImage(Random rnd, int w, int h, int type) {
+        int[] palette = {0x202020, 0x202428, 0xE0E0E0, 0x3070C0, 0x3474C4};
+        BufferedImage img = new BufferedImage(w, h, type);
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                img.setRGB(x, y, 0xFF000000 | palette[rnd.nextInt(palette.length)]);
+            }
+        }
+        return img;
+    }
+
+    static BufferedImage template(BufferedImage screen, int x, int y, int w, int h, boolean punchHoles) {
+        BufferedImage t = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        for (int ty = 0; ty < h; ty++) {
+            for (int tx = 0; tx < w; tx++) {
+                int rgb = screen.getRGB(x + tx, y + ty);
+                if (punchHoles && (tx + ty) % 5 == 0) rgb &= 0x00FFFFFF;
+                t.setRGB(tx, ty, rgb);
+            }
+        }
+        return t;
+    }
+
+    /** The original getRGB-per-pixel search, kept as the reference for every fast path. */
+    static Rectangle referenceFind(BufferedImage screen, BufferedImage t, int tolerance, int stride) {
+        int maxX = screen.getWidth() - t.getWidth();
+        int maxY = screen.getHeight() - t.getHeight();
+        for (int x = 0; x <= maxX; x += stride) {
+            for (int y = 0; y <= maxY; y += stride) {
+                if (referenceMatch(screen, t, x, y, tolerance)) {
+                    return new Rectangle(x, y, t.getWidth(), t.getHeight());
+                }
+            }
+        }
+        return null;
+    }
+
+    static boolean referenceMatch(BufferedImage screen, BufferedImage t, int sx, int sy, int tolerance) {
+        for (int x = 0; x < t.getWidth(); x++) {
+            for (int y = 0; y < t.getHeight(); y++) {
+                int trgb = t.getRGB(x, y);
+                if (((trgb >> 24) & 0xFF) == 0) continue;
+                int s = screen.getRGB(sx + x, sy + y);
+                if (tolerance == 0) {
+                    if (trgb != s) return false;
+                    continue;
+                }
+                int dr = ((trgb >> 16) & 0xFF) - ((s >> 16) & 0xFF);
+                int dg = ((trgb >> 8) & 0xFF) - ((s >> 8) & 0xFF);
+                int db = (trgb & 0xFF) - (s & 0xFF);
+                if (dr * dr + dg * dg + db * db > tolerance * tolerance) return false;
+            }
+        }
+        return true;
+    }
+
+    @Test
+    void fastPathMatchesReferenceAcrossRasterTypes() {
+        Random rnd = new Random(42);
+        int[] types = {BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_3BYTE_BGR};
+        for (int type : types) {
+            for (int round = 0; round < 6; round++) {
+                BufferedImage screen = randomImage(rnd, 120, 90, type);
+                BufferedImage t = template(screen, rnd.nextInt(100), rnd.nextInt(70), 3 + rnd.nextInt(12),
+                        3 + rnd.nextInt(12), round % 2 == 1);
+                for (int tol : new int[]{0, 10, 40}) {
+                    for (int stride : new int[]{1, 2}) {
+                        ImageMatcher m = new ImageMatcher(t, tol, stride);
+                        assertEquals(referenceFind(screen, t, tol, stride), m.findMatch(screen),
+                                "type=" + type + " tol=" + tol + " stride=" + stride);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void subImageScreenshotsUseTheirOwnOrigin() {
+        Random rnd = new Random(7);
+        BufferedImage full = randomImage(rnd, 200, 150, BufferedImage.TYPE_INT_RGB);
+        BufferedImage sub = full.getSubimage(37, 21, 100, 80);
+        BufferedImage t = template(sub, 60, 50, 10, 8, false);
+        ImageMatcher m = new ImageMatcher(t, 0, 1);
+        assertEquals(referenceFind(sub, t, 0, 1), m.findMatch(sub));
+    }
+
+    @Test
+    void pyramidModeFindsSameMatchAsFullSearch() {
+        Random rnd = new Random(1234);
+        for (int round = 0; round < 12; round++) {
+            BufferedImage screen = randomImage(rnd, 160, 120, BufferedImage.TYPE_INT_RGB);
+            int w = 4 + rnd.nextInt(40);
+            int h = 4 + rnd.nextInt(30);
+            BufferedImage t = template(screen, rnd.nextInt(160 - w), rnd.nextInt(120 - h), w, h, round % 3 == 0);
+            for (int tol : new int[]{0, 10, 40}) {
+                for (int stride : new int[]{1, 3}) {
+                    ImageMatcher m = new ImageMatcher(t, tol, stride);
+                    Rectangle expected = m.findMatch(screen);
+                    m.setSearchMode(ImageMatcher.SearchMode.PYRAMID);
+                    assertEquals(expected, m.findMatch(screen), "round=" + round + " tol=" + tol + " stride=" + stride);
+                }
+            }
+        }
+    }
+
+    @Test
+    void parallelSearchKeepsScanOrder() {
+        Random rnd = new Random(99);
+        for (ImageMatcher.SearchMode mode : ImageMatcher.SearchMode.values()) {
+            if (mode == ImageMatcher.SearchMode.NCC) continue; // ranks by correlation, not color tolerance
+            for (int round = 0; round < 6; round++) {
+                BufferedImage screen = randomImage(rnd, 200, 180, BufferedImage.TYPE_INT_RGB);
+                BufferedImage t = template(screen, rnd.nextInt(190), rnd.nextInt(170), 4 + rnd.nextInt(6), 3, false);
+                // plant a second copy lower down so the bands disagree about the first hit
+                screen.createGraphics().drawImage(t, rnd.nextInt(190), 170 - rnd.nextInt(40), null);
+                for (int stride : new int[]{1, 2}) {
+                    ImageMatcher m = new ImageMatcher(t, 10, stride);
+                    m.setSearchMode(mode);
+                    Rectangle expected = m.findMatch(screen);
+                    m.setParallelism(4);
+                    assertEquals(expected, m.findMatch(screen), mode + " round=" + round + " stride=" + stride);
+
+                    m.setFirstMatchInScanOrder(false);
+                    Rectangle any = m.findMatch(screen);
+                    assertEquals(expected == null, any == null);
+                    if (any != null) assertTrue(referenceMatch(screen, t, any.x, any.y, 10));
+                }
+            }
+        }
+    }
+
+    @Test
+    void rollingHashModeFindsSameMatchAsFullSearch() {
+        Random rnd = new Random(4321);
+        for (int round = 0; round < 12; round++) {
+            BufferedImage screen = randomImage(rnd, 150, 110, BufferedImage.TYPE_INT_RGB);
+            int w = 1 + rnd.nextInt(30);
+            int h = 1 + rnd.nextInt(20);
+            // every third round the template is not on screen at all
+            BufferedImage src = round % 3 == 2 ? randomImage(rnd, 150, 110, BufferedImage.TYPE_INT_RGB) : screen;
+            BufferedImage t = template(src, rnd.nextInt(150 - w), rnd.nextInt(110 - h), w, h, false);
+            for (int stride : new int[]{1, 2, 3}) {
+                for (int threads : new int[]{1, 3}) {
+                    ImageMatcher m = new ImageMatcher(t, 0, stride);
+                    Rectangle expected = m.findMatch(screen);
+                    m.setSearchMode(ImageMatcher.SearchMode.EXACT_HASH);
+                    m.setParallelism(threads);
+                    assertEquals(expected, m.findMatch(screen), "round=" + round + " stride=" + stride);
+                }
+            }
+        }
+    }
+
+    @Test
+    void incrementalRescanTracksFullSearchAcrossFrames() {
+        Random rnd = new Random(77);
+        BufferedImage screen = randomImage(rnd, 160, 120, BufferedImage.TYPE_INT_RGB);
+        BufferedImage t = template(screen, 50, 40, 12, 9, true);
+        for (int stride : new int[]{1, 2}) {
+            ImageMatcher m = new ImageMatcher(t, 10, stride);
+            IncrementalMatcher inc = new IncrementalMatcher(m, 16);
+            BufferedImage frame = randomImage(new Random(stride), 160, 120, BufferedImage.TYPE_INT_RGB);
+            for (int i = 0; i < 40; i++) {
+                java.awt.Graphics2D g = frame.createGraphics();
+                switch (i % 4) {
+                    case 0: g.drawImage(t, rnd.nextInt(148), rnd.nextInt(111), null); break;
+                    case 1: g.setColor(new Color(0x202020)); g.fillRect(rnd.nextInt(150), rnd.nextInt(110), 20, 15); break;
+                    case 2: break; // unchanged frame
+                    default: g.drawImage(randomImage(rnd, 30, 30, BufferedImage.TYPE_INT_RGB), rnd.nextInt(140), rnd.nextInt(100), null);
+                }
+                g.dispose();
+                assertEquals(m.findMatch(frame), inc.findMatch(frame), "stride=" + stride + " frame " + i);
+            }
+            assertEquals(1, inc.getFullScans());
+            assertTrue(inc.getUnchangedFrames() >= 10);
+        }
+    }
+
+    @Test
+    void incrementalRescanKeepsNccHits() {
+        Random rnd = new Random(17);
+        BufferedImage screen = randomImage(rnd, 200, 150, BufferedImage.TYPE_INT_RGB);
+        BufferedImage t = template(screen, 120, 40, 40, 30, false);
+        // a brightened copy: found by correlation, not by the color tolerance
+        BufferedImage frame = new BufferedImage(200, 150, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 150; y++) {
+            for (int x = 0; x < 200; x++) {
+                int rgb = screen.getRGB(x, y);
+                int out = 0;
+                for (int sh = 0; sh <= 16; sh += 8) out |= (((rgb >> sh) & 0xFF) * 6 / 10 + 30) << sh;
+                frame.setRGB(x, y, out);
+            }
+        }
+        ImageMatcher m = new ImageMatcher(t, 10, 1);
+        m.setSearchMode(ImageMatcher.SearchMode.NCC);
+        IncrementalMatcher inc = new IncrementalMatcher(m, 16);
+        Rectangle expected = new Rectangle(120, 40, 40, 30);
+        assertEquals(expected, inc.findMatch(frame));
+        frame.setRGB(130, 50, frame.getRGB(130, 50) ^ 0x010101); // one pixel inside the hit
+        assertEquals(m.findMatch(frame), inc.findMatch(frame));
+        assertEquals(expected, inc.findMatch(frame));
+        frame.setRGB(5, 5, 0); // far from it
+        assertEquals(expected, inc.findMatch(frame));
+        assertEquals(3, inc.getFullScans());
+        assertEquals(1, inc.getUnchangedFrames());
+    }
+
+    @Test
+    void incrementalRescanFallsBackWhenHitsAreNotFirstInScanOrder() {
+        Random rnd = new Random(25);
+        BufferedImage t = template(randomImage(rnd, 40, 40, BufferedImage.TYPE_INT_RGB), 0, 0, 12, 9, false);
+        BufferedImage patch = randomImage(rnd, 12, 9, BufferedImage.TYPE_INT_RGB);
+
+        // a hot-spot probe returns the old location even when an earlier one matches too
+        ImageMatcher ref = new ImageMatcher(t, 0, 1);
+        ref.setHotSpotCache(new HotSpotCache(4, 6));
+        ImageMatcher m = new ImageMatcher(t, 0, 1);
+        m.setHotSpotCache(new HotSpotCache(4, 6));
+        IncrementalMatcher inc = new IncrementalMatcher(m, 16);
+        BufferedImage frame = randomImage(new Random(5), 160, 120, BufferedImage.TYPE_INT_RGB);
+        int[][] steps = {{100, 60, 1}, {20, 20, 1}, {100, 60, 0}, {70, 90, 1}, {20, 20, 0}};
+        for (int[] step : steps) {
+            frame.getGraphics().drawImage(step[2] == 1 ? t : patch, step[0], step[1], null);
+            assertEquals(ref.findMatch(frame), inc.findMatch(frame), "after drawing at " + step[0] + "," + step[1]);
+        }
+        assertEquals(steps.length, inc.getFullScans());
+
+        // an unordered parallel search may return any of the matches
+        ImageMatcher any = new ImageMatcher(t, 0, 1);
+        any.setParallelism(4);
+        any.setFirstMatchInScanOrder(false);
+        inc = new IncrementalMatcher(any, 16);
+        frame = randomImage(new Random(6), 160, 120, BufferedImage.TYPE_INT_RGB);
+        for (int[] step : steps) {
+            frame.getGraphics().drawImage(step[2] == 1 ? t : patch, step[0], step[1], null);
+            Rectangle hit = inc.findMatch(frame);
+            assertNotNull(hit);
+            assertTrue(any.matchesAt(PixelFrame.of(frame), hit.x, hit.y));
+        }
+        assertEquals(steps.length, inc.getFullScans());
+        assertEquals(0, inc.getIncrementalScans());
+        any.close();
+    }
+
+    @Test
+    void hotSpotCacheProbesRecentLocationsAndRings() {
+        Random rnd = new Random(3);
+        BufferedImage background = randomImage(rnd, 120, 100, BufferedImage.TYPE_INT_RGB);
+        BufferedImage t = new BufferedImage(8, 6, BufferedImage.TYPE_INT_ARGB);
+        java.awt.Graphics2D tg = t.createGraphics();
+        tg.setColor(new Color(0xFF00FF));
+        tg.fillRect(0, 0, 8, 6);
+        tg.dispose();
+
+        ImageMatcher m = new ImageMatcher(t, 0, 1);
+        HotSpotCache spots = new HotSpotCache(4, 6);
+        m.setHotSpotCache(spots);
+
+        int[][] positions = {{70, 50}, {70, 50}, {73, 48}, {10, 10}};
+        for (int[] pos : positions) {
+            BufferedImage frame = new BufferedImage(120, 100, BufferedImage.TYPE_INT_RGB);
+            frame.createGraphics().drawImage(background, 0, 0, null);
+            frame.createGraphics().drawImage(t, pos[0], pos[1], null);
+            assertEquals(new Rectangle(pos[0], pos[1], 8, 6), m.findMatch(frame));
+        }
+        assertEquals(1, spots.getExactHits());
+        assertEquals(1, spots.getRingHits());
+        assertEquals(2, spots.getMisses()); // the first scan and the jump to (10, 10)
+    }
+
+    @Test
+    void compiledTemplateChecksScreenRarePixelsFirst() throws Exception {
+        // blue button with a light border and one dark mark; the screen is mostly the border color
+        BufferedImage t = new BufferedImage(20, 10, BufferedImage.TYPE_INT_ARGB);
+        java.awt.Graphics2D tg = t.createGraphics();
+        tg.setColor(new Color(0xF0F0F0));
+        tg.fillRect(0, 0, 20, 10);
+        tg.setColor(new Color(0x3070C0));
+        tg.fillRect(3, 3, 14, 4);
+        tg.dispose();
+        t.setRGB(10, 5, 0xFF101010);
+
+        BufferedImage screen = new BufferedImage(200, 150, BufferedImage.TYPE_INT_RGB);
+        java.awt.Graphics2D g = screen.createGraphics();
+        g.setColor(new Color(0xF0F0F0));
+        g.fillRect(0, 0, 200, 150);
+        g.setColor(new Color(0x3070C0));
+        g.fillRect(0, 100, 200, 50); // blue is common too, only the dark mark is rare
+        g.drawImage(t, 120, 40, null);
+        g.dispose();
+
+        for (int tol : new int[]{0, 30}) {
+            ImageMatcher m = new ImageMatcher(t, tol, 1);
+            assertEquals(new Rectangle(120, 40, 20, 10), m.findMatch(screen));
+            m.awaitRecompile();
+            CompiledTemplate ct = m.compiledTemplate();
+            assertEquals(0xFF101010, ct.rgb[0], "tol=" + tol);
+            assertEquals(20 * 10, ct.rgb.length);
+            assertTrue(ct.probes >= 2 && ct.probes <= CompiledTemplate.MAX_PROBES);
+        }
+    }
+
+    @Test
+    void bestMatchScoringFindsLowestErrorAndToleratesNoisyPixels() {
+        Random rnd = new Random(16);
+        for (int round = 0; round < 6; round++) {
+            BufferedImage screen = randomImage(rnd, 90, 70, BufferedImage.TYPE_INT_RGB);
+            BufferedImage t = template(screen, rnd.nextInt(75), rnd.nextInt(55), 4 + rnd.nextInt(10),
+                    4 + rnd.nextInt(10), round % 2 == 0);
+            // disturb the template a little so the best offset has a non-zero error
+            t.setRGB(1, 1, t.getRGB(1, 1) ^ 0x000F0F0F);
+            for (ImageMatcher.ScoreMetric metric : ImageMatcher.ScoreMetric.values()) {
+                for (ImageMatcher.SearchMode mode : new ImageMatcher.SearchMode[]{
+                        ImageMatcher.SearchMode.FULL, ImageMatcher.SearchMode.PYRAMID}) {
+                    for (int tol : new int[]{0, 10, 40}) {
+                        ImageMatcher m = new ImageMatcher(t, tol, 1 + round % 2);
+                        m.setScoreMetric(metric);
+                        m.setSearchMode(mode);
+                        String what = metric + " " + mode + " tol=" + tol + " round=" + round;
+                        MatchResult r = m.findBestMatch(screen);
+                        assertEquals(referenceBest(screen, t, tol, m.getStride(), metric),
+                                r == null ? null : r.getBounds(), what);
+                    }
+                }
+            }
+        }
+
+        // one pixel far off: the boolean search misses, scoring still finds the button
+        BufferedImage screen = randomImage(rnd, 120, 90, BufferedImage.TYPE_INT_RGB);
+        BufferedImage t = template(screen, 70, 30, 16, 12, false);
+        screen.setRGB(75, 35, 0xFFFFFFFF ^ screen.getRGB(75, 35));
+        ImageMatcher m = new ImageMatcher(t, 20, 1);
+        assertNull(m.findMatch(screen));
+        MatchResult best = m.findBestMatch(screen);
+        assertEquals(new Rectangle(70, 30, 16, 12), best.getBounds());
+        assertTrue(best.getConfidence() > 0.9 && best.getConfidence() < 1.0, best.toString());
+        assertEquals(1.0, new ImageMatcher(template(screen, 10, 10, 8, 8, false), 0, 1)
+                .findBestMatch(screen).getConfidence(), 0.0);
+    }
+
+    @Test
+    void nccModeMatchesReferenceAndSurvivesBrightnessChanges() {
+        Random rnd = new Random(17);
+        for (int round = 0; round < 4; round++) {
+            BufferedImage screen = randomImage(rnd, 150, 110, BufferedImage.TYPE_INT_RGB);
+            int w = 5 + rnd.nextInt(20);
+            int h = 4 + rnd.nextInt(15);
+            BufferedImage t = template(screen, rnd.nextInt(150 - w), rnd.nextInt(110 - h), w, h, false);
+            for (int stride : new int[]{1, 2}) {
+                ImageMatcher m = new ImageMatcher(t, 0, stride);
+                m.setSearchMode(ImageMatcher.SearchMode.NCC);
+                m.setNccThreshold(-1);
+                MatchResult r = m.findBestMatch(screen);
+                double best = -2;
+                for (int x = 0; x <= 150 - w; x += stride) {
+                    for (int y = 0; y <= 110 - h; y += stride) best = Math.max(best, referenceNcc(screen, t, x, y));
+                }
+                String what = "round=" + round + " stride=" + stride;
+                assertEquals(best, r.getConfidence(), 1e-6, what);
+                assertEquals(best, referenceNcc(screen, t, r.getBounds().x, r.getBounds().y), 1e-6, what);
+            }
+        }
+
+        // the whole screen dimmed and its contrast lowered: color tolerance fails, NCC does not
+        BufferedImage screen = randomImage(rnd, 200, 150, BufferedImage.TYPE_INT_RGB);
+        BufferedImage t = template(screen, 120, 40, 40, 30, false);
+        BufferedImage dim = new BufferedImage(200, 150, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 150; y++) {
+            for (int x = 0; x < 200; x++) {
+                int rgb = screen.getRGB(x, y);
+                int out = 0;
+                for (int sh = 0; sh <= 16; sh += 8) out |= (((rgb >> sh) & 0xFF) * 6 / 10 + 30) << sh;
+                dim.setRGB(x, y, out);
+            }
+        }
+        Rectangle expected = new Rectangle(120, 40, 40, 30);
+        ImageMatcher m = new ImageMatcher(t, 10, 1);
+        assertNull(m.findMatch(dim));
+        m.setSearchMode(ImageMatcher.SearchMode.NCC);
+        assertEquals(expected, m.findMatch(dim));
+        assertTrue(m.findBestMatch(dim).getConfidence() > 0.99);
+
+        // AUTO switches to NCC only from the configured work size on
+        m.setSearchMode(ImageMatcher.SearchMode.AUTO);
+        assertNull(m.findMatch(dim));
+        m.setAutoNccThreshold(40L * 30 * 200 * 150);
+        assertEquals(expected, m.findMatch(dim));
+        // a template with transparent pixels cannot use NCC and keeps color matching
+        ImageMatcher holes = new ImageMatcher(template(screen, 120, 40, 40, 30, true), 10, 1);
+        holes.setSearchMode(ImageMatcher.SearchMode.NCC);
+        assertNull(holes.findMatch(dim));
+        assertEquals(expected, holes.findMatch(screen));
+    }
+
+    static double referenceNcc(BufferedImage screen, BufferedImage t, int sx, int sy) {
+        int n = t.getWidth() * t.getHeight();
+        double tSum = 0, sSum = 0;
+        for (int y = 0; y < t.getHeight(); y++) {
+            for (int x = 0; x < t.getWidth(); x++) {
+                tSum += NccTemplate.luma(t.getRGB(x, y));
+                sSum += NccTemplate.luma(screen.getRGB(sx + x, sy + y));
+            }
+        }
+        double dot = 0, tt = 0, ss = 0;
+        for (int y = 0; y < t.getHeight(); y++) {
+            for (int x = 0; x < t.getWidth(); x++) {
+                double a = NccTemplate.luma(t.getRGB(x, y)) - tSum / n;
+                double b = NccTemplate.luma(screen.getRGB(sx + x, sy + y)) - sSum / n;
+                dot += a * b;
+                tt += a * a;
+                ss += b * b;
+            }
+        }
+        return ss < 1e-9 ? -2 : dot / Math.sqrt(tt * ss);
+    }
+
+    @Test
+    void multiScaleFindsResampledTemplateAndTriesLastScaleFirst() {
+        Random rnd = new Random(18);
+        BufferedImage t = new BufferedImage(30, 18, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = t.createGraphics();
+        for (int y = 0; y < 18; y += 6) {
+            for (int x = 0; x < 30; x += 6) {
+                g.setColor(new Color(rnd.nextInt(0x1000000)));
+                g.fillRect(x, y, 6, 6);
+            }
+        }
+        g.dispose();
+        BufferedImage screen = randomImage(rnd, 220, 160, BufferedImage.TYPE_INT_RGB);
+        screen.createGraphics().drawImage(MultiScaleMatcher.resample(t, 1.5), 101, 62, null);
+
+        ImageMatcher base = new ImageMatcher(t, 20, 1);
+        assertNull(base.findMatch(screen));
+        MultiScaleMatcher m = new MultiScaleMatcher(base, 0.75, 2.0, 0.25);
+        assertEquals(6, m.getScales().length);
+        assertEquals(new Rectangle(101, 62, 45, 27), m.findMatch(screen));
+        assertEquals(1.5, m.getLastScale(), 0.0);
+        assertEquals(45, m.getLastMatcher().getTemplateWidth());
+        assertTrue(m.getPrunedScales() > 0, "coarse level should rule out some scales");
+
+        // the winning scale is tried first and hits, so no further coarse pass is needed
+        assertEquals(new Rectangle(101, 62, 45, 27), m.findMatch(screen));
+        assertEquals(1, m.getCoarsePasses());
+        assertEquals(new Rectangle(101, 62, 45, 27), m.findBestMatch(screen).getBounds());
+
+        // template gone: every scale misses
+        assertNull(m.findMatch(randomImage(rnd, 220, 160, BufferedImage.TYPE_INT_RGB)));
+        assertEquals(1.5, m.getLastScale(), 0.0);
+    }
+
+    @Test
+    void multiScaleNccKeepsBrightnessShiftedScales() {
+        Random rnd = new Random(24);
+        BufferedImage t = new BufferedImage(40, 40, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = t.createGraphics();
+        for (int y = 0; y < 40; y += 8) {
+            for (int x = 0; x < 40; x += 8) {
+                g.setColor(new Color(rnd.nextInt(180), rnd.nextInt(180), rnd.nextInt(180)));
+                g.fillRect(x, y, 8, 8);
+            }
+        }
+        g.dispose();
+        BufferedImage shifted = MultiScaleMatcher.resample(t, 1.5);
+        for (int y = 0; y < shifted.getHeight(); y++) {
+            for (int x = 0; x < shifted.getWidth(); x++) {
+                int rgb = shifted.getRGB(x, y);
+                int out = 0xFF000000;
+                for (int sh = 0; sh <= 16; sh += 8) out |= Math.min(255, ((rgb >> sh) & 0xFF) + 70) << sh;
+                shifted.setRGB(x, y, out);
+            }
+        }
+        BufferedImage screen = randomImage(rnd, 240, 180, BufferedImage.TYPE_INT_RGB);
+        screen.createGraphics().drawImage(shifted, 100, 50, null);
+
+        ImageMatcher base = new ImageMatcher(t, 10, 1);
+        base.setSearchMode(ImageMatcher.SearchMode.NCC);
+        ImageMatcher plain = new ImageMatcher(MultiScaleMatcher.resample(t, 1.5), 10, 1);
+        plain.setSearchMode(ImageMatcher.SearchMode.NCC);
+        Rectangle expected = new Rectangle(100, 50, 60, 60);
+        assertEquals(expected, plain.findMatch(screen));
+
+        MultiScaleMatcher m = new MultiScaleMatcher(base, new double[]{1.0, 1.5, 2.0});
+        assertEquals(expected, m.findMatch(screen));
+        assertEquals(1.5, m.getLastScale(), 0.0);
+        assertEquals(0, m.getPrunedScales());
+        assertEquals(expected, new MultiScaleMatcher(base, new double[]{1.0, 1.5, 2.0}).findBestMatch(screen).getBounds());
+    }
+
+    @Test
+    void findAllReturnsEveryMatchOnceAfterSuppression() {
+        Random rnd = new Random(19);
+        BufferedImage screen = randomImage(rnd, 200, 150, BufferedImage.TYPE_INT_RGB);
+        BufferedImage t = template(screen, 10, 10, 12, 9, false);
+        int[][] copies = {{60, 20}, {150, 30}, {20, 100}, {100, 120}};
+        for (int[] c : copies) screen.createGraphics().drawImage(t, c[0], c[1], null);
+        for (ImageMatcher.SearchMode mode : new ImageMatcher.SearchMode[]{
+                ImageMatcher.SearchMode.FULL, ImageMatcher.SearchMode.PYRAMID, ImageMatcher.SearchMode.NCC}) {
+            ImageMatcher m = new ImageMatcher(t, 0, 1);
+            m.setSearchMode(mode);
+            java.util.Set<Rectangle> found = new java.util.HashSet<>();
+            for (MatchResult r : m.findAll(screen)) found.add(r.getBounds());
+            java.util.Set<Rectangle> expected = new java.util.HashSet<>();
+            expected.add(new Rectangle(10, 10, 12, 9));
+            for (int[] c : copies) expected.add(new Rectangle(c[0], c[1], 12, 9));
+            assertEquals(expected, found, mode.toString());
+        }
+
+        // a flat template matches at every offset of a flat patch; suppression keeps a few
+        // non-overlapping representatives, the best (exact) ones first
+        BufferedImage patch = randomImage(rnd, 100, 80, BufferedImage.TYPE_INT_RGB);
+        java.awt.Graphics2D g = patch.createGraphics();
+        g.setColor(new Color(0x808080));
+        g.fillRect(20, 20, 40, 30);
+        g.setColor(new Color(0x848484));
+        g.fillRect(60, 20, 10, 30);
+        g.dispose();
+        BufferedImage flat = new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < 10; y++) {
+            for (int x = 0; x < 10; x++) flat.setRGB(x, y, 0xFF808080);
+        }
+        ImageMatcher m = new ImageMatcher(flat, 10, 1);
+        for (double maxOverlap : new double[]{0.0, 0.3}) {
+            m.setMaxOverlap(maxOverlap);
+            List<MatchResult> all = m.findAll(patch);
+            assertTrue(all.size() >= 12, "maxOverlap=" + maxOverlap + " found " + all.size());
+            assertEquals(1.0, all.get(0).getConfidence(), 0.0);
+            for (int i = 1; i < all.size(); i++) {
+                assertTrue(all.get(i).getConfidence() <= all.get(i - 1).getConfidence());
+            }
+            for (MatchResult a : all) {
+                for (MatchResult b : all) {
+                    if (a == b) continue;
+                    Rectangle in = a.getBounds().intersection(b.getBounds());
+                    double inter = in.isEmpty() ? 0 : in.width * in.height;
+                    assertTrue(inter / (200 - inter) <= maxOverlap, a + " " + b);
+                }
+            }
+        }
+    }
+
+    @Test
+    void vectorKernelsGiveTheScalarResults() throws Exception {
+        // the Java 17 classes are only on the classpath through the jar, so load them directly
+        File dir = new File("target/classes/META-INF/versions/17");
+        assumeTrue(new File(dir, "VectorPixelKernels.class").isFile(), "not built on JDK 17+");
+        assumeTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(), "vector module not added");
+        Class<?> vector;
+        try (URLClassLoader loader = new URLClassLoader(new URL[]{dir.toURI().toURL()}, getClass().getClassLoader())) {
+            vector = loader.loadClass("VectorPixelKernels");
+            Method allClose = vector.getDeclaredMethod("allClose",
+                    int[].class, int.class, int[].class, int.class, int.class, int.class, int.class);
+            Method countFar = vector.getDeclaredMethod("countFar",
+                    int[].class, int.class, int[].class, int.class, int.class, int.class);
+            allClose.setAccessible(true);
+            countFar.setAccessible(true);
+
+            Random rnd = new Random(20);
+            for (int round = 0; round < 2000; round++) {
+                int n = rnd.nextInt(70);
+                int[] a = new int[n + 5];
+                int[] b = new int[n + 5];
+                for (int i = 0; i < a.length; i++) {
+                    a[i] = 0xFF000000 | rnd.nextInt(0x1000000);
+                    // mostly near a, sometimes exactly a without alpha, sometimes far away
+                    int mode = rnd.nextInt(10);
+                    b[i] = mode == 0 ? rnd.nextInt() : mode < 4 ? a[i] & 0x00FFFFFF
+                            : a[i] + rnd.nextInt(5) * 0x010101 - 0x020202;
+                }
+                int ai = rnd.nextInt(5);
+                int bi = rnd.nextInt(5);
+                int tol2 = rnd.nextInt(4) == 0 ? 0 : rnd.nextInt(40) * rnd.nextInt(40);
+                int alphaMask = rnd.nextBoolean() ? 0xFF000000 : 0;
+                assertEquals(ScalarPixelKernels.allClose(a, ai, b, bi, n, tol2, alphaMask),
+                        allClose.invoke(null, a, ai, b, bi, n, tol2, alphaMask), "allClose, round " + round);
+                assertEquals(ScalarPixelKernels.countFar(a, ai, b, bi, n, tol2),
+                        countFar.invoke(null, a, ai, b, bi, n, tol2), "countFar, round " + round);
+            }
+        }
+    }
+
+    @Test
+    void bestMatchSeededFromAnEarlierFrameIsStillTheBest() {
+        Random rnd = new Random(24);
+        BufferedImage first = randomImage(rnd, 90, 70, BufferedImage.TYPE_INT_RGB);
+        BufferedImage t = template(first, 40, 30, 10, 10, false);
+        t.setRGB(1, 1, t.getRGB(1, 1) ^ 0x000F0F0F);
+        ImageMatcher m = new ImageMatcher(t, 40, 1);
+        m.setParallelism(4);
+        m.setFirstMatchInScanOrder(false);
+        for (int round = 0; round < 12; round++) {
+            // the template moves (or is gone) between frames, so the seed is often stale
+            BufferedImage screen = round == 0 ? first : randomImage(rnd, 90, 70, BufferedImage.TYPE_INT_RGB);
+            if (round % 3 != 2) screen.getGraphics().drawImage(t, rnd.nextInt(80), rnd.nextInt(60), null);
+            for (int again = 0; again < 2; again++) {
+                MatchResult r = m.findBestMatch(screen);
+                Rectangle ref = referenceBest(screen, t, 40, 1, ImageMatcher.ScoreMetric.SSD);
+                assertEquals(ref, r == null ? null : r.getBounds(), "round " + round);
+            }
+        }
+        m.close();
+    }
+
+    static Set<ForkJoinPool> searchPools() {
+        Set<ForkJoinPool> pools = new HashSet<>();
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t instanceof ForkJoinWorkerThread) pools.add(((ForkJoinWorkerThread) t).getPool());
+        }
+        pools.remove(ForkJoinPool.commonPool());
+        return pools;
+    }
+
+    @Test
+    void closeShutsDownTheSearchPool() {
+        Random rnd = new Random(22);
+        BufferedImage screen = randomImage(rnd, 400, 300, BufferedImage.TYPE_INT_RGB);
+        ImageMatcher m = new ImageMatcher(template(screen, 300, 250, 20, 20, false), 0, 1);
+        m.setParallelism(4);
+        Set<ForkJoinPool> before = searchPools();
+        Rectangle hit = m.findMatch(screen);
+        Set<ForkJoinPool> started = searchPools();
+        started.removeAll(before);
+        assertEquals(1, started.size());
+
+        m.close();
+        assertTrue(started.iterator().next().isShutdown());
+        // still usable, on a new pool
+        assertEquals(hit, m.findMatch(screen));
+        m.close();
+    }
+
+    @Test
+    void interruptedParallelSearchReportsNoMatch() {
+        Random rnd = new Random(23);
+        BufferedImage screen = randomImage(rnd, 400, 300, BufferedImage.TYPE_INT_RGB);
+        ImageMatcher m = new ImageMatcher(template(screen, 300, 250, 20, 20, false), 0, 1);
+        m.setParallelism(4);
+        try {
+            assertNotNull(m.findMatch(screen));
+            Thread.currentThread().interrupt();
+            assertNull(m.findMatch(screen));
+            assertTrue(Thread.interrupted(), "interrupt status kept");
+        } finally {
+            Thread.interrupted();
+            m.close();
+        }
+    }
+
+    /**
+     * Loads the main classes the way the multi-release jar serves them on Java 17: the
+     * META-INF/versions/17 builds (PixelKernels among them) ahead of the Java 11 ones.
+     */
+    static URLClassLoader java17Loader() throws Exception {
+        File dir = new File("target/classes/META-INF/versions/17");
+        assumeTrue(new File(dir, "PixelKernels.class").isFile(), "not built on JDK 17+");
+        return new URLClassLoader(new URL[]{dir.toURI().toURL(), new File("target/classes").toURI().toURL()},
+                ClassLoader.getPlatformClassLoader());
+    }
+
+    static boolean vectorized(ClassLoader loader) throws Exception {
+        Field f = loader.loadClass("PixelKernels").getDeclaredField("VECTORIZED");
+        f.setAccessible(true);
+        return f.getBoolean(null);
+    }
+
+    @Test
+    void matcherRunsTheVectorKernelsOnJava17() throws Exception {
+        assumeTrue(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(), "vector module not added");
+        assertFalse(PixelKernels.VECTORIZED, "tests should see the Java 11 classes by default");
+        try (URLClassLoader loader = java17Loader()) {
+            assertTrue(vectorized(loader));
+            Class<?> matcherClass = loader.loadClass("ImageMatcher");
+            Class<?> frameClass = loader.loadClass("PixelFrame");
+            Method of = frameClass.getMethod("of", BufferedImage.class);
+            Method count = loader.loadClass("AutoClicker").getDeclaredMethod("countChangedSamples",
+                    frameClass, frameClass, int.class);
+            count.setAccessible(true);
+
+            Random rnd = new Random(21);
+            for (int round = 0; round < 40; round++) {
+                BufferedImage screen = randomImage(rnd, 120, 90, BufferedImage.TYPE_INT_RGB);
+                BufferedImage t = template(screen, rnd.nextInt(100), rnd.nextInt(70), 12 + rnd.nextInt(8),
+                        12 + rnd.nextInt(8), rnd.nextBoolean());
+                int tol = rnd.nextBoolean() ? 0 : 30;
+                ImageMatcher scalar = new ImageMatcher(t, tol, 1);
+                Object vector = matcherClass.getConstructor(BufferedImage.class, int.class, int.class)
+                        .newInstance(t, tol, 1);
+                assertEquals(scalar.findMatch(screen),
+                        matcherClass.getMethod("findMatch", BufferedImage.class).invoke(vector, screen),
+                        "findMatch, round " + round);
+                MatchResult best = scalar.findBestMatch(screen);
+                Object vectorBest = matcherClass.getMethod("findBestMatch", BufferedImage.class).invoke(vector, screen);
+                assertEquals(best == null ? null : best.toString(), vectorBest == null ? null : vectorBest.toString(),
+                        "findBestMatch, round " + round);
+
+                BufferedImage other = randomImage(rnd, 120, 90, BufferedImage.TYPE_INT_RGB);
+                for (int step : new int[]{1, 3}) {
+                    assertEquals(AutoClicker.countChangedSamples(PixelFrame.of(screen), PixelFrame.of(other), step),
+                            count.invoke(null, of.invoke(null, screen), of.invoke(null, other), step),
+                            "countChangedSamples, round " + round);
+                }
+            }
+        }
+    }
+
+    @Test
+    void vectorPropertyFalseSelectsTheScalarKernels() throws Exception {
+        String old = System.getProperty("autoclicker.vector");
+        System.setProperty("autoclicker.vector", "false");
+        try (URLClassLoader loader = java17Loader()) {
+            assertFalse(vectorized(loader));
+        } finally {
+            if (old == null) System.clearProperty("autoclicker.vector");
+            else System.setProperty("autoclicker.vector", old);
+        }
+    }
+
+    static Rectangle referenceBest(BufferedImage screen, BufferedImage t, int tol, int stride,
+                                   ImageMatcher.ScoreMetric metric) {
+        boolean squared = metric == ImageMatcher.ScoreMetric.SSD;
+        long n = 0;
+        for (int y = 0; y < t.getHeight(); y++) {
+            for (int x = 0; x < t.getWidth(); x++) {
+                if ((t.getRGB(x, y) >>> 24) != 0) n++;
+            }
+        }
+        long budget = squared ? n * tol * tol : (long) Math.floor(n * tol * Math.sqrt(3));
+        long best = Long.MAX_VALUE;
+        Rectangle at = null;
+        for (int x = 0; x <= screen.getWidth() - t.getWidth(); x += stride) {
+            for (int y = 0; y <= screen.getHeight() - t.getHeight(); y += stride) {
+                long e = 0;
+                for (int ty = 0; ty < t.getHeight(); ty++) {
+                    for (int tx = 0; tx < t.getWidth(); tx++) {
+                        int a = t.getRGB(tx, ty);
+                        if ((a >>> 24) == 0) continue;
+                        int b = screen.getRGB(x + tx, y + ty);
+                        for (int sh = 0; sh <= 16; sh += 8) {
+                            int d = ((a >> sh) & 0xFF) - ((b >> sh) & 0xFF);
+                            e += squared ? d * d : Math.abs(d);
+                        }
+                    }
+                }
+                if (e <= budget && e < best) {
+                    best = e;
+                    at = new Rectangle(x, y, t.getWidth(), t.getHeight());
+                }
+            }
+        }
+        return at;
+    }
+}
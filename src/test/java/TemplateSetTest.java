@@ -0,0 +1,64 @@
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TemplateSetTest {
+
+    @Test
+    void onePassFindsWhatEachMatcherFindsAlone() {
+        Random rnd = new Random(5);
+        BufferedImage screen = ImageMatcherTest.randomImage(rnd, 180, 140, BufferedImage.TYPE_INT_RGB);
+        BufferedImage other = ImageMatcherTest.randomImage(rnd, 180, 140, BufferedImage.TYPE_INT_RGB);
+        List<ImageMatcher> matchers = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            int w = 2 + rnd.nextInt(14);
+            int h = 2 + rnd.nextInt(10);
+            // a third of the templates are cut from a different image and (almost surely) absent
+            BufferedImage src = i % 3 == 0 ? other : screen;
+            BufferedImage t = ImageMatcherTest.template(src, rnd.nextInt(180 - w), rnd.nextInt(140 - h), w, h, i % 4 == 1);
+            matchers.add(new ImageMatcher(t, new int[]{0, 12, 40}[i % 3], 1 + i % 2));
+        }
+
+        MatchResult[] hits = new TemplateSet(matchers).matchEach(screen);
+        assertEquals(matchers.size(), hits.length);
+        for (int i = 0; i < hits.length; i++) {
+            Rectangle expected = matchers.get(i).findMatch(screen);
+            assertEquals(expected, hits[i] == null ? null : hits[i].getBounds(), "template " + i);
+            if (expected != null && matchers.get(i).getTolerance() == 0) assertEquals(1.0, hits[i].getConfidence(), 0.0);
+        }
+    }
+
+    @Test
+    void nccTemplatesAreSearchedWithTheirOwnMode() {
+        Random rnd = new Random(6);
+        BufferedImage screen = ImageMatcherTest.randomImage(rnd, 160, 120, BufferedImage.TYPE_INT_RGB);
+        BufferedImage t = ImageMatcherTest.template(screen, 70, 30, 30, 20, false);
+        // the screen brightened: only correlation still finds the template
+        BufferedImage bright = new BufferedImage(160, 120, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 120; y++) {
+            for (int x = 0; x < 160; x++) {
+                int rgb = screen.getRGB(x, y);
+                int out = 0;
+                for (int sh = 0; sh <= 16; sh += 8) out |= (((rgb >> sh) & 0xFF) * 6 / 10 + 30) << sh;
+                bright.setRGB(x, y, out);
+            }
+        }
+        ImageMatcher ncc = new ImageMatcher(t, 10, 1);
+        ncc.setSearchMode(ImageMatcher.SearchMode.NCC);
+        ImageMatcher color = new ImageMatcher(t, 10, 1);
+        ImageMatcher pyramid = new ImageMatcher(ImageMatcherTest.template(bright, 5, 5, 10, 8, false), 0, 1);
+        pyramid.setSearchMode(ImageMatcher.SearchMode.PYRAMID);
+
+        MatchResult[] hits = new TemplateSet(List.of(ncc, color, pyramid)).matchEach(bright);
+        assertEquals(new Rectangle(70, 30, 30, 20), hits[0].getBounds());
+        assertEquals(ncc.findBestMatch(bright).getConfidence(), hits[0].getConfidence(), 1e-9);
+        assertNull(hits[1], "same template by color tolerance");
+        assertEquals(pyramid.findMatch(bright), hits[2].getBounds());
+    }
+}